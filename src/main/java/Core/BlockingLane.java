@@ -0,0 +1,160 @@
+package Core;
+
+import Core.Module.EventReceiver;
+import EngineLibrary.Event;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * The BlockingLane class runs event receivers that may block, such as those performing file or network I/O, off of the
+ * engine's worker threads. Each notification runs on its own virtual thread where the JVM supports them (Java 21 and
+ * later), or otherwise on a thread from a bounded pool of daemon threads, so a slow receiver never holds up a frame.
+ * Since the engine targets Java 8, the virtual thread executor is looked up reflectively.
+ *
+ * Notifications complete in the background. Their outcomes are queued and reported back to the engine loop on the main
+ * thread, which records them in the engine metrics and rethrows any exception raised by a receiver.
+ */
+class BlockingLane {
+
+    // The most platform threads that run blocking receivers at once when virtual threads aren't supported. Receivers
+    // spend most of their time waiting rather than computing, so this is well above the number of cores, but still
+    // stops a burst of slow receivers from starting a thread per notification. Notifications beyond this many wait in
+    // the pool's queue for a thread to free up
+    private static final int MAX_PLATFORM_THREADS = 32;
+
+    private final ConcurrentLinkedQueue<Completion> completions;
+    private final AtomicInteger inFlight;
+    private final Histogram notifyTime;
+    private final AtomicLong completed;
+    private final AtomicLong failed;
+    // Created on first use, so that engines without blocking receivers never start any threads
+    private volatile ExecutorService executor;
+    private volatile boolean shutDown;
+
+    BlockingLane(Metrics metrics) {
+        completions = new ConcurrentLinkedQueue<>();
+        inFlight = new AtomicInteger(0);
+        notifyTime = metrics.histogram("events.blocking.time");
+        completed = metrics.counter("events.blocking.completed");
+        failed = metrics.counter("events.blocking.failed");
+        metrics.gauge("events.blocking.inflight", inFlight::get);
+    }
+
+    /*
+     * Notifies the supplied receivers of an event in the background, releasing the event once they have been notified.
+     * Events submitted after the lane has been shut down are dropped. Must only be called by the main thread.
+     */
+    void submit(Event event, EventReceiver[] eventReceivers) {
+        if (shutDown) {
+            event.release();
+            return;
+        }
+        if (executor == null) {
+            executor = createExecutor();
+        }
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                Throwable failure = null;
+                try {
+                    event.notifyModules(eventReceivers);
+                }
+                catch (Throwable t) {
+                    failure = t;
+                }
+                completions.add(new Completion(event.eventEnum, System.nanoTime() - start, failure));
+                event.release();
+                inFlight.decrementAndGet();
+            });
+        }
+        catch (RejectedExecutionException e) {
+            // The lane was shut down from another thread in the meantime
+            event.release();
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /*
+     * Reports every notification that has completed since the last call. If a receiver threw an exception, it is
+     * rethrown here once every completion has been reported. Must only be called by the main thread.
+     */
+    void reportCompletions() {
+        Completion failure = null;
+        Completion completion;
+        while ((completion = completions.poll()) != null) {
+            notifyTime.record(completion.duration);
+            if (completion.failure != null) {
+                failed.incrementAndGet();
+                if (failure == null) {
+                    failure = completion;
+                }
+            }
+            else {
+                completed.incrementAndGet();
+            }
+        }
+        if (failure != null) {
+            throw new RuntimeException("Blocking event receiver failed to handle " + failure.event + " event",
+                    failure.failure);
+        }
+    }
+
+    /*
+     * Stops accepting notifications. Notifications that are still running are left to finish in the background.
+     */
+    void shutDown() {
+        shutDown = true;
+        ExecutorService executor = this.executor;
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            // Virtual threads aren't supported, so fall back to platform threads. Idle threads are kept alive for a
+            // while so that a steady stream of notifications doesn't create a new thread every time
+            AtomicInteger threadCount = new AtomicInteger(0);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PLATFORM_THREADS, MAX_PLATFORM_THREADS, 30,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "Blocking Receiver " + threadCount.incrementAndGet());
+                        // Don't keep the application alive for receivers that are still running
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            // A pool with a fixed number of threads only grows past its core threads once its queue is full, so the
+            // core threads are the ones allowed to time out
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    private static class Completion {
+
+        // Only the event's enum is kept, as a pooled event may have been reused by the time its completion is reported
+        private final Enum event;
+        private final long duration;
+        private final Throwable failure;
+
+        private Completion(Enum event, long duration, Throwable failure) {
+            this.event = event;
+            this.duration = duration;
+            this.failure = failure;
+        }
+    }
+
+}
@@ -0,0 +1,260 @@
+package Core;
+
+import Core.Module.ThreadType;
+import EngineLibrary.IComponent;
+import EngineLibrary.IState;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static Core.Module.ThreadType.*;
+
+/*
+ * The CostModel class estimates how long event tasks and state updates take to run, and uses those estimates to decide
+ * how to split the available worker threads between event tasks and the state updates that run alongside them. Each
+ * estimate is an exponentially weighted moving average (EWMA) of measured execution times, so the model follows
+ * gradual changes in a scene's workload while smoothing over one-off spikes.
+ *
+ * Event costs are tracked per event type. State costs are split into the serial part of an update, which always runs
+ * on a single thread, and the cost of a single component update, which is spread across threads for data parallel
+ * states. All costs are in nanoseconds. The model also holds the scheduling hints supplied through each state's
+ * StateOptions, which take precedence over measured costs, and decides whether a data parallel state is worth splitting
+ * across threads at all.
+ */
+class CostModel {
+
+    // The weight given to each new measurement
+    private static final double SMOOTHING = 0.2;
+    // Estimates used before anything has been measured. These are deliberately low, so that the first frames err
+    // towards running work inline rather than paying to hand it off
+    private static final double DEFAULT_EVENT_COST = 2000;
+    private static final double DEFAULT_COMPONENT_COST = 200;
+    // The cost of handing a task to a worker thread and waiting for it to be completed, which offsets the gain of
+    // running work in parallel
+    private static final double TASK_OVERHEAD = 5000;
+
+    private final Map<Enum, Ewma> eventCosts;
+    // The cost of a single event within a batch delivered to batch receivers, which is kept apart from the cost of
+    // delivering events one at a time
+    private final Map<Enum, Ewma> batchCosts;
+    private final Map<IState, StateCost> stateCosts;
+
+    CostModel() {
+        eventCosts = new ConcurrentHashMap<>();
+        batchCosts = new ConcurrentHashMap<>();
+        stateCosts = new ConcurrentHashMap<>();
+    }
+
+    void registerState(IState state, ThreadType threadType, StateOptions options) {
+        stateCosts.put(state, new StateCost(threadType, options));
+    }
+
+    void unregisterState(IState state) {
+        stateCosts.remove(state);
+    }
+
+    /*
+     * Records the time taken to notify the receivers of an event. This method is safe to call from any thread.
+     */
+    void recordEvent(Enum event, long nanos) {
+        Ewma cost = eventCosts.get(event);
+        if (cost == null) {
+            cost = eventCosts.computeIfAbsent(event, key -> new Ewma());
+        }
+        cost.record(nanos);
+    }
+
+    double getEventCost(Enum event) {
+        Ewma cost = eventCosts.get(event);
+        return cost == null ? DEFAULT_EVENT_COST : cost.get(DEFAULT_EVENT_COST);
+    }
+
+    /*
+     * Records the time taken to deliver a batch of events to batch receivers. This method is safe to call from any
+     * thread.
+     */
+    void recordBatch(Enum event, long nanos, int numEvents) {
+        Ewma cost = batchCosts.get(event);
+        if (cost == null) {
+            cost = batchCosts.computeIfAbsent(event, key -> new Ewma());
+        }
+        cost.record((double) nanos / numEvents);
+    }
+
+    // Returns the estimated cost of a batch of events delivered to batch receivers
+    double getBatchCost(Enum event, int numEvents) {
+        Ewma cost = batchCosts.get(event);
+        return numEvents * (cost == null ? DEFAULT_EVENT_COST : cost.get(DEFAULT_EVENT_COST));
+    }
+
+    /*
+     * Records the time that a state spent updating on a single thread, excluding any component updates spread across
+     * threads. Must only be called by the main thread.
+     */
+    void recordSerial(IState state, long nanos) {
+        StateCost cost = stateCosts.get(state);
+        if (cost != null) {
+            cost.serial.record(nanos);
+        }
+    }
+
+    /*
+     * Records the average time taken by a single component update of a data parallel state. Must only be called by the
+     * main thread.
+     */
+    void recordComponent(IState state, double nanos) {
+        StateCost cost = stateCosts.get(state);
+        if (cost != null) {
+            cost.component.record(nanos);
+        }
+    }
+
+    /*
+     * Returns the estimated cost of a single component update of the supplied state.
+     */
+    double getComponentCost(IState state) {
+        StateCost cost = stateCosts.get(state);
+        if (cost == null) {
+            return DEFAULT_COMPONENT_COST;
+        }
+        return cost.costHint >= 0 ? cost.costHint : cost.component.get(DEFAULT_COMPONENT_COST);
+    }
+
+    int getMinComponentsPerTask(IState state) {
+        StateCost cost = stateCosts.get(state);
+        return cost == null ? 1 : cost.minComponentsPerTask;
+    }
+
+    /*
+     * Returns whether the components of a data parallel state should be updated on the main thread alone, which is the
+     * case if the state falls under its inline threshold, or if splitting its updates across threads would cost more
+     * than it saves.
+     */
+    boolean shouldInline(IState state, int numComponents) {
+        StateCost cost = stateCosts.get(state);
+        if (cost != null && numComponents <= cost.inlineThreshold) {
+            return true;
+        }
+        return numComponents * getComponentCost(state) < TASK_OVERHEAD;
+    }
+
+    /*
+     * Returns the largest number of threads, including the main thread, that a batch of component updates with the
+     * supplied estimated cost is worth being split across. Every worker thread taking part in the batch should save
+     * more than it costs to hand the work off to it.
+     */
+    int getMaxParticipants(double parallelCost) {
+        return Math.max(1, (int) (parallelCost / TASK_OVERHEAD));
+    }
+
+    /*
+     * Decides how many of the available worker threads should run event tasks, with the rest running the updates of
+     * the supplied states concurrently. Every split is scored by its estimated critical path, which is the longer of
+     * the event tasks and the state updates, and the split with the shortest critical path is picked. Event tasks given
+     * zero threads are run on the main thread before the state updates.
+     *
+     * @param eventCost The estimated total cost of the event tasks
+     * @param maxEventCost The estimated cost of the most expensive event task, which can't be split across threads
+     * @param numEventTasks The number of event tasks
+     * @param states The states to be updated concurrently with the event tasks, or an empty array if there are none
+     * @param numThreads The number of available worker threads
+     * @return The number of worker threads to allocate to event tasks
+     */
+    int allocateEventThreads(double eventCost, double maxEventCost, int numEventTasks, IState[] states,
+                             int numThreads) {
+        if (numEventTasks == 0) {
+            return 0;
+        }
+        // The main thread runs MAIN states and the serial part of data parallel states on its own, while the
+        // component updates of data parallel states are shared between the main thread and the remaining workers.
+        // States on reserved threads don't hold up the main thread, so they don't count towards the critical path
+        double serialCost = 0;
+        double parallelCost = 0;
+        for (int i = 0; i < states.length; i++) {
+            StateCost cost = stateCosts.get(states[i]);
+            if (cost == null) {
+                continue;
+            }
+            IComponent[] components = states[i].getComponents();
+            if (cost.threadType == MAIN) {
+                // MAIN states run their component updates on the main thread too, so they are measured as a whole
+                serialCost += cost.serial.get(components.length * DEFAULT_COMPONENT_COST);
+            }
+            else if (cost.threadType == ALL) {
+                serialCost += cost.serial.get(0);
+                if (shouldInline(states[i], components.length)) {
+                    serialCost += components.length * getComponentCost(states[i]);
+                }
+                else {
+                    parallelCost += components.length * getComponentCost(states[i]);
+                }
+            }
+        }
+        // Running the event tasks inline puts them on the critical path ahead of the state updates
+        int bestThreads = 0;
+        double bestCost = eventCost + updateCost(serialCost, parallelCost, numThreads);
+        for (int eventThreads = 1; eventThreads <= Math.min(numThreads, numEventTasks); eventThreads++) {
+            double eventPath = Math.max(eventCost / eventThreads, maxEventCost) + TASK_OVERHEAD;
+            double cost = Math.max(eventPath, updateCost(serialCost, parallelCost, numThreads - eventThreads));
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestThreads = eventThreads;
+            }
+        }
+        return bestThreads;
+    }
+
+    private static double updateCost(double serialCost, double parallelCost, int numWorkers) {
+        if (parallelCost == 0 || numWorkers == 0) {
+            return serialCost + parallelCost;
+        }
+        return serialCost + parallelCost / (numWorkers + 1) + TASK_OVERHEAD;
+    }
+
+    private static class StateCost {
+
+        private final ThreadType threadType;
+        private final Ewma serial;
+        private final Ewma component;
+        // Hints taken from the state's options when it was registered
+        private final long costHint;
+        private final int minComponentsPerTask;
+        private final int inlineThreshold;
+
+        private StateCost(ThreadType threadType, StateOptions options) {
+            this.threadType = threadType;
+            serial = new Ewma();
+            component = new Ewma();
+            costHint = options == null ? -1 : options.getCostPerComponent();
+            minComponentsPerTask = options == null ? 1 : options.getMinComponentsPerTask();
+            inlineThreshold = options == null ? 0 : options.getInlineThreshold();
+        }
+    }
+
+    // A moving average that may be recorded into from any thread. The average is stored as the raw bits of a double,
+    // and is NaN until the first measurement is recorded
+    private static class Ewma {
+
+        private static final long EMPTY = Double.doubleToRawLongBits(Double.NaN);
+
+        private final AtomicLong bits = new AtomicLong(EMPTY);
+
+        private void record(double value) {
+            while (true) {
+                long current = bits.get();
+                double average = Double.longBitsToDouble(current);
+                double updated = current == EMPTY ? value : average + SMOOTHING * (value - average);
+                if (bits.compareAndSet(current, Double.doubleToRawLongBits(updated))) {
+                    return;
+                }
+            }
+        }
+
+        private double get(double defaultValue) {
+            long current = bits.get();
+            return current == EMPTY ? defaultValue : Double.longBitsToDouble(current);
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package Core;
+
+/*
+ * The DispatchTable class maps each event enum to its EventType without hashing. Every enum class is given an array
+ * holding an EventType for each of its constants, which is created the first time any of the class's constants is
+ * looked up and found through a ClassValue from then on. Looking up an event's type then comes down to indexing that
+ * array by the enum's ordinal. Since the arrays never change once created, lookups are safe from any thread.
+ */
+class DispatchTable {
+
+    private final ClassValue<EventType[]> types;
+
+    DispatchTable() {
+        types = new EventTypes();
+    }
+
+    EventType get(Enum event) {
+        // Constants with their own class bodies are subclasses of their enum, so the declaring class is used instead
+        return types.get(event.getDeclaringClass())[event.ordinal()];
+    }
+
+    private static class EventTypes extends ClassValue<EventType[]> {
+
+        @Override
+        protected EventType[] computeValue(Class<?> type) {
+            Object[] constants = type.getEnumConstants();
+            EventType[] eventTypes = new EventType[constants.length];
+            for (int i = 0; i < constants.length; i++) {
+                eventTypes[i] = new EventType((Enum) constants[i]);
+            }
+            return eventTypes;
+        }
+    }
+
+}
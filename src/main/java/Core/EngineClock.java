@@ -0,0 +1,171 @@
+package Core;
+
+import Core.Module.ClockType;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.lwjgl.glfw.GLFW.glfwGetTime;
+
+/*
+ * The EngineClock class tells the engine loop how many updates each frame has to run. Every clock counts whole update
+ * ticks, along with how far it has moved past the last of them, which the render phase uses as its interpolation alpha.
+ * Apart from the GLFW clock, none of the clocks depend on GLFW having been initialized, allowing the Core to run
+ * headless.
+ */
+abstract class EngineClock {
+
+    /*
+     * Moves the clock on to the start of the next frame, returning the number of update ticks that have come due since
+     * the last call. The engine loop calls this exactly once at the start of every frame.
+     */
+    abstract long advance();
+
+    /*
+     * Returns how far the clock has moved past its last due tick, from 0 (inclusive) to 1 (exclusive).
+     */
+    abstract double getTickFraction();
+
+    /*
+     * @param clockType The type of clock to create
+     * @param timeScale The rate at which time passes. For the virtual clock, this is the number of update ticks that
+     *                  pass each frame
+     * @param interval The length of a single update tick, in seconds
+     * @param maxCatchUpSteps The most ticks that a clock measuring real time lets come due in a single frame
+     */
+    static EngineClock create(ClockType clockType, double timeScale, double interval, int maxCatchUpSteps,
+                              Metrics metrics) {
+        if (timeScale <= 0) {
+            throw new RuntimeException("Clock time scale must be greater than zero, got " + timeScale);
+        }
+        if (clockType == ClockType.GLFW) {
+            return new GLFWClock(timeScale, interval, maxCatchUpSteps, metrics);
+        }
+        else if (clockType == ClockType.REAL_TIME) {
+            return new RealTimeClock(timeScale, interval, maxCatchUpSteps, metrics);
+        }
+        else {
+            return new VirtualClock(timeScale);
+        }
+    }
+
+    /*
+     * A clock that measures time, and turns the time that has passed since the last frame into ticks. Time that hasn't
+     * added up to a whole tick yet is carried over to the next frame as lag.
+     */
+    abstract static class TimeClock extends EngineClock {
+
+        private final double interval;
+        private final int maxCatchUpSteps;
+        private final AtomicLong catchUpFrames;
+        private final AtomicLong droppedTicks;
+        private double lag;
+        private double previousTime;
+        private boolean started;
+
+        TimeClock(double interval, int maxCatchUpSteps, Metrics metrics) {
+            this.interval = interval;
+            this.maxCatchUpSteps = maxCatchUpSteps;
+            catchUpFrames = metrics.counter("update.catchup.frames");
+            droppedTicks = metrics.counter("update.dropped.steps");
+        }
+
+        /*
+         * Returns the current time in seconds.
+         */
+        abstract double getTime();
+
+        @Override
+        long advance() {
+            double time = getTime();
+            // Time is measured from the first frame, as the clock may have been created long before the loop started
+            if (!started) {
+                started = true;
+                previousTime = time;
+                return 0;
+            }
+            lag += time - previousTime;
+            previousTime = time;
+            long ticks = (long) (lag / interval);
+            lag -= ticks * interval;
+            // A frame that takes longer than the updates it has to catch up on would otherwise fall further behind
+            // every frame. Ticks past the limit are dropped, slowing the simulation down instead
+            if (ticks > maxCatchUpSteps) {
+                droppedTicks.addAndGet(ticks - maxCatchUpSteps);
+                ticks = maxCatchUpSteps;
+            }
+            if (ticks > 1) {
+                catchUpFrames.incrementAndGet();
+            }
+            return ticks;
+        }
+
+        @Override
+        double getTickFraction() {
+            return Math.min(lag / interval, 1);
+        }
+    }
+
+    private static class GLFWClock extends TimeClock {
+
+        private final double timeScale;
+
+        private GLFWClock(double timeScale, double interval, int maxCatchUpSteps, Metrics metrics) {
+            super(interval, maxCatchUpSteps, metrics);
+            this.timeScale = timeScale;
+        }
+
+        @Override
+        double getTime() {
+            return glfwGetTime() * timeScale;
+        }
+    }
+
+    private static class RealTimeClock extends TimeClock {
+
+        private final double timeScale;
+        private final long startTime;
+
+        private RealTimeClock(double timeScale, double interval, int maxCatchUpSteps, Metrics metrics) {
+            super(interval, maxCatchUpSteps, metrics);
+            this.timeScale = timeScale;
+            startTime = System.nanoTime();
+        }
+
+        @Override
+        double getTime() {
+            return ((System.nanoTime() - startTime) / 1e9) * timeScale;
+        }
+    }
+
+    // Advances by a fixed number of ticks every frame regardless of how much real time has passed, so every run of a
+    // simulation produces the same updates and the engine runs as fast as the hardware allows. Ticks are counted in
+    // millionths with integer arithmetic, so fractional time scales never suffer from floating point error either.
+    // Virtual time never falls behind, so it isn't limited by the maximum catch-up steps
+    private static class VirtualClock extends EngineClock {
+
+        private static final long UNITS_PER_TICK = 1000000;
+
+        private final long step;
+        private long units;
+
+        private VirtualClock(double timeScale) {
+            step = Math.round(timeScale * UNITS_PER_TICK);
+            if (step < 1) {
+                throw new RuntimeException("Virtual clock time scale must be at least one millionth, got " + timeScale);
+            }
+        }
+
+        @Override
+        long advance() {
+            long previousTicks = units / UNITS_PER_TICK;
+            units += step;
+            return units / UNITS_PER_TICK - previousTicks;
+        }
+
+        @Override
+        double getTickFraction() {
+            return (double) (units % UNITS_PER_TICK) / UNITS_PER_TICK;
+        }
+    }
+
+}
@@ -1,50 +1,141 @@
 package Core;
 
-import EngineLibrary.IComponent;
+import Core.Module.MetricsListener;
 import EngineLibrary.IState;
 
 import static Core.Module.Phase.*;
-import static org.lwjgl.glfw.GLFW.glfwGetTime;
 
 class EngineLoop {
 
+    private static final IState[] NO_STATES = new IState[0];
+
     private EventQueue eventQueue;
+    private TimerWheel timerWheel;
     private ModuleCSM moduleCSM;
     private ThreadPool threadPool;
-
-    private double targetUPS;
-    private Boolean running = true;
-
-    EngineLoop(EventQueue eventQueue, ModuleCSM moduleCSM, ThreadPool threadPool, int targetUPS) {
+    private CostModel costModel;
+    private TransformSnapshot transformSnapshot;
+    private Timestep timestep;
+    private EngineClock clock;
+    // Null if the frame rate is unlimited
+    private FramePacer framePacer;
+    private Profiler profiler;
+    private Metrics metrics;
+    // Null if metrics reports are disabled
+    private MetricsListener metricsListener;
+    private long metricsDumpInterval;
+    // Metrics are recorded through these directly, so the engine loop never looks them up by name
+    private Histogram frameTime;
+    private Histogram updateTime;
+    private Histogram updateRate;
+    private Histogram updatesPerFrame;
+    // The fraction of the last rate window that the worker threads spent busy
+    private volatile double workerUtilization;
+
+    private boolean pipelined;
+    // Volatile so that a shut down requested from any thread is seen by the engine loop
+    private volatile boolean running = true;
+
+    EngineLoop(EventQueue eventQueue, TimerWheel timerWheel, ModuleCSM moduleCSM, ThreadPool threadPool, CostModel costModel,
+               TransformSnapshot transformSnapshot,
+               Timestep timestep, EngineClock clock, FramePacer framePacer, Profiler profiler, Metrics metrics,
+               boolean pipelined, long metricsDumpInterval, MetricsListener metricsListener) {
         this.eventQueue = eventQueue;
+        this.timerWheel = timerWheel;
         this.moduleCSM = moduleCSM;
         this.threadPool = threadPool;
-
-        this.targetUPS = targetUPS;
+        this.costModel = costModel;
+        this.transformSnapshot = transformSnapshot;
+        this.timestep = timestep;
+        this.clock = clock;
+        this.framePacer = framePacer;
+        this.profiler = profiler;
+        this.metrics = metrics;
+        this.metricsDumpInterval = metricsDumpInterval;
+        this.metricsListener = metricsListener;
+        frameTime = metrics.histogram("frame.time");
+        updateTime = metrics.histogram("update.time");
+        updateRate = metrics.histogram("update.rate");
+        updatesPerFrame = metrics.histogram("update.steps");
+        metrics.gauge("workers.utilization", () -> workerUtilization);
+        this.pipelined = pipelined;
     }
 
     // The engine loop will be running for as long as the application exists (although it only starts running after the
     // initialization phase)
     void start() {
-        double interval = 1 / targetUPS;
-        double lag = 0.0;
-        double previousLoopStart = glfwGetTime();
+        long tick = 0;
+        // Metrics are measured in real time, independently of the engine clock
+        long previousFrameStart = System.nanoTime();
+        long rateWindowStart = previousFrameStart;
+        long rateWindowBusyTime = threadPool.getBusyTime();
+        long lastMetricsDump = previousFrameStart;
+        int updatesInWindow = 0;
 
         // Loop
         while (running) {
-            double currentLoopStart = glfwGetTime();
-            double elapsedTime = currentLoopStart - previousLoopStart;
-            previousLoopStart = currentLoopStart;
-            lag += elapsedTime;
+            // The clock decides how many updates this frame is due, having already limited how far it may catch up
+            long dueTicks = clock.advance();
 
+            profiler.begin("Frame");
+            threadPool.beginJobFrame();
+            profiler.begin("Input");
             input();
-
-            while (lag >= interval) {
-                update(interval);
-                lag -= interval;
+            profiler.end();
+
+            int updates = 0;
+            while (updates < dueTicks) {
+                profiler.begin("Update");
+                long updateStart = System.nanoTime();
+                timestep.setTick(tick);
+                // Timers count update ticks, so their events are posted along with those of the update that they
+                // come due in
+                timerWheel.advance();
+                update();
+                updateTime.record(System.nanoTime() - updateStart);
+                profiler.end();
+                tick++;
+                updates++;
+            }
+            updatesPerFrame.record(updates);
+
+            // The render phase falls somewhere in between the last update and the next one
+            double alpha = clock.getTickFraction();
+            timestep.setAlpha(alpha);
+            profiler.begin("Render");
+            render(alpha, tick - 1);
+            profiler.end();
+            profiler.end();
+
+            if (framePacer != null) {
+                profiler.begin("Pace");
+                framePacer.pace();
+                profiler.end();
             }
 
-            render();
+            // Record frame metrics
+            long frameStart = System.nanoTime();
+            frameTime.record(frameStart - previousFrameStart);
+            previousFrameStart = frameStart;
+            updatesInWindow += updates;
+            if (frameStart - rateWindowStart >= 1000000000L) {
+                updateRate.record(Math.round(updatesInWindow * 1e9 / (frameStart - rateWindowStart)));
+                // Workers add up the time they spend running tasks themselves, as every phase has been joined by now
+                long busyTime = threadPool.getBusyTime();
+                workerUtilization = (double) (busyTime - rateWindowBusyTime)
+                        / ((frameStart - rateWindowStart) * threadPool.getNumThreads());
+                rateWindowBusyTime = busyTime;
+                rateWindowStart = frameStart;
+                updatesInWindow = 0;
+            }
+            if (metricsListener != null && frameStart - lastMetricsDump >= metricsDumpInterval) {
+                metricsListener.onReport(metrics.dump());
+                lastMetricsDump = frameStart;
+            }
+        }
+        // Let the last pipelined render phase finish before handing control back
+        if (pipelined) {
+            threadPool.awaitRenderTasks();
         }
     }
 
@@ -53,80 +144,62 @@ class EngineLoop {
     }
 
     private void input() {
-        // Get scenes
-        int numScenes = moduleCSM.getNumScenes();
-        if (numScenes == 0)
+        // Pick up any receivers that finished on the blocking lane since the last frame
+        eventQueue.reportBlockingCompletions();
+        IState[][] levels = moduleCSM.getSchedule(INPUT);
+        if (levels.length == 0)
             return;
-        // Update each scene
-        for (int i = 0; i < numScenes; i++) {
-            IState[] statesInScene = moduleCSM.getStates(i, INPUT);
-            if (i == 0 && statesInScene.length > 0) {
-                // Get the components held in the initial state, the updates of which are to run concurrently with event
-                // tasks
-                IState initialState = statesInScene[0];
-                IComponent[] components = initialState.getComponents();
-                // Get events from the message queue
-                Runnable[] eventTasks = eventQueue.getEventReceivers();
-                // Allocate and distribute to threads
-                int numThreads = threadPool.getAvailableThreads();
-                int eventThreads = calcAlloc(eventTasks.length, components.length, numThreads);
-                int initUpdateThreads = numThreads - eventThreads;
-                threadPool.executeEventTasks(eventTasks, eventThreads);
-                threadPool.executeUpdateTasks(initialState, components, initUpdateThreads);
-
-                // Update remaining states in first scene
-                for (int y = 1; y < statesInScene.length; y++) {
-                    IState state = statesInScene[y];
-                    threadPool.executeUpdateTasks(state, state.getComponents(), threadPool.getAvailableThreads());
-                }
-            }
-            else {
-                // Run state updates like normal
-                for (int y = 0; y < statesInScene.length; y++) {
-                    IState state = statesInScene[y];
-                    threadPool.executeUpdateTasks(state, state.getComponents(), threadPool.getAvailableThreads());
-                }
-            }
+        // Get events from the message queue
+        int numEventTasks = eventQueue.prepareDispatch();
+        // Split the available threads between the event tasks and the initial level, the updates of which are to run
+        // concurrently with event tasks
+        int numThreads = threadPool.getAvailableThreads();
+        int eventThreads = costModel.allocateEventThreads(eventQueue.getDispatchCost(),
+                eventQueue.getMaxDispatchCost(), numEventTasks, levels[0], numThreads);
+        int initUpdateThreads = numThreads - eventThreads;
+        threadPool.executeEventTasks(eventQueue.getEventTasks(), numEventTasks, eventThreads);
+        threadPool.executeUpdateTasks(levels[0], initUpdateThreads);
+
+        // Update remaining levels
+        for (int i = 1; i < levels.length; i++) {
+            threadPool.executeUpdateTasks(levels[i], threadPool.getAvailableThreads());
         }
     }
 
-    private void update(double time) { // TODO: figure out how time works. Perhaps pass in an updateEvent data structure?
-        // Get scenes
-        int numScenes = moduleCSM.getNumScenes();
-        if (numScenes == 0)
-            return;
-        // Update each scene
-        for (int i = 0; i < numScenes; i++) {
-            IState[] statesInScene = moduleCSM.getStates(i, UPDATE);
-            for (int y = 0; y < statesInScene.length; y++) {
-                IState state = statesInScene[y];
-                threadPool.executeUpdateTasks(state, state.getComponents(), threadPool.getAvailableThreads());
-            }
+    private void update() {
+        IState[][] levels = moduleCSM.getSchedule(UPDATE);
+        for (int i = 0; i < levels.length; i++) {
+            threadPool.executeUpdateTasks(levels[i], threadPool.getAvailableThreads());
         }
+        // Capture the transforms produced by this update, keeping the previous update's transforms for interpolation.
+        // Every level of the update phase has been joined by now, and the render thread never touches its components,
+        // so this is safe to do while the previous frame is still being rendered. The back buffer being captured into
+        // is never read by the render phase either
+        transformSnapshot.capture(levels);
     }
 
-    private void render() {
+    private void render(double alpha, long tick) {
         // Kick off event handling
-        Runnable[] eventTasks = eventQueue.getEventReceivers();
-        int numThreads = threadPool.getAvailableThreads();
-        threadPool.executeEventTasks(eventTasks, numThreads);
-        // Get scenes
-        int numScenes = moduleCSM.getNumScenes();
-        if (numScenes == 0)
-            return;
-        // Update each scene
-        for (int i = 0; i < numScenes; i++) {
-            IState[] statesInScene = moduleCSM.getStates(i, RENDER);
-            for (int y = 0; y < statesInScene.length; y++) {
-                IState state = statesInScene[y];
-                threadPool.executeUpdateTasks(state, state.getComponents(), 1);
+        int numEventTasks = eventQueue.prepareDispatch();
+        int numThreads = costModel.allocateEventThreads(eventQueue.getDispatchCost(), eventQueue.getMaxDispatchCost(),
+                numEventTasks, NO_STATES, threadPool.getAvailableThreads());
+        threadPool.executeEventTasks(eventQueue.getEventTasks(), numEventTasks, numThreads);
+        IState[][] levels = moduleCSM.getSchedule(RENDER);
+        if (pipelined) {
+            // Render this frame on the render thread while the main thread moves on to the next frame's input and
+            // update phases. The previous frame has to finish rendering first, as it is reading from the front buffer
+            threadPool.awaitRenderTasks();
+            transformSnapshot.publish(alpha, tick);
+            threadPool.executeRenderTasks(levels);
+        }
+        else {
+            transformSnapshot.publish(alpha, tick);
+            for (int i = 0; i < levels.length; i++) {
+                threadPool.executeUpdateTasks(levels[i], Math.min(1, threadPool.getAvailableThreads()));
             }
         }
-    }
-
-    private int calcAlloc(int set1, int set2, int totalThreads) {
-        int set1Threads = totalThreads / ((set1 / set2) + 1);
-        return set1Threads;
+        // Join any event tasks that weren't already joined by a render level
+        threadPool.awaitPhase("Event Tasks");
     }
 
 }
@@ -0,0 +1,321 @@
+package Core;
+
+import Core.Module.OverflowPolicy;
+import EngineLibrary.Event;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * The EventBuffer class collects the events posted in between two dispatches, and may be posted to from any thread
+ * without locking. A posting thread reserves a slot in the current segment with a single atomic increment, while the
+ * main thread swaps in a second, empty segment whenever it drains the buffer. Each segment counts the threads that are
+ * still writing to it, so the main thread only ever waits on posts that were already underway at the time of the swap.
+ * A post that finds its segment full goes to the segment's overflow queue rather than waiting for the segment to grow,
+ * and the segment is grown to fit once it has been drained.
+ *
+ * The buffer never holds more than its capacity worth of events per dispatch. Under the GROW policy, segments start out
+ * small and grow as needed up to the capacity, and are shrunk again once they've sat mostly empty for a while. Under
+ * every other policy, segments are allocated at full capacity up front, so posting never allocates until the buffer is
+ * full. What happens to the events posted once it is full depends on the overflow policy.
+ *
+ * Drained events are sorted by the key that they were posted under, which makes the dispatch order the same every
+ * frame regardless of which threads the events were posted from. See EventOrder.
+ */
+class EventBuffer {
+
+    private static final int INITIAL_CAPACITY = 16;
+    // The number of drains in a row that a grown segment must be less than a quarter full before it's halved
+    private static final int SHRINK_DRAINS = 256;
+
+    private final EventOrder eventOrder;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private volatile Segment segment;
+    // Only ever touched by the main thread
+    private Segment spare;
+    // The drained events along with their keys, and scratch arrays for sorting them, which grow to fit the largest
+    // drain and are shrunk along with the segments
+    private Event[] events;
+    private long[] keys;
+    private Event[] sortEvents;
+    private long[] sortKeys;
+    private final AtomicLong growths;
+    private final AtomicLong shrinks;
+    private final AtomicLong droppedEvents;
+    private final AtomicLong rejectedEvents;
+
+    /*
+     * @param capacity The most events that the buffer holds in between two dispatches
+     * @param overflowPolicy What to do with events posted once the buffer is full
+     */
+    EventBuffer(EventOrder eventOrder, Metrics metrics, int capacity, OverflowPolicy overflowPolicy) {
+        this.eventOrder = eventOrder;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        int segmentCapacity = overflowPolicy == OverflowPolicy.GROW ? Math.min(INITIAL_CAPACITY, capacity) : capacity;
+        segment = new Segment(segmentCapacity);
+        spare = new Segment(segmentCapacity);
+        events = new Event[INITIAL_CAPACITY];
+        keys = new long[INITIAL_CAPACITY];
+        sortEvents = new Event[INITIAL_CAPACITY];
+        sortKeys = new long[INITIAL_CAPACITY];
+        growths = metrics.counter("events.queue.growths");
+        shrinks = metrics.counter("events.queue.shrinks");
+        droppedEvents = metrics.counter("events.dropped");
+        rejectedEvents = metrics.counter("events.rejected");
+        metrics.gauge("events.queue.depth", () -> Math.min(segment.size.get(), capacity));
+    }
+
+    /*
+     * Adds an event under the calling thread's order key, returning false if the buffer is full and the REJECT policy
+     * handed the event back to the caller. This method is safe to call from any thread.
+     */
+    boolean add(Event event) {
+        long key = eventOrder.getSource().get();
+        Segment segment;
+        // Join the current segment's writers. Should the main thread swap the segment out in the meantime, it may
+        // already have stopped waiting on writers, so back out and join the new segment instead
+        while (true) {
+            segment = this.segment;
+            segment.writers.incrementAndGet();
+            if (segment == this.segment) {
+                break;
+            }
+            segment.writers.decrementAndGet();
+        }
+        try {
+            int slot = segment.size.getAndIncrement();
+            if (slot < segment.events.length) {
+                segment.events[slot] = event;
+                segment.keys[slot] = key;
+                return true;
+            }
+            // Only a GROW segment that has yet to reach the capacity can have free slots left past its end
+            if (slot < capacity) {
+                segment.overflow.add(new Overflow(event, key));
+                segment.numOverflowed.incrementAndGet();
+                return true;
+            }
+            return overflow(segment, event, key);
+        }
+        finally {
+            segment.writers.decrementAndGet();
+        }
+    }
+
+    // Handles an event posted to a full segment
+    private boolean overflow(Segment segment, Event event, long key) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                // Keep up to another capacity worth of the newest events in the overflow queue, which displace the
+                // oldest of the segment's events once it's drained
+                segment.overflow.add(new Overflow(event, key));
+                if (segment.numOverflowed.incrementAndGet() > capacity) {
+                    Overflow oldest = segment.overflow.poll();
+                    segment.numOverflowed.decrementAndGet();
+                    if (oldest != null) {
+                        oldest.event.release();
+                        droppedEvents.incrementAndGet();
+                    }
+                }
+                return true;
+            case REJECT:
+                rejectedEvents.incrementAndGet();
+                return false;
+            default:
+                event.release();
+                droppedEvents.incrementAndGet();
+                return true;
+        }
+    }
+
+    /*
+     * Takes every event added since the last call, sorted by order key, and returns the number of events taken. Each
+     * event is then read with take(). Must only be called by the main thread.
+     */
+    int drain() {
+        Segment drained = segment;
+        segment = spare;
+        // Posts hold the segment for a handful of instructions, so this is rarely more than a few spins
+        while (drained.writers.get() != 0) {
+            Thread.yield();
+        }
+        // Posts past the capacity were never stored, so they don't count towards the size
+        int size = Math.min(drained.size.get(), capacity);
+        int numSlotted = Math.min(size, drained.events.length);
+        int numOverflowed = drained.numOverflowed.get();
+        // Under the DROP_OLDEST policy, the overflow queue may hold newer events than the segment has room for, in
+        // which case the segment's oldest events are dropped to make up the difference
+        int numDropped = Math.max(0, numSlotted + numOverflowed - capacity);
+        int count = numSlotted + numOverflowed - numDropped;
+        if (events.length < count) {
+            int length = grow(events.length, count);
+            events = new Event[length];
+            keys = new long[length];
+            sortEvents = new Event[length];
+            sortKeys = new long[length];
+        }
+        for (int i = 0; i < numDropped; i++) {
+            drained.events[i].release();
+        }
+        droppedEvents.addAndGet(numDropped);
+        System.arraycopy(drained.events, numDropped, events, 0, numSlotted - numDropped);
+        System.arraycopy(drained.keys, numDropped, keys, 0, numSlotted - numDropped);
+        Arrays.fill(drained.events, 0, numSlotted, null);
+        int index = numSlotted - numDropped;
+        Overflow overflow;
+        while ((overflow = drained.overflow.poll()) != null) {
+            events[index] = overflow.event;
+            keys[index] = overflow.key;
+            index++;
+        }
+        drained.numOverflowed.set(0);
+        // The drained segment is now the spare, so it can be resized without racing posts
+        if (overflowPolicy == OverflowPolicy.GROW) {
+            resize(drained, size);
+        }
+        drained.size.set(0);
+        spare = drained;
+        sort(count);
+        return count;
+    }
+
+    /*
+     * Returns the event at the supplied index of the last drain, dropping the buffer's reference to it. Must only be
+     * called by the main thread.
+     */
+    Event take(int index) {
+        Event event = events[index];
+        events[index] = null;
+        return event;
+    }
+
+    // Grows a segment to fit a burst of the drained size, or halves it once it's been mostly empty for long enough
+    private void resize(Segment drained, int size) {
+        int length = drained.events.length;
+        if (size > length) {
+            setLength(drained, Math.min(grow(length, size), capacity));
+            growths.incrementAndGet();
+        }
+        else if (length > INITIAL_CAPACITY && size * 4 < length) {
+            if (++drained.idleDrains >= SHRINK_DRAINS) {
+                setLength(drained, Math.max(length / 2, INITIAL_CAPACITY));
+                shrinks.incrementAndGet();
+                // The drained events only ever need to fit the larger of the two segments. This drain's events have
+                // already been copied in, and fit since the segment was less than a quarter full, so they're kept
+                int largest = Math.max(drained.events.length, segment.events.length);
+                if (events.length > largest * 2) {
+                    events = Arrays.copyOf(events, largest);
+                    keys = Arrays.copyOf(keys, largest);
+                    sortEvents = new Event[largest];
+                    sortKeys = new long[largest];
+                }
+            }
+        }
+        else {
+            drained.idleDrains = 0;
+        }
+    }
+
+    private static void setLength(Segment segment, int length) {
+        segment.events = new Event[length];
+        segment.keys = new long[length];
+        segment.idleDrains = 0;
+    }
+
+    private static int grow(int capacity, int size) {
+        while (capacity < size) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    // Events are mostly posted by the main thread in key order, in which case there's nothing to sort
+    private void sort(int count) {
+        for (int i = 1; i < count; i++) {
+            if (keys[i] < keys[i - 1]) {
+                mergeSort(count);
+                return;
+            }
+        }
+    }
+
+    // A bottom up merge sort, which is stable so that events posted under the same key keep the order they were posted
+    // in. Each pass merges into the other pair of arrays, which then swap roles
+    private void mergeSort(int count) {
+        Event[] srcEvents = events;
+        long[] srcKeys = keys;
+        Event[] dstEvents = sortEvents;
+        long[] dstKeys = sortKeys;
+        for (int width = 1; width < count; width *= 2) {
+            for (int low = 0; low < count; low += 2 * width) {
+                int mid = Math.min(low + width, count);
+                int high = Math.min(low + 2 * width, count);
+                int left = low;
+                int right = mid;
+                for (int i = low; i < high; i++) {
+                    if (left < mid && (right >= high || srcKeys[left] <= srcKeys[right])) {
+                        dstEvents[i] = srcEvents[left];
+                        dstKeys[i] = srcKeys[left];
+                        left++;
+                    }
+                    else {
+                        dstEvents[i] = srcEvents[right];
+                        dstKeys[i] = srcKeys[right];
+                        right++;
+                    }
+                }
+            }
+            Event[] tempEvents = srcEvents;
+            long[] tempKeys = srcKeys;
+            srcEvents = dstEvents;
+            srcKeys = dstKeys;
+            dstEvents = tempEvents;
+            dstKeys = tempKeys;
+        }
+        events = srcEvents;
+        keys = srcKeys;
+        sortEvents = dstEvents;
+        sortKeys = dstKeys;
+        Arrays.fill(sortEvents, 0, count, null);
+    }
+
+    private static class Segment {
+
+        // Only replaced by the main thread while the segment is the spare, and published by the swap that follows
+        private Event[] events;
+        private long[] keys;
+        private final AtomicInteger size;
+        private final AtomicInteger writers;
+        private final ConcurrentLinkedQueue<Overflow> overflow;
+        private final AtomicInteger numOverflowed;
+        // The number of drains in a row that the segment has been less than a quarter full. Only touched by the main
+        // thread
+        private int idleDrains;
+
+        private Segment(int capacity) {
+            events = new Event[capacity];
+            keys = new long[capacity];
+            size = new AtomicInteger(0);
+            writers = new AtomicInteger(0);
+            overflow = new ConcurrentLinkedQueue<>();
+            numOverflowed = new AtomicInteger(0);
+            idleDrains = 0;
+        }
+    }
+
+    private static class Overflow {
+
+        private final Event event;
+        private final long key;
+
+        private Overflow(Event event, long key) {
+            this.event = event;
+            this.key = key;
+        }
+    }
+
+}
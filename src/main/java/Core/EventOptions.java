@@ -0,0 +1,49 @@
+package Core;
+
+import Core.Module.CoalescePolicy;
+import Core.Module.EventPriority;
+
+/**
+ * The <code>EventOptions</code> class holds optional dispatch policies for a single type of event, which are supplied
+ * to the <code>Core</code> through <code>Module.setEventOptions()</code>. An event type may be coalesced, so that only
+ * the latest of a burst of events is dispatched, and may be given a priority, which decides whether its events are
+ * dispatched ahead of others or may be pushed back to the next dispatch when a frame is busy.
+ *
+ * @see Module#setEventOptions(Enum, EventOptions)
+ */
+public class EventOptions {
+
+    private CoalescePolicy coalescePolicy = CoalescePolicy.NONE;
+    private EventPriority priority = EventPriority.NORMAL;
+
+    /**
+     * Sets how events of this type posted in between two dispatches are coalesced.
+     *
+     * @param coalescePolicy The <code>CoalescePolicy</code> of the event type. The default is <code>NONE</code>
+     * @return This <code>EventOptions</code> object
+     */
+    public EventOptions coalesce(CoalescePolicy coalescePolicy) {
+        this.coalescePolicy = coalescePolicy;
+        return this;
+    }
+
+    /**
+     * Sets the priority that events of this type are dispatched with.
+     *
+     * @param priority The <code>EventPriority</code> of the event type. The default is <code>NORMAL</code>
+     * @return This <code>EventOptions</code> object
+     */
+    public EventOptions priority(EventPriority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    CoalescePolicy getCoalescePolicy() {
+        return coalescePolicy;
+    }
+
+    EventPriority getPriority() {
+        return priority;
+    }
+
+}
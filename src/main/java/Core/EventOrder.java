@@ -0,0 +1,64 @@
+package Core;
+
+/*
+ * The EventOrder class hands out the order keys that posted events are sorted by before they are dispatched. Events can
+ * be posted from any thread, so the order in which they reach the EventQueue changes from one frame to the next. To keep
+ * dispatch deterministic, the main thread instead reserves keys for each piece of work in the order that it schedules
+ * them, such as a state update, a range of component updates, or an event task. A thread running that work posts its
+ * events under the work's key, which it holds in its Source. Since the schedule is the same every frame, so is the order
+ * of the keys, and events posted under the same key come from a single thread and keep the order they were posted in.
+ *
+ * Work that holds a key clears it once done. Events posted without a key, such as by background jobs, blocking
+ * receivers, or the main thread in between scheduled work, are unordered and are dispatched after every other event, in
+ * the order that they were posted.
+ */
+class EventOrder {
+
+    static final long UNORDERED = Long.MAX_VALUE;
+
+    private final ThreadLocal<Source> sources;
+    private long nextKey;
+
+    EventOrder() {
+        sources = ThreadLocal.withInitial(Source::new);
+        nextKey = 0;
+    }
+
+    /*
+     * Reserves a contiguous block of keys, returning the first one. Keys increase for as long as the engine runs, so a
+     * block reserved later is always dispatched after one reserved earlier. Must only be called by the main thread.
+     */
+    long reserve(int numKeys) {
+        long firstKey = nextKey;
+        nextKey += Math.max(1, numKeys);
+        return firstKey;
+    }
+
+    // Returns the calling thread's source. Threads should hold on to their source for the duration of a piece of work
+    // rather than looking it up for every key
+    Source getSource() {
+        return sources.get();
+    }
+
+    /*
+     * The order key that the owning thread's events are currently posted under. A source is only ever used by the
+     * thread that it belongs to.
+     */
+    static class Source {
+
+        private long key = UNORDERED;
+
+        long get() {
+            return key;
+        }
+
+        void set(long key) {
+            this.key = key;
+        }
+
+        void clear() {
+            key = UNORDERED;
+        }
+    }
+
+}
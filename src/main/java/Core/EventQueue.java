@@ -1,112 +1,444 @@
 package Core;
 
+import Core.Module.BatchEventReceiver;
+import Core.Module.CoalescePolicy;
+import Core.Module.EventPriority;
 import Core.Module.EventReceiver;
+import Core.Module.OverflowPolicy;
 import EngineLibrary.Event;
 import EngineLibrary.IModule;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 
 class EventQueue {
 
-    // This hashmap keeps track of all registered events using each registered event's enum as the key, while storing
-    // all modules that have registered to receive that event as the value. This way, when a system posts an event, the
-    // EventQueue can quickly and efficiently find which modules have registered to receive that event.
+    private static final EventPriority[] PRIORITIES = EventPriority.values();
 
-    private Map<IModule, ArrayList<Enum>> regModules; // Keeps track of registered modules
+    // The dispatch table keeps track of every registered event by its enum, holding the receivers of all modules that
+    // have registered to receive that event. This way, when a system posts an event, the EventQueue can quickly and
+    // efficiently find which modules have registered to receive that event.
     // Enums must be used instead of integers, otherwise two different module events could have the same value
-    private Map<Enum, ArrayList<EventReceiver>> regEvents; // Keeps track of registered events
-    private Event[] eventQueue;
-    private int eventQueueHead;
-    private int eventQueueTail;
-
-    EventQueue() {
-        regModules = new HashMap<>();
-        regEvents = new HashMap<>();
-        eventQueue = new Event[10];
-        eventQueueHead = 0;
-        eventQueueTail = 0;
-    }
-
-    void registerEventReceiver(Enum event, IModule module, EventReceiver eventReceiver) {
-        // Perform checks on module registry
-        if (regModules.get(module) == null)
-            regModules.put(module, new ArrayList<>());
-        if (regModules.get(module).contains(event))
+    private final DispatchTable dispatchTable;
+    private final BlockingLane blockingLane;
+    private final CostModel costModel;
+    // The estimated total cost and most expensive task of the last set of tasks prepared by prepareDispatch()
+    private double dispatchCost;
+    private double maxDispatchCost;
+    private final EventOrder eventOrder;
+    private final EventBuffer eventBuffer;
+    private final Histogram eventsPerDispatch;
+    // The tasks handed out by prepareDispatch(), made up of an event task for each event followed by a batch task for
+    // each event type with batch receivers. The tasks are reused every dispatch, and the arrays only ever grow
+    private Runnable[] tasks;
+    // The number of tasks prepared by the last dispatch, the slots of which are cleared if the next dispatch has fewer
+    private int numPreparedTasks;
+    private EventTask[] eventTasks;
+    private BatchTask[] batchTasks;
+    // The event types with a batch in the current dispatch
+    private EventType[] batchTypes;
+    // The events of the current dispatch, and the DEFERRABLE events carried over to the next dispatch by the event
+    // budget
+    private Event[] pendingEvents;
+    private Event[] carriedEvents;
+    private int numCarried;
+    // Zero if the budget is unlimited
+    private final long eventBudget;
+    private final CoalesceKeys coalesceKeys;
+    // The number of event types that are coalesced, which lets dispatches skip looking for superseded events entirely
+    private int numCoalescedTypes;
+    private final AtomicLong coalescedEvents;
+    private final AtomicLong deferredEvents;
+
+    /*
+     * @param eventBudget The estimated cost in nanoseconds that a dispatch may take up before DEFERRABLE events are
+     *                    carried over to the next dispatch, or zero for an unlimited budget
+     * @param capacity The most events that may be posted in between two dispatches
+     * @param overflowPolicy What to do with events posted once the queue is full
+     */
+    EventQueue(Metrics metrics, CostModel costModel, EventOrder eventOrder, long eventBudget, int capacity,
+               OverflowPolicy overflowPolicy) {
+        this.costModel = costModel;
+        this.eventOrder = eventOrder;
+        this.eventBudget = eventBudget;
+        dispatchTable = new DispatchTable();
+        blockingLane = new BlockingLane(metrics);
+        eventBuffer = new EventBuffer(eventOrder, metrics, capacity, overflowPolicy);
+        eventsPerDispatch = metrics.histogram("events.dispatched");
+        tasks = new Runnable[0];
+        eventTasks = new EventTask[0];
+        batchTasks = new BatchTask[0];
+        batchTypes = new EventType[0];
+        pendingEvents = new Event[0];
+        carriedEvents = new Event[0];
+        numCarried = 0;
+        coalesceKeys = new CoalesceKeys();
+        coalescedEvents = metrics.counter("events.coalesced");
+        deferredEvents = metrics.counter("events.deferred");
+    }
+
+    void registerEventReceiver(Enum event, IModule module, EventReceiver eventReceiver, boolean blocking) {
+        EventType eventType = dispatchTable.get(event);
+        if (eventType.isRegistered(module))
             throw new RuntimeException("Module " + module + " has already been registered to recieve " + event + " event");
-        // Update module registry
-        ArrayList<Enum> enums = regModules.get(module);
-        enums.add(event);
-        regModules.put(module, enums);
+        eventType.register(module, eventReceiver, blocking);
+    }
 
-        // Update event registry
-        // Check if enum event already exists in the registry. If so, the EventReceiver object can be appended to that
-        // event's registration list. Otherwise, a new mapping can be made for the event
-        if (regEvents.get(event) != null) {
-            regEvents.get(event).add(eventReceiver);
+    void registerBatchEventReceiver(Enum event, IModule module, BatchEventReceiver batchReceiver) {
+        EventType eventType = dispatchTable.get(event);
+        if (eventType.isRegistered(module))
+            throw new RuntimeException("Module " + module + " has already been registered to recieve " + event + " event");
+        eventType.registerBatch(module, batchReceiver);
+    }
+
+    /*
+     * Sets the dispatch policies of an event type. Must only be called by the main thread.
+     */
+    void setEventOptions(Enum event, EventOptions options) {
+        EventType eventType = dispatchTable.get(event);
+        if (eventType.getCoalescePolicy() != CoalescePolicy.NONE) {
+            numCoalescedTypes--;
         }
-        else {
-            ArrayList<EventReceiver> newRegList = new ArrayList<>();
-            newRegList.add(eventReceiver);
-            regEvents.put(event, newRegList);
+        eventType.setOptions(options);
+        if (eventType.getCoalescePolicy() != CoalescePolicy.NONE) {
+            numCoalescedTypes++;
         }
     }
 
     void unregisterModule(Enum event, IModule module) {
-        ArrayList<Enum> enums = regModules.get(module);
-        if (enums == null)
+        if (!dispatchTable.get(event).unregister(module))
             throw new RuntimeException("Module " + module + " has not previously registered to receive event " + event);
-        enums.remove(event);
     }
 
-    void postEvent(Event event) {
+    /*
+     * Posts an event to be dispatched at the start of the next input or render phase. This method is safe to call from
+     * any thread, including from component updates running on worker threads. The queue takes over the poster's
+     * reference to a pooled event, and releases it once the event has been dispatched, unless the queue is full and
+     * rejects the event, in which case false is returned and the poster keeps its reference.
+     */
+    boolean postEvent(Event event) {
+        if (event.isReleased())
+            throw new RuntimeException("Event " + event.eventEnum + " has been posted after being released");
         // Ensure that there are modules that have registered for this event before adding it to the queue
-        ArrayList<EventReceiver> eventReceivers = regEvents.get(event.eventEnum);
-        if (eventReceivers != null) {
-            eventQueue[eventQueueTail] = event;
-            // See (https://stackoverflow.com/questions/17524673/understanding-the-modulus-operator?noredirect=1&lq=1)
-            // for help understanding the modulus (%) operator
-            eventQueueTail = (eventQueueTail + 1) % eventQueue.length;
-            // If the head of the queue and the tail of the queue are in the same spot even AFTER incrementing the
-            // tail, then the array must be full
-            if (eventQueueHead == eventQueueTail) {
-                // TODO: Replace with logger class
-                System.out.println("The event queue is full");
-                System.out.println("New event queue length: " + eventQueue.length * 2);
-                // Copy the head to end of array portion, then the start of array to tail portion
-                Event[] bufferArray = new Event[eventQueue.length * 2];
-                int length = eventQueue.length - eventQueueHead;
-                System.arraycopy(eventQueue, eventQueueHead, bufferArray, 0, length);
-                System.arraycopy(eventQueue, 0, bufferArray, length, eventQueueTail);
-                eventQueue = new Event[eventQueue.length * 2];
-                eventQueueHead = 0;
-                eventQueueTail = length + eventQueueTail;
-                System.arraycopy(bufferArray, 0, eventQueue, 0, eventQueueTail);
+        if (dispatchTable.get(event.eventEnum).hasReceivers()) {
+            return eventBuffer.add(event);
+        }
+        event.release();
+        return true;
+    }
+
+    /*
+     * Takes every event posted since the last dispatch and prepares the tasks that notify their receivers, which are then
+     * read with getEventTasks(). Each event with receivers gets its own task, while the events of each type with batch
+     * receivers are collected into a single batch task. Receivers on the blocking lane are notified straight away. The
+     * tasks are reused by the next dispatch, so they must all have been run by then. Pooled events are released by
+     * whichever of their tasks and blocking lane notification finishes last. Must only be called by the main thread.
+     *
+     * Before being dispatched, events of coalesced types that have been superseded by a later event are dropped. The
+     * remaining events are dispatched by priority, with CRITICAL events first and DEFERRABLE events last. DEFERRABLE
+     * events that would take the dispatch over the event budget are carried over to the next dispatch instead.
+     *
+     * @return The number of tasks prepared
+     */
+    int prepareDispatch() {
+        int numEvents = gatherEvents();
+        eventsPerDispatch.record(numEvents);
+        dispatchCost = 0;
+        maxDispatchCost = 0;
+        if (numEvents == 0) {
+            clearStaleTasks(0);
+            return 0;
+        }
+        ensureCapacity(numEvents);
+        if (numCoalescedTypes > 0) {
+            dropSuperseded(numEvents);
+        }
+        // Each task posts under its own key, so that events posted by receivers are dispatched in the same order as the
+        // events that caused them
+        long nextKey = eventOrder.reserve(numEvents);
+        int numTasks = 0;
+        int numBatches = 0;
+        int numDeferred = 0;
+        for (int p = 0; p < PRIORITIES.length; p++) {
+            for (int i = 0; i < numEvents; i++) {
+                Event event = pendingEvents[i];
+                if (event == null) {
+                    continue;
+                }
+                EventType eventType = dispatchTable.get(event.eventEnum);
+                if (eventType.getPriority() != PRIORITIES[p]) {
+                    continue;
+                }
+                pendingEvents[i] = null;
+                EventReceiver[] receivers = eventType.getReceivers();
+                EventReceiver[] blockingReceivers = eventType.getBlockingReceivers();
+                boolean batched = eventType.getBatchReceivers().length > 0;
+                int numHolders = (receivers.length > 0 ? 1 : 0) + (blockingReceivers.length > 0 ? 1 : 0) + (batched ? 1 : 0);
+                // Every receiver may have been unregistered since the event was posted
+                if (numHolders == 0) {
+                    event.release();
+                    continue;
+                }
+                double cost = (receivers.length > 0 ? costModel.getEventCost(eventType.getEvent()) : 0)
+                        + (batched ? costModel.getBatchCost(eventType.getEvent(), 1) : 0);
+                // Events carried over from the last dispatch come first, and are never carried over twice
+                if (PRIORITIES[p] == EventPriority.DEFERRABLE && eventBudget > 0 && i >= numCarried
+                        && dispatchCost + cost > eventBudget) {
+                    carriedEvents[numDeferred++] = event;
+                    continue;
+                }
+                // The queue's reference to the event goes to the first of its holders, and the others take one of
+                // their own
+                for (int y = 1; y < numHolders; y++) {
+                    event.retain();
+                }
+                if (receivers.length > 0) {
+                    EventTask task = eventTasks[numTasks];
+                    task.set(event, eventType, receivers, nextKey++);
+                    tasks[numTasks++] = task;
+                }
+                if (batched && eventType.addToBatch(event)) {
+                    batchTypes[numBatches++] = eventType;
+                }
+                // Receivers on the blocking lane are notified in the background instead of by the event tasks
+                if (blockingReceivers.length > 0) {
+                    blockingLane.submit(event, blockingReceivers);
+                }
+                dispatchCost += cost;
+                maxDispatchCost = Math.max(maxDispatchCost, cost);
+            }
+        }
+        numCarried = numDeferred;
+        deferredEvents.addAndGet(numDeferred);
+        // Batches are dispatched after the events that are dispatched individually, and are each estimated as a single
+        // task that can't be split across threads
+        long firstBatchKey = eventOrder.reserve(numBatches);
+        for (int i = 0; i < numBatches; i++) {
+            EventType eventType = batchTypes[i];
+            batchTypes[i] = null;
+            BatchTask task = batchTasks[i];
+            task.set(eventType, eventType.getBatchReceivers(), firstBatchKey + i);
+            tasks[numTasks++] = task;
+            maxDispatchCost = Math.max(maxDispatchCost,
+                    costModel.getBatchCost(eventType.getEvent(), eventType.getBatchSize()));
+        }
+        clearStaleTasks(numTasks);
+        return numTasks;
+    }
+
+    // Clears the slots of the last dispatch's tasks that aren't part of this dispatch, so that a task that has already
+    // been run is never handed out a second time
+    private void clearStaleTasks(int numTasks) {
+        if (numTasks < numPreparedTasks) {
+            Arrays.fill(tasks, numTasks, numPreparedTasks, null);
+        }
+        numPreparedTasks = numTasks;
+    }
+
+    // Gathers the events carried over from the last dispatch, followed by the events posted since, into the pending
+    // events. Returns the total number of events
+    private int gatherEvents() {
+        int numPosted = eventBuffer.drain();
+        int numEvents = numCarried + numPosted;
+        if (pendingEvents.length < numEvents) {
+            pendingEvents = new Event[Math.max(numEvents, pendingEvents.length * 2)];
+            carriedEvents = Arrays.copyOf(carriedEvents, pendingEvents.length);
+        }
+        System.arraycopy(carriedEvents, 0, pendingEvents, 0, numCarried);
+        Arrays.fill(carriedEvents, 0, numCarried, null);
+        for (int i = 0; i < numPosted; i++) {
+            pendingEvents[numCarried + i] = eventBuffer.take(i);
+        }
+        return numEvents;
+    }
+
+    // Drops every event of a coalesced type that is followed by a later event with the same coalesce key. Events are
+    // visited from the latest to the earliest, so the first event seen for each key is the one that's kept
+    private void dropSuperseded(int numEvents) {
+        int numDropped = 0;
+        for (int i = numEvents - 1; i >= 0; i--) {
+            Event event = pendingEvents[i];
+            EventType eventType = dispatchTable.get(event.eventEnum);
+            CoalescePolicy coalescePolicy = eventType.getCoalescePolicy();
+            if (coalescePolicy == CoalescePolicy.NONE) {
+                continue;
+            }
+            long key = coalescePolicy == CoalescePolicy.BY_KEY ? event.getCoalesceKey() : 0;
+            if (!coalesceKeys.add(eventType, key)) {
+                pendingEvents[i] = null;
+                event.release();
+                numDropped++;
             }
         }
+        coalesceKeys.clear();
+        coalescedEvents.addAndGet(numDropped);
     }
 
-    Runnable[] getEventReceivers() {
-        if (eventQueueTail == 0) {
-            return new Runnable[0];
+    // Makes sure that there are enough tasks for the supplied number of events. Each event needs at most one event
+    // task, and at most one batch task is needed per event
+    private void ensureCapacity(int numEvents) {
+        if (eventTasks.length >= numEvents) {
+            return;
+        }
+        int capacity = Math.max(numEvents, eventTasks.length * 2);
+        EventTask[] eventTasks = new EventTask[capacity];
+        BatchTask[] batchTasks = new BatchTask[capacity];
+        System.arraycopy(this.eventTasks, 0, eventTasks, 0, this.eventTasks.length);
+        System.arraycopy(this.batchTasks, 0, batchTasks, 0, this.batchTasks.length);
+        for (int i = this.eventTasks.length; i < capacity; i++) {
+            eventTasks[i] = new EventTask();
+            batchTasks[i] = new BatchTask();
         }
-        Runnable[] runnables = new Runnable[eventQueueTail + 1];
-        // Iterate through each event in the queue
-        for (int i = 0; i < eventQueueTail; i++) {
-            Event event = eventQueue[i];
-            Enum eventEnum = event.eventEnum;
-            // Get all EventReceivers registered under this event
-            ArrayList<EventReceiver> eventReceivers = regEvents.get(eventEnum);
-            // Store event's notifyModules method in a Runnable
-            Runnable runnable = () -> event.notifyModules((EventReceiver[]) eventReceivers.toArray());
-            // Add runnable to array
-            runnables[i] = runnable;
+        this.eventTasks = eventTasks;
+        this.batchTasks = batchTasks;
+        tasks = new Runnable[capacity * 2];
+        batchTypes = new EventType[capacity];
+    }
+
+    // Returns the tasks prepared by the last call to prepareDispatch(). Only as many tasks as prepareDispatch()
+    // returned are valid
+    Runnable[] getEventTasks() {
+        return tasks;
+    }
+
+    double getDispatchCost() {
+        return dispatchCost;
+    }
+
+    double getMaxDispatchCost() {
+        return maxDispatchCost;
+    }
+
+    /*
+     * Reports the outcome of every blocking lane notification that has completed since the last call, rethrowing any
+     * exception raised by a blocking receiver. Must only be called by the main thread.
+     */
+    void reportBlockingCompletions() {
+        blockingLane.reportCompletions();
+    }
+
+    void shutDown() {
+        blockingLane.shutDown();
+    }
+
+    // Notifies the receivers of a single event, timing it to keep the event's cost estimate up to date
+    private class EventTask implements Runnable {
+
+        private Event event;
+        private EventType eventType;
+        private EventReceiver[] receivers;
+        private long orderKey;
+
+        private void set(Event event, EventType eventType, EventReceiver[] receivers, long orderKey) {
+            this.event = event;
+            this.eventType = eventType;
+            this.receivers = receivers;
+            this.orderKey = orderKey;
+        }
+
+        @Override
+        public void run() {
+            // Each event task is run exactly once per dispatch. Running it again would notify the receivers of an
+            // event that has already been released, and possibly reused
+            if (event == null) {
+                throw new RuntimeException("Event task for " + eventType.getEvent() + " has already been run");
+            }
+            EventOrder.Source source = eventOrder.getSource();
+            source.set(orderKey);
+            long startTime = System.nanoTime();
+            event.notifyModules(receivers);
+            costModel.recordEvent(eventType.getEvent(), System.nanoTime() - startTime);
+            source.clear();
+            // Drop the event so that it isn't held on to until the task is next reused
+            Event event = this.event;
+            this.event = null;
+            event.release();
+        }
+    }
+
+    // A set of coalesce keys, each belonging to an event type, that is emptied after every dispatch. Keys are kept in
+    // an open addressed hash table so that looking for superseded events doesn't allocate
+    private static class CoalesceKeys {
+
+        private EventType[] types = new EventType[16];
+        private long[] keys = new long[16];
+        private int size;
+
+        // Adds a key, returning false if it's already in the set
+        private boolean add(EventType eventType, long key) {
+            if ((size + 1) * 2 > types.length) {
+                grow();
+            }
+            int mask = types.length - 1;
+            int index = hash(eventType, key) & mask;
+            while (types[index] != null) {
+                if (types[index] == eventType && keys[index] == key) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+            types[index] = eventType;
+            keys[index] = key;
+            size++;
+            return true;
+        }
+
+        private void clear() {
+            if (size > 0) {
+                Arrays.fill(types, null);
+                size = 0;
+            }
+        }
+
+        private void grow() {
+            EventType[] oldTypes = types;
+            long[] oldKeys = keys;
+            types = new EventType[oldTypes.length * 2];
+            keys = new long[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldTypes.length; i++) {
+                if (oldTypes[i] != null) {
+                    add(oldTypes[i], oldKeys[i]);
+                }
+            }
+        }
+
+        private static int hash(EventType eventType, long key) {
+            long hash = (key ^ System.identityHashCode(eventType)) * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+
+    // Notifies the batch receivers of a single event type of every event in its batch
+    private class BatchTask implements Runnable {
+
+        private EventType eventType;
+        private BatchEventReceiver[] batchReceivers;
+        private long orderKey;
+
+        private void set(EventType eventType, BatchEventReceiver[] batchReceivers, long orderKey) {
+            this.eventType = eventType;
+            this.batchReceivers = batchReceivers;
+            this.orderKey = orderKey;
+        }
+
+        @Override
+        public void run() {
+            EventOrder.Source source = eventOrder.getSource();
+            source.set(orderKey);
+            Event[] batch = eventType.getBatch();
+            int batchSize = eventType.getBatchSize();
+            long startTime = System.nanoTime();
+            for (int i = 0; i < batchReceivers.length; i++) {
+                batchReceivers[i].onNotify(batch, batchSize);
+            }
+            costModel.recordBatch(eventType.getEvent(), System.nanoTime() - startTime, batchSize);
+            source.clear();
+            for (int i = 0; i < batchSize; i++) {
+                batch[i].release();
+            }
+            eventType.clearBatch();
         }
-        // Reset head and tail to zero to "clear" the queue
-        eventQueueHead = 0;
-        eventQueueTail = 0;
-        return  runnables;
     }
 
 }
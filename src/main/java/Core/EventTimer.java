@@ -0,0 +1,117 @@
+package Core;
+
+import EngineLibrary.Event;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The <code>EventTimer</code> class represents an event scheduled to be posted on a future engine tick, either once or
+ * repeatedly. Timers count update ticks rather than real time, so a timer scheduled for 50 ticks fires after 50 updates
+ * no matter how long they take, and pauses along with the simulation. An <code>EventTimer</code> object doubles as the
+ * handle used to cancel the timer.
+ *
+ * @see Module#scheduleEvent(Event, long)
+ * @see Module#scheduleRepeatingEvent(Supplier, long, long)
+ */
+public class EventTimer {
+
+    private static final int PENDING = 0;
+    private static final int FIRED = 1;
+    private static final int CANCELLED = 2;
+
+    private final TimerWheel timerWheel;
+    private final AtomicInteger state;
+    // Null for repeating timers, which get a new event from their supplier every time they fire
+    private Event event;
+    private final Supplier<? extends Event> eventSupplier;
+    private final long delay;
+    // Zero for timers that only fire once
+    private final long period;
+    // The remaining fields are only ever accessed by the main thread, while the timer is held by the timer wheel
+    long deadline;
+    EventTimer previous;
+    EventTimer next;
+    // The slot that the timer is in, if it's linked into one
+    int level;
+    int slot;
+    boolean linked;
+
+    EventTimer(TimerWheel timerWheel, Event event, Supplier<? extends Event> eventSupplier, long delay, long period) {
+        this.timerWheel = timerWheel;
+        this.event = event;
+        this.eventSupplier = eventSupplier;
+        this.delay = delay;
+        this.period = period;
+        state = new AtomicInteger(PENDING);
+    }
+
+    /*
+     * Returns the event to be posted by the timer, or null if it has been cancelled. Once a timer that only fires once
+     * has been fired, it can no longer be cancelled. Must only be called by the main thread.
+     */
+    Event fire() {
+        if (eventSupplier != null) {
+            return state.get() == PENDING ? eventSupplier.get() : null;
+        }
+        if (!state.compareAndSet(PENDING, FIRED)) {
+            return null;
+        }
+        Event event = this.event;
+        this.event = null;
+        return event;
+    }
+
+    /*
+     * Drops the event held by a cancelled timer. Must only be called by the main thread, once the timer has been taken
+     * off of the timer wheel.
+     */
+    void discard() {
+        if (event != null) {
+            event.release();
+            event = null;
+        }
+    }
+
+    long getDelay() {
+        return delay;
+    }
+
+    long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Cancels the timer, so that it no longer fires. Cancelling a timer that only fires once releases its event if it
+     * was acquired from an <code>EventPool</code>. This method is safe to call from any thread.
+     *
+     * @return True if the timer was cancelled, false if it had already fired or been cancelled
+     */
+    public boolean cancel() {
+        if (!state.compareAndSet(PENDING, CANCELLED)) {
+            return false;
+        }
+        timerWheel.cancel(this);
+        return true;
+    }
+
+    /**
+     * Returns whether the timer was cancelled.
+     *
+     * @return True if the timer was cancelled, otherwise false
+     */
+    public boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    /**
+     * Returns whether the timer is still due to fire, which is the case until a timer that only fires once has fired,
+     * or until a repeating timer has been cancelled.
+     *
+     * @return True if the timer is pending, otherwise false
+     */
+    public boolean isPending() {
+        return state.get() == PENDING;
+    }
+
+}
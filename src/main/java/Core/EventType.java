@@ -0,0 +1,184 @@
+package Core;
+
+import Core.Module.BatchEventReceiver;
+import Core.Module.CoalescePolicy;
+import Core.Module.EventPriority;
+import Core.Module.EventReceiver;
+import EngineLibrary.Event;
+import EngineLibrary.IModule;
+
+import java.util.Arrays;
+
+/*
+ * The EventType class holds the receivers registered for a single event enum, along with the module each receiver
+ * belongs to. The receiver arrays are rebuilt whenever a receiver is registered or unregistered, and are published as a
+ * whole, so dispatch can hand the current array straight to Event.notifyModules() from any thread without copying it.
+ *
+ * Batch receivers are notified once per dispatch with every event of the type, so the event type also collects that
+ * dispatch's events into a batch, which is reused from one dispatch to the next. The event type's dispatch policies
+ * are only ever read by the main thread.
+ */
+class EventType {
+
+    private static final EventReceiver[] NO_RECEIVERS = new EventReceiver[0];
+    private static final BatchEventReceiver[] NO_BATCH_RECEIVERS = new BatchEventReceiver[0];
+    private static final IModule[] NO_MODULES = new IModule[0];
+    private static final Event[] NO_EVENTS = new Event[0];
+
+    private final Enum event;
+    private volatile EventReceiver[] receivers;
+    private volatile EventReceiver[] blockingReceivers;
+    private volatile BatchEventReceiver[] batchReceivers;
+    // The module that registered each receiver, at the same index as its receiver. Only read during registration
+    private IModule[] modules;
+    private IModule[] blockingModules;
+    private IModule[] batchModules;
+    // The events of the current dispatch, in dispatch order, which are only ever written to by the main thread and
+    // handed to the batch task along with it. The array only ever grows
+    private Event[] batch;
+    private int batchSize;
+    private CoalescePolicy coalescePolicy;
+    private EventPriority priority;
+
+    EventType(Enum event) {
+        this.event = event;
+        receivers = NO_RECEIVERS;
+        blockingReceivers = NO_RECEIVERS;
+        batchReceivers = NO_BATCH_RECEIVERS;
+        modules = NO_MODULES;
+        blockingModules = NO_MODULES;
+        batchModules = NO_MODULES;
+        batch = NO_EVENTS;
+        batchSize = 0;
+        coalescePolicy = CoalescePolicy.NONE;
+        priority = EventPriority.NORMAL;
+    }
+
+    Enum getEvent() {
+        return event;
+    }
+
+    EventReceiver[] getReceivers() {
+        return receivers;
+    }
+
+    EventReceiver[] getBlockingReceivers() {
+        return blockingReceivers;
+    }
+
+    BatchEventReceiver[] getBatchReceivers() {
+        return batchReceivers;
+    }
+
+    CoalescePolicy getCoalescePolicy() {
+        return coalescePolicy;
+    }
+
+    EventPriority getPriority() {
+        return priority;
+    }
+
+    void setOptions(EventOptions options) {
+        coalescePolicy = options.getCoalescePolicy();
+        priority = options.getPriority();
+    }
+
+    // Events without any receivers are never queued
+    boolean hasReceivers() {
+        return receivers.length > 0 || blockingReceivers.length > 0 || batchReceivers.length > 0;
+    }
+
+    boolean isRegistered(IModule module) {
+        return indexOf(modules, module) >= 0 || indexOf(blockingModules, module) >= 0
+                || indexOf(batchModules, module) >= 0;
+    }
+
+    void register(IModule module, EventReceiver eventReceiver, boolean blocking) {
+        if (blocking) {
+            blockingModules = append(blockingModules, module);
+            blockingReceivers = append(blockingReceivers, eventReceiver);
+        }
+        else {
+            modules = append(modules, module);
+            receivers = append(receivers, eventReceiver);
+        }
+    }
+
+    void registerBatch(IModule module, BatchEventReceiver batchReceiver) {
+        batchModules = append(batchModules, module);
+        batchReceivers = append(batchReceivers, batchReceiver);
+    }
+
+    /*
+     * Removes the receiver registered by the supplied module, returning whether the module had registered one.
+     */
+    boolean unregister(IModule module) {
+        int index = indexOf(modules, module);
+        if (index >= 0) {
+            modules = remove(modules, index);
+            receivers = remove(receivers, index);
+            return true;
+        }
+        index = indexOf(blockingModules, module);
+        if (index >= 0) {
+            blockingModules = remove(blockingModules, index);
+            blockingReceivers = remove(blockingReceivers, index);
+            return true;
+        }
+        index = indexOf(batchModules, module);
+        if (index >= 0) {
+            batchModules = remove(batchModules, index);
+            batchReceivers = remove(batchReceivers, index);
+            return true;
+        }
+        return false;
+    }
+
+    /*
+     * Adds an event to the current dispatch's batch, returning whether it's the first event of the batch. Must only be
+     * called by the main thread.
+     */
+    boolean addToBatch(Event event) {
+        if (batchSize == batch.length) {
+            batch = Arrays.copyOf(batch, Math.max(16, batch.length * 2));
+        }
+        batch[batchSize++] = event;
+        return batchSize == 1;
+    }
+
+    Event[] getBatch() {
+        return batch;
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    // Empties the batch once its events have been dispatched, dropping the references to them
+    void clearBatch() {
+        Arrays.fill(batch, 0, batchSize, null);
+        batchSize = 0;
+    }
+
+    private static int indexOf(IModule[] modules, IModule module) {
+        for (int i = 0; i < modules.length; i++) {
+            if (modules[i] == module) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static <T> T[] append(T[] array, T element) {
+        T[] appended = Arrays.copyOf(array, array.length + 1);
+        appended[array.length] = element;
+        return appended;
+    }
+
+    private static <T> T[] remove(T[] array, int index) {
+        T[] removed = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, removed, index, array.length - index - 1);
+        return removed;
+    }
+
+}
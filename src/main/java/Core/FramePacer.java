@@ -0,0 +1,77 @@
+package Core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * The FramePacer class limits the engine loop to a target frame rate. At the end of every frame, the main thread waits
+ * for the next frame's deadline by first sleeping through most of the remaining time, then spinning through the rest.
+ * Sleeping alone is too coarse to hit a deadline precisely, as the OS may wake a sleeping thread late by a millisecond
+ * or more, so the pacer keeps a running estimate of how late it is woken up and stops sleeping early by that much.
+ *
+ * Deadlines are spaced a fixed period apart rather than measured from the end of the previous wait, so that the frame
+ * rate doesn't drift. A frame that overruns its deadline is counted as missed, and if it overruns by more than a whole
+ * period the schedule is restarted from the current time instead of rendering frames back-to-back to catch up.
+ */
+class FramePacer {
+
+    // The initial estimate of how late a sleeping thread is woken up, which is quickly replaced by measurements
+    private static final long INITIAL_OVERSHOOT_NANOS = 1000000;
+    // Remaining time below which the pacer only spins, as sleeping for very short periods is never accurate
+    private static final long MIN_SLEEP_NANOS = 100000;
+
+    private final long period;
+    private final Histogram waitTime;
+    private final AtomicLong missedDeadlines;
+    private long deadline;
+    private long overshootEstimate;
+
+    /*
+     * @param targetFPS The number of frames per second to limit the engine loop to
+     */
+    FramePacer(double targetFPS, Metrics metrics) {
+        period = Math.round(1e9 / targetFPS);
+        waitTime = metrics.histogram("frame.wait.time");
+        missedDeadlines = metrics.counter("frame.missed.deadlines");
+        overshootEstimate = INITIAL_OVERSHOOT_NANOS;
+        deadline = System.nanoTime() + period;
+    }
+
+    /*
+     * Waits until the deadline of the current frame, then schedules the deadline of the next one. Must only be called
+     * by the main thread, once at the end of every frame.
+     */
+    void pace() {
+        long now = System.nanoTime();
+        if (now >= deadline) {
+            missedDeadlines.incrementAndGet();
+            deadline = now - deadline > period ? now + period : deadline + period;
+            return;
+        }
+        long waitStart = now;
+        // Sleep through most of the remaining time, leaving enough of it to absorb a late wake up
+        long sleepTime = deadline - now - overshootEstimate;
+        if (sleepTime > MIN_SLEEP_NANOS) {
+            LockSupport.parkNanos(sleepTime);
+            long woken = System.nanoTime();
+            long overshoot = Math.max(0, (woken - now) - sleepTime);
+            // Rise quickly to match a slow wake up, but only fall back slowly, as a single fast wake up says little
+            // about the next one
+            if (overshoot > overshootEstimate) {
+                overshootEstimate = (overshootEstimate + overshoot) / 2;
+            }
+            else {
+                overshootEstimate -= (overshootEstimate - overshoot) / 16;
+            }
+            now = woken;
+        }
+        // Spin through the rest
+        while (now < deadline) {
+            Thread.yield();
+            now = System.nanoTime();
+        }
+        waitTime.record(now - waitStart);
+        deadline += period;
+    }
+
+}
@@ -0,0 +1,97 @@
+package Core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * The Histogram class records the distribution of non-negative long values, such as durations in nanoseconds, into
+ * log-linear buckets in the style of an HDR histogram. Every power of two range is split into a fixed number of linear
+ * sub-buckets, which keeps the relative error of any reported value within about 3% across the entire range of a long.
+ * All buckets are allocated up front, so recording never allocates and is safe to do from any thread.
+ */
+class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS);
+
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount;
+    private final AtomicLong sum;
+    private final AtomicLong max;
+
+    Histogram() {
+        counts = new AtomicLongArray(NUM_BUCKETS);
+        totalCount = new AtomicLong(0);
+        sum = new AtomicLong(0);
+        max = new AtomicLong(0);
+    }
+
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    long getCount() {
+        return totalCount.get();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    /*
+     * Returns the lowest value of the bucket that the specified percentile falls within.
+     *
+     * @param percentile The percentile, from 0 to 100
+     */
+    long getPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil((percentile / 100) * count));
+        long cumulativeCount = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            cumulativeCount += counts.get(i);
+            if (cumulativeCount >= target) {
+                return valueOf(i);
+            }
+        }
+        return max.get();
+    }
+
+    // Values below the number of sub-buckets each get their own bucket. Above that, the position of the highest set
+    // bit picks the power of two range, and the bits just below it pick the sub-bucket within that range
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + (shift * SUB_BUCKETS) + subBucket;
+    }
+
+    private static long valueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index / SUB_BUCKETS) - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << shift;
+    }
+
+}
@@ -0,0 +1,57 @@
+package Core;
+
+import Core.Module.IdleType;
+
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * The IdleStrategy class decides what a thread does while it has nothing to do, whether that is a worker thread
+ * waiting for tasks or the main thread waiting for a batch to complete. Callers keep track of how many times in a row
+ * they have been idle and pass that count in, which allows the spin-then-back-off strategies to escalate from spinning
+ * to yielding to parking the longer a thread remains idle.
+ */
+class IdleStrategy {
+
+    private static final int SPIN_LIMIT = 100;
+    private static final int YIELD_LIMIT = SPIN_LIMIT + 100;
+    private static final long MIN_PARK_NANOS = 1000;
+
+    private final IdleType idleType;
+
+    IdleStrategy(IdleType idleType) {
+        this.idleType = idleType;
+    }
+
+    /*
+     * Idles the calling thread once.
+     *
+     * @param idleCount The number of times the calling thread has idled in a row, which should be reset to zero once
+     *                  the thread finds work
+     * @param maxParkNanos The longest that the calling thread may be parked for. Threads that are woken up with
+     *                     LockSupport.unpark() can afford longer park times than those that must wake up on their own
+     * @return The new idle count
+     */
+    int idle(int idleCount, long maxParkNanos) {
+        if (idleType == IdleType.BUSY_SPIN || idleCount < SPIN_LIMIT) {
+            return idleCount + 1;
+        }
+        if (idleType == IdleType.SPIN_YIELD || idleCount < YIELD_LIMIT) {
+            Thread.yield();
+            return idleCount + 1;
+        }
+        // Double the park time for every round spent parked so that a thread left idle for long periods, such as in a
+        // menu scene, wakes up as rarely as possible
+        int parkRounds = Math.min(idleCount - YIELD_LIMIT, 30);
+        LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << parkRounds, maxParkNanos));
+        return idleCount + 1;
+    }
+
+    /*
+     * Returns whether threads using this strategy may be parked, in which case submitting threads should unpark them
+     * once new work is available.
+     */
+    boolean parks() {
+        return idleType == IdleType.SPIN_PARK;
+    }
+
+}
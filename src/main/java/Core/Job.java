@@ -0,0 +1,179 @@
+package Core;
+
+import Core.Module.JobPriority;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The <code>Job</code> class represents a piece of background work submitted to the <code>Core</code>, such as
+ * pathfinding, procedural generation, or asset decoding. Jobs are run by worker threads only while they have no frame
+ * work to do, so a job never delays a frame. A <code>Job</code> object doubles as the handle to the job's result: poll
+ * it with <code>isDone()</code>, or register a continuation with <code>whenComplete()</code> to be notified on the
+ * main thread once the job has completed.
+ * <p>
+ * A job cannot be interrupted once it has started, and holds on to its worker thread until it returns. Long running
+ * work should therefore be broken up into several smaller jobs.
+ *
+ * @param <T> The type of the job's result
+ * @see Module#submitJob(Callable, JobPriority)
+ */
+public class Job<T> {
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int SUCCEEDED = 2;
+    private static final int FAILED = 3;
+    private static final int CANCELLED = 4;
+
+    private final Callable<T> task;
+    private final JobPriority priority;
+    private final JobQueue jobQueue;
+    private final AtomicInteger state;
+    // Written before the state is set to SUCCEEDED or FAILED, which publishes them to any thread that reads the state
+    private T result;
+    private Throwable failure;
+    // Guarded by this job's monitor, so that a continuation registered while the job completes is never lost
+    private Consumer<Job<T>> continuation;
+    // Whether the continuation has been queued to run, which only the first of completion and registration may do.
+    // Guarded by this job's monitor
+    private boolean notified;
+
+    Job(Callable<T> task, JobPriority priority, JobQueue jobQueue) {
+        this.task = task;
+        this.priority = priority;
+        this.jobQueue = jobQueue;
+        state = new AtomicInteger(QUEUED);
+    }
+
+    /*
+     * Runs the job on the calling thread, unless it has already been cancelled.
+     */
+    void run() {
+        if (!state.compareAndSet(QUEUED, RUNNING)) {
+            return;
+        }
+        try {
+            result = task.call();
+            state.set(SUCCEEDED);
+        }
+        catch (Throwable t) {
+            failure = t;
+            state.set(FAILED);
+        }
+        notifyContinuation();
+    }
+
+    // Queues the continuation to be run on the main thread once the job has both completed and been given a
+    // continuation. Called after each of the two, so whichever comes last queues it, and only the once
+    private synchronized void notifyContinuation() {
+        if (continuation != null && isDone() && !notified) {
+            notified = true;
+            jobQueue.complete(this);
+        }
+    }
+
+    /*
+     * Runs the job's continuation. Must only be called by the main thread.
+     */
+    void runContinuation() {
+        Consumer<Job<T>> continuation;
+        synchronized (this) {
+            continuation = this.continuation;
+        }
+        continuation.accept(this);
+    }
+
+    /**
+     * Registers a continuation to be run on the main thread once the job has completed, whether it succeeded, failed,
+     * or was cancelled. Continuations are run at the start of the input phase following the job's completion, so they
+     * may safely interact with the rest of the engine. If the job has already completed, the continuation is run at the
+     * start of the next input phase. Only one continuation may be registered per job.
+     *
+     * @param continuation The continuation, which is passed this job
+     * @return This <code>Job</code> object
+     */
+    public Job<T> whenComplete(Consumer<Job<T>> continuation) {
+        synchronized (this) {
+            if (this.continuation != null) {
+                throw new RuntimeException("Job already has a continuation");
+            }
+            this.continuation = continuation;
+        }
+        notifyContinuation();
+        return this;
+    }
+
+    /**
+     * Cancels the job if it has not started running yet. A cancelled job is never run, although its continuation is
+     * still notified.
+     *
+     * @return True if the job was cancelled, false if it has already started or completed
+     */
+    public boolean cancel() {
+        if (!state.compareAndSet(QUEUED, CANCELLED)) {
+            return false;
+        }
+        notifyContinuation();
+        return true;
+    }
+
+    /**
+     * Returns whether the job has completed, either by returning a result, failing, or being cancelled.
+     *
+     * @return True if the job has completed, otherwise false
+     */
+    public boolean isDone() {
+        return state.get() >= SUCCEEDED;
+    }
+
+    /**
+     * Returns whether the job was cancelled before it could be run.
+     *
+     * @return True if the job was cancelled, otherwise false
+     */
+    public boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    /**
+     * Returns the result of the job. This method does not wait for the job to complete.
+     *
+     * @return The value returned by the job
+     * @throws RuntimeException If the job has not completed, was cancelled, or threw an exception, in which case the
+     *                          exception is attached as the cause
+     */
+    public T getResult() {
+        int state = this.state.get();
+        if (state == SUCCEEDED) {
+            return result;
+        }
+        if (state == FAILED) {
+            throw new RuntimeException("Job failed", failure);
+        }
+        if (state == CANCELLED) {
+            throw new RuntimeException("Job was cancelled");
+        }
+        throw new RuntimeException("Job has not completed");
+    }
+
+    /**
+     * Returns the exception thrown by the job.
+     *
+     * @return The exception thrown by the job, or null if the job has not failed
+     */
+    public Throwable getFailure() {
+        return state.get() == FAILED ? failure : null;
+    }
+
+    /**
+     * Returns the priority that the job was submitted with.
+     *
+     * @return The <code>JobPriority</code> of the job
+     */
+    public JobPriority getPriority() {
+        return priority;
+    }
+
+}
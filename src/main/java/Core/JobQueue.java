@@ -0,0 +1,133 @@
+package Core;
+
+import Core.Module.JobPriority;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static Core.Module.JobPriority.*;
+
+/*
+ * The JobQueue class holds the background jobs waiting to be picked up by idle worker threads, with a separate queue
+ * for each priority. Jobs of a higher priority are always taken before those of a lower priority. To keep background
+ * work from crowding out the engine, the time spent running NORMAL and LOW priority jobs is limited to a budget per
+ * frame, which is replenished whenever the engine loop begins a new frame. HIGH priority jobs are not limited by the
+ * budget. Completed jobs with continuations are queued up to have their continuations run on the main thread.
+ */
+class JobQueue {
+
+    private final ConcurrentLinkedQueue<Job<?>>[] queues;
+    private final ConcurrentLinkedQueue<Job<?>> completed;
+    private final AtomicInteger numQueued;
+    // Zero if the budget is unlimited
+    private final long frameBudget;
+    private final AtomicLong frameTime;
+    private final Histogram jobTime;
+    private final AtomicLong jobsRun;
+    private final AtomicLong budgetExhaustedFrames;
+
+    /*
+     * @param frameBudget The time that NORMAL and LOW priority jobs may take up per frame in nanoseconds, summed
+     *                    across every worker thread, or zero for an unlimited budget
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    JobQueue(long frameBudget, Metrics metrics) {
+        this.frameBudget = frameBudget;
+        queues = new ConcurrentLinkedQueue[JobPriority.values().length];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ConcurrentLinkedQueue<>();
+        }
+        completed = new ConcurrentLinkedQueue<>();
+        numQueued = new AtomicInteger(0);
+        frameTime = new AtomicLong(0);
+        jobTime = metrics.histogram("jobs.time");
+        jobsRun = metrics.counter("jobs.run");
+        budgetExhaustedFrames = metrics.counter("jobs.budget.exhausted.frames");
+        metrics.gauge("jobs.queued", numQueued::get);
+    }
+
+    void submit(Job<?> job) {
+        queues[job.getPriority().ordinal()].add(job);
+        numQueued.incrementAndGet();
+    }
+
+    /*
+     * Returns whether there are queued jobs that the frame budget allows to be run. This is a cheap check made before
+     * polling, and may be out of date by the time the caller acts on it.
+     */
+    boolean hasRunnableJobs() {
+        return numQueued.get() > 0 && (isWithinBudget() || !queues[HIGH.ordinal()].isEmpty());
+    }
+
+    /*
+     * Takes the highest priority job that the frame budget allows to be run, if there is one. This method is safe to
+     * call from any thread.
+     */
+    Job<?> poll() {
+        boolean withinBudget = isWithinBudget();
+        for (JobPriority priority : JobPriority.values()) {
+            if (priority != HIGH && !withinBudget) {
+                break;
+            }
+            Job<?> job = queues[priority.ordinal()].poll();
+            if (job != null) {
+                numQueued.decrementAndGet();
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private boolean isWithinBudget() {
+        return frameBudget == 0 || frameTime.get() < frameBudget;
+    }
+
+    /*
+     * Runs a job taken from poll() on the calling thread, charging its run time to the current frame's budget.
+     */
+    void run(Job<?> job) {
+        long startTime = System.nanoTime();
+        job.run();
+        long time = System.nanoTime() - startTime;
+        if (job.getPriority() != HIGH) {
+            frameTime.addAndGet(time);
+        }
+        jobTime.record(time);
+        jobsRun.incrementAndGet();
+    }
+
+    // Queues a completed job to have its continuation run on the main thread
+    void complete(Job<?> job) {
+        completed.add(job);
+    }
+
+    /*
+     * Replenishes the frame budget and runs the continuations of every job completed since the last call. Must only be
+     * called by the main thread, once at the start of every frame.
+     */
+    void beginFrame() {
+        // A budget that ran out last frame is counted once, now that the frame is over
+        if (frameBudget > 0 && frameTime.getAndSet(0) >= frameBudget) {
+            budgetExhaustedFrames.incrementAndGet();
+        }
+        Job<?> job;
+        while ((job = completed.poll()) != null) {
+            job.runContinuation();
+        }
+    }
+
+    /*
+     * Cancels every job that hasn't started yet. Their continuations are not run, as the engine loop has stopped.
+     */
+    void cancelAll() {
+        for (int i = 0; i < queues.length; i++) {
+            Job<?> job;
+            while ((job = queues[i].poll()) != null) {
+                numQueued.decrementAndGet();
+                job.cancel();
+            }
+        }
+    }
+
+}
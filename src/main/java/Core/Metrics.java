@@ -0,0 +1,119 @@
+package Core;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+/*
+ * The Metrics class is a registry of named engine metrics: histograms, counters, and gauges. Metrics are created once,
+ * ahead of time, and then updated directly through the returned objects, so the hot path never performs a lookup or
+ * allocates. The registry can be dumped as text and is exposed over JMX under the name "OpenJGE2D:type=Metrics".
+ */
+class Metrics {
+
+    private static final String OBJECT_NAME = "OpenJGE2D:type=Metrics";
+
+    // Sorted maps keep every dump in the same order, and are safe to read from the JMX thread
+    private final Map<String, Histogram> histograms;
+    private final Map<String, AtomicLong> counters;
+    private final Map<String, DoubleSupplier> gauges;
+    private ObjectName objectName;
+
+    Metrics() {
+        histograms = new ConcurrentSkipListMap<>();
+        counters = new ConcurrentSkipListMap<>();
+        gauges = new ConcurrentSkipListMap<>();
+    }
+
+    /*
+     * Returns the histogram registered under the supplied name, creating it if it doesn't exist yet.
+     */
+    Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /*
+     * Returns the counter registered under the supplied name, creating it if it doesn't exist yet.
+     */
+    AtomicLong counter(String name) {
+        return counters.computeIfAbsent(name, key -> new AtomicLong(0));
+    }
+
+    /*
+     * Registers a gauge, which is polled whenever the metrics are read rather than being recorded into.
+     */
+    void gauge(String name, DoubleSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    void remove(String name) {
+        histograms.remove(name);
+        counters.remove(name);
+        gauges.remove(name);
+    }
+
+    Map<String, Histogram> getHistograms() {
+        return histograms;
+    }
+
+    Map<String, AtomicLong> getCounters() {
+        return counters;
+    }
+
+    Map<String, DoubleSupplier> getGauges() {
+        return gauges;
+    }
+
+    /*
+     * Returns a plain text report of every metric. Histograms recording durations are reported in milliseconds.
+     */
+    String dump() {
+        StringBuilder builder = new StringBuilder("Engine metrics:\n");
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            builder.append(String.format("  %s: count=%d mean=%.3f p50=%.3f p99=%.3f max=%.3f%n", entry.getKey(),
+                    histogram.getCount(), scale(entry.getKey(), histogram.getMean()),
+                    scale(entry.getKey(), histogram.getPercentile(50)), scale(entry.getKey(), histogram.getPercentile(99)),
+                    scale(entry.getKey(), histogram.getMax())));
+        }
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            builder.append("  ").append(entry.getKey()).append(": ").append(entry.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, DoubleSupplier> entry : gauges.entrySet()) {
+            builder.append(String.format("  %s: %.3f%n", entry.getKey(), entry.getValue().getAsDouble()));
+        }
+        return builder.toString();
+    }
+
+    // Durations are recorded in nanoseconds, but are far easier to read in milliseconds
+    static double scale(String name, double value) {
+        return name.endsWith(".time") ? value / 1e6 : value;
+    }
+
+    void registerMBean() {
+        try {
+            objectName = new ObjectName(OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), objectName);
+        }
+        catch (Exception e) {
+            throw new RuntimeException("Could not register metrics MBean", e);
+        }
+    }
+
+    void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        }
+        catch (Exception e) {
+            throw new RuntimeException("Could not unregister metrics MBean", e);
+        }
+        objectName = null;
+    }
+
+}
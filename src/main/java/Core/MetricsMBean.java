@@ -0,0 +1,113 @@
+package Core;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+/*
+ * The MetricsMBean class exposes the Metrics registry over JMX. Since metrics are registered at runtime, such as when a
+ * state is registered, the MBean is dynamic and builds its attribute list from the registry whenever it is asked for.
+ * Each histogram is exposed as several read-only attributes, named after the histogram with a statistic suffix.
+ */
+class MetricsMBean implements DynamicMBean {
+
+    private static final String[] HISTOGRAM_STATISTICS = {"count", "mean", "p50", "p90", "p99", "max"};
+
+    private final Metrics metrics;
+
+    MetricsMBean(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        AtomicLong counter = metrics.getCounters().get(attribute);
+        if (counter != null) {
+            return counter.get();
+        }
+        DoubleSupplier gauge = metrics.getGauges().get(attribute);
+        if (gauge != null) {
+            return gauge.getAsDouble();
+        }
+        int separator = attribute.lastIndexOf('/');
+        if (separator != -1) {
+            String name = attribute.substring(0, separator);
+            Histogram histogram = metrics.getHistograms().get(name);
+            if (histogram != null) {
+                String statistic = attribute.substring(separator + 1);
+                switch (statistic) {
+                    case "count":
+                        return (double) histogram.getCount();
+                    case "mean":
+                        return Metrics.scale(name, histogram.getMean());
+                    case "p50":
+                        return Metrics.scale(name, histogram.getPercentile(50));
+                    case "p90":
+                        return Metrics.scale(name, histogram.getPercentile(90));
+                    case "p99":
+                        return Metrics.scale(name, histogram.getPercentile(99));
+                    case "max":
+                        return Metrics.scale(name, histogram.getMax());
+                }
+            }
+        }
+        throw new AttributeNotFoundException("No metric named " + attribute);
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metric " + attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            }
+            catch (AttributeNotFoundException e) {
+                // Metrics may be removed between listing and reading attributes, in which case they are skipped
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException("The metrics MBean has no operations");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        ArrayList<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String name : metrics.getHistograms().keySet()) {
+            for (String statistic : HISTOGRAM_STATISTICS) {
+                attributes.add(new MBeanAttributeInfo(name + "/" + statistic, "java.lang.Double", name + " " + statistic,
+                        true, false, false));
+            }
+        }
+        for (Map.Entry<String, AtomicLong> entry : metrics.getCounters().entrySet()) {
+            attributes.add(new MBeanAttributeInfo(entry.getKey(), "java.lang.Long", entry.getKey(), true, false, false));
+        }
+        for (String name : metrics.getGauges().keySet()) {
+            attributes.add(new MBeanAttributeInfo(name, "java.lang.Double", name, true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "OpenJGE2D engine metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+    }
+
+}
@@ -5,6 +5,9 @@ import EngineLibrary.IModule;
 import EngineLibrary.IScene;
 import EngineLibrary.IState;
 
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
 /**
  * The <code>Core.Module</code> class is responsible for all core engine operations, including the engine loop, event
  * dispatching, state management, and multithreading.
@@ -13,11 +16,33 @@ public class Module implements IModule {
 
     private EngineLoop engineLoop;
     private EventQueue eventQueue;
+    private TimerWheel timerWheel;
     private ModuleCSM moduleCSM;
     private ThreadPool threadPool;
+    private JobQueue jobQueue;
+    private TickRates tickRates;
+    private EventOrder eventOrder;
+    private TransformSnapshot transformSnapshot;
+    private Timestep timestep;
+    private Profiler profiler;
+    private Metrics metrics;
 
     private static boolean instantiated;
     private int targetUPS = 50;
+    private int maxCatchUpSteps = 5;
+    private double targetFPS;
+    private double jobBudget;
+    private double eventBudget;
+    private int eventQueueCapacity = 1 << 20;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.GROW;
+    private double stallTimeout = 100;
+    private StallListener stallListener;
+    private double metricsDumpInterval;
+    private MetricsListener metricsListener;
+    private IdleType idleType = IdleType.SPIN_PARK;
+    private boolean pipelined;
+    private ClockType clockType = ClockType.GLFW;
+    private double timeScale = 1;
 
     /**
      * The <code>Phase</code> class provides an enum for each stage of updates dispatched by the engine loop, otherwise
@@ -31,14 +56,110 @@ public class Module implements IModule {
      * The <code>ThreadType</code> class provides an enum for each multithreading target. <code>MAIN</code> signifies
      * running on the main thread, <code>RENDER</code> on a dedicated rendering thread, <code>WORKER</code> on a
      * dedicated worker thread, and <code>ALL</code> on all available threads. <code>MAIN</code>, <code>RENDER</code>,
-     * and <code>WORKER</code> thread targets are all threadsafe while <code>ALL</code> is not. Note that the main
-     * thread will NOT wait for tasks submitted to the <code>RENDER</code> thread or a <code>WORKER</code> thread to be
-     * completed before continuing with code execution. If this is your goal, register tasks under <code>MAIN</code>.
+     * and <code>WORKER</code> thread targets are all threadsafe while <code>ALL</code> is not. States submitted to the
+     * <code>RENDER</code> thread or a <code>WORKER</code> thread run alongside the other states of their level, and the
+     * main thread waits for them to complete before moving on to the next level. While waiting, the main thread may
+     * itself update a <code>WORKER</code> state that is still queued, but <code>RENDER</code> states are only ever
+     * updated on the render thread.
      */
     public enum ThreadType {
         MAIN, RENDER, WORKER, ALL
     }
 
+    /**
+     * The <code>ReceiverType</code> class provides an enum for each lane that an <code>EventReceiver</code> can be
+     * notified on. <code>ENGINE</code> receivers are notified by engine threads at the start of the input and render
+     * phases, and must return quickly as the frame waits on them. This is the default. <code>BLOCKING</code> receivers
+     * are notified in the background, on virtual threads where the JVM supports them, and may block on file or network
+     * I/O without holding up the frame. Notifications on the <code>BLOCKING</code> lane may run concurrently with each
+     * other and with the rest of the engine, so the receiver must be threadsafe. Their completion is reported back to
+     * the engine loop at the start of the following input phase, where any exception thrown by the receiver is
+     * rethrown.
+     */
+    public enum ReceiverType {
+        ENGINE, BLOCKING
+    }
+
+    /**
+     * The <code>CoalescePolicy</code> class provides an enum for each way that a burst of events of the same type can
+     * be coalesced before being dispatched. <code>NONE</code> dispatches every event and is the default.
+     * <code>LATEST</code> only dispatches the latest event of the type posted since the last dispatch, which suits
+     * events where only the most recent state matters, such as window resizes. <code>BY_KEY</code> only dispatches the
+     * latest event for each key returned by <code>Event.getCoalesceKey()</code>, such as the latest move event of each
+     * entity. Coalesced events that are never dispatched are released as if they had been.
+     *
+     * @see EventOptions#coalesce(CoalescePolicy)
+     */
+    public enum CoalescePolicy {
+        NONE, LATEST, BY_KEY
+    }
+
+    /**
+     * The <code>EventPriority</code> class provides an enum for each priority that a type of event can be dispatched
+     * with. <code>CRITICAL</code> events are dispatched ahead of every other event. <code>NORMAL</code> events are
+     * dispatched next, and is the default. <code>DEFERRABLE</code> events are dispatched last, and may be pushed back to
+     * the next dispatch should the estimated cost of the dispatch exceed the event budget. An event is only ever pushed
+     * back once, so no event waits for more than one extra dispatch.
+     *
+     * @see EventOptions#priority(EventPriority)
+     * @see Module#setEventBudget(double)
+     */
+    public enum EventPriority {
+        CRITICAL, NORMAL, DEFERRABLE
+    }
+
+    /**
+     * The <code>OverflowPolicy</code> class provides an enum for each way that the event queue can handle events posted
+     * once it is full, which happens when more events are posted in between two dispatches than the queue's capacity.
+     * <code>GROW</code> starts the queue small and grows it as needed up to the capacity, shrinking it again after it
+     * has sat mostly empty for a while, and drops the newest events once it is full. This is the default. The other
+     * policies allocate the queue at full capacity up front. <code>DROP_OLDEST</code> drops the oldest events of the
+     * dispatch in favour of the newest, and <code>DROP_NEWEST</code> drops the events posted once the queue is full.
+     * <code>REJECT</code> hands the events posted once the queue is full back to the poster, so that it may decide what
+     * to do with them. Dropped events are released back to their pools, and every dropped or rejected event is counted
+     * in the <code>Core</code>'s metrics.
+     *
+     * @see Module#setEventQueueCapacity(int, OverflowPolicy)
+     */
+    public enum OverflowPolicy {
+        GROW, DROP_OLDEST, DROP_NEWEST, REJECT
+    }
+
+    /**
+     * The <code>JobPriority</code> class provides an enum for each priority that a background job can be submitted
+     * with. Idle worker threads always pick up <code>HIGH</code> priority jobs first, followed by <code>NORMAL</code>
+     * and then <code>LOW</code> priority jobs. <code>HIGH</code> priority jobs are not limited by the job budget.
+     *
+     * @see Module#setJobBudget(double)
+     */
+    public enum JobPriority {
+        HIGH, NORMAL, LOW
+    }
+
+    /**
+     * The <code>IdleType</code> class provides an enum for each strategy that engine threads can use while waiting,
+     * whether that be worker threads waiting for tasks or the main thread waiting for worker threads to finish.
+     * <code>BUSY_SPIN</code> keeps each waiting thread spinning for the lowest possible latency at the cost of fully
+     * occupying every core, and is best suited to dedicated machines. <code>SPIN_YIELD</code> spins briefly before
+     * yielding to other threads. <code>SPIN_PARK</code> spins and yields briefly before parking, allowing idle cores to
+     * sleep, and is the default.
+     */
+    public enum IdleType {
+        BUSY_SPIN, SPIN_YIELD, SPIN_PARK
+    }
+
+    /**
+     * The <code>ClockType</code> class provides an enum for each clock that can drive the engine loop. <code>GLFW</code>
+     * uses the GLFW timer and is the default. <code>REAL_TIME</code> uses the system's high resolution timer and does
+     * not require GLFW to be initialized. <code>VIRTUAL</code> advances by a fixed amount every frame regardless of how
+     * much real time has passed, making simulations deterministic and letting them run as fast as the hardware allows.
+     * Both <code>REAL_TIME</code> and <code>VIRTUAL</code> allow the <code>Core</code> to run headless, without a window
+     * or graphics context.
+     */
+    public enum ClockType {
+        GLFW, REAL_TIME, VIRTUAL
+    }
+
     public Module(int targetUPS) {
         if (instantiated) {
             throw new RuntimeException("The Core module has already been created");
@@ -48,14 +169,31 @@ public class Module implements IModule {
         }
 
         this.targetUPS = targetUPS;
+        timestep = new Timestep(1.0 / targetUPS);
+        // Created up front so that profiling can be switched on before the module is initialized
+        profiler = new Profiler();
     }
 
     @Override
     public void init() {
-        threadPool = new ThreadPool();
+        metrics = new Metrics();
+        metrics.registerMBean();
+        CostModel costModel = new CostModel();
+        jobQueue = new JobQueue(Math.round(jobBudget * 1e6), metrics);
+        tickRates = new TickRates(timestep, targetUPS);
+        eventOrder = new EventOrder();
+        threadPool = new ThreadPool(new IdleStrategy(idleType), profiler, metrics, costModel, jobQueue, tickRates,
+                eventOrder, Math.round(stallTimeout * 1e6), stallListener);
         moduleCSM = new ModuleCSM();
-        eventQueue = new EventQueue();
-        engineLoop = new EngineLoop(eventQueue, moduleCSM, threadPool, targetUPS);
+        eventQueue = new EventQueue(metrics, costModel, eventOrder, Math.round(eventBudget * 1e6), eventQueueCapacity,
+                overflowPolicy);
+        timerWheel = new TimerWheel(eventQueue, metrics);
+        transformSnapshot = new TransformSnapshot();
+        EngineClock clock = EngineClock.create(clockType, timeScale, 1.0 / targetUPS, maxCatchUpSteps, metrics);
+        FramePacer framePacer = targetFPS > 0 ? new FramePacer(targetFPS, metrics) : null;
+        engineLoop = new EngineLoop(eventQueue, timerWheel, moduleCSM, threadPool, costModel, transformSnapshot,
+                timestep, clock, framePacer, profiler, metrics, pipelined,
+                Math.round(metricsDumpInterval * 1e9), metricsListener);
     }
 
     @Override
@@ -67,6 +205,275 @@ public class Module implements IModule {
     public void shutdown() {
         engineLoop.stop();
         threadPool.shutDown();
+        eventQueue.shutDown();
+        metrics.unregisterMBean();
+    }
+
+    /**
+     * Sets the strategy used by engine threads while waiting for work. This method must be called before the
+     * <code>Core</code> is initialized.
+     *
+     * @param idleType The <code>IdleType</code> strategy used by waiting threads
+     */
+    public void setIdleType(IdleType idleType) {
+        checkNotInitialized();
+        this.idleType = idleType;
+    }
+
+    /**
+     * Sets whether the <code>Core</code> runs in pipelined mode. In pipelined mode, the render phase of each frame is
+     * run on the render thread while the main thread moves on to the input and update phases of the next frame. Every
+     * state registered under the render phase is then updated on the render thread, one state at a time, regardless of
+     * its thread type. As components are updated concurrently with rendering, render states must read the transforms
+     * of update phase components from the <code>TransformSnapshot</code> rather than from the components themselves.
+     * This method must be called before the <code>Core</code> is initialized.
+     *
+     * @param pipelined True to pipeline render phases with the following update phase, false to run them in order
+     * @see #getTransformSnapshot()
+     */
+    public void setPipelined(boolean pipelined) {
+        checkNotInitialized();
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Sets the clock that drives the engine loop. This method must be called before the <code>Core</code> is
+     * initialized.
+     *
+     * @param clockType The <code>ClockType</code> clock to be used
+     * @param timeScale The rate at which engine time passes relative to real time, where values greater than one run
+     *                  the simulation faster than real time. For <code>VIRTUAL</code> clocks, this is instead the number
+     *                  of updates that are run every frame, which is never limited by the maximum catch-up steps.
+     *                  Fractional values are rounded to the nearest millionth, so that a time scale of 0.5 runs an
+     *                  update every other frame
+     */
+    public void setClock(ClockType clockType, double timeScale) {
+        checkNotInitialized();
+        this.clockType = clockType;
+        this.timeScale = timeScale;
+    }
+
+    /**
+     * Sets the maximum number of updates that may be run in a single frame to catch up with the engine clock. If a
+     * frame takes longer than this many updates would, the remaining time is dropped and the simulation falls behind
+     * real time, rather than each frame having to run ever more updates to catch up. Dropped updates are counted by
+     * the <code>update.dropped.steps</code> metric. <code>VIRTUAL</code> clocks never fall behind, so the limit
+     * doesn't apply to them. This method must be called before the <code>Core</code> is initialized.
+     *
+     * @param maxCatchUpSteps The maximum number of updates per frame, which must be at least one. The default is five
+     */
+    public void setMaxCatchUpSteps(int maxCatchUpSteps) {
+        checkNotInitialized();
+        if (maxCatchUpSteps < 1) {
+            throw new RuntimeException("Maximum catch-up steps must be at least 1");
+        }
+        this.maxCatchUpSteps = maxCatchUpSteps;
+    }
+
+    /**
+     * Limits the engine loop to a target number of frames per second. Once a frame has been rendered, the main thread
+     * waits for the next frame's deadline by sleeping, then spinning through the last moments before it to keep frame
+     * times consistent. Frames that overrun their deadline are counted by the <code>frame.missed.deadlines</code>
+     * metric. This method must be called before the <code>Core</code> is initialized.
+     * <p>
+     * When v-sync is enabled on the window, presenting a frame already blocks until the display refreshes. In that
+     * case, either leave the frame rate unlimited or set it slightly above the display's refresh rate so that the two
+     * limits don't fight each other.
+     *
+     * @param targetFPS The target frame rate, or zero for an unlimited frame rate (the default)
+     * @see OpenGL.Window#setVSync(boolean)
+     */
+    public void setTargetFPS(double targetFPS) {
+        checkNotInitialized();
+        if (targetFPS < 0) {
+            throw new RuntimeException("Target frame rate cannot be negative");
+        }
+        this.targetFPS = targetFPS;
+    }
+
+    /**
+     * Sets how long the main thread may wait on other threads at the end of a level before a stall is reported. A
+     * stall report names every state on a reserved thread that still hasn't finished and how long it has been queued
+     * or running for, and is counted by the <code>barrier.stalls</code> metric. This method must be called before the
+     * <code>Core</code> is initialized.
+     *
+     * @param milliseconds The stall timeout in milliseconds, or zero to disable stall reports. The default is 100
+     * @see #setStallListener(StallListener)
+     */
+    public void setStallTimeout(double milliseconds) {
+        checkNotInitialized();
+        if (milliseconds < 0) {
+            throw new RuntimeException("Stall timeout cannot be negative");
+        }
+        stallTimeout = milliseconds;
+    }
+
+    /**
+     * Sets the listener that receives a report of every stall. Without a listener, stalls are only counted by the
+     * <code>barrier.stalls</code> metric. This method must be called before the <code>Core</code> is initialized.
+     *
+     * @param stallListener The <code>StallListener</code> to receive stall reports, or null to only count stalls
+     * @see #setStallTimeout(double)
+     */
+    public void setStallListener(StallListener stallListener) {
+        checkNotInitialized();
+        this.stallListener = stallListener;
+    }
+
+    /**
+     * Sets the estimated cost that a single dispatch of events may take up before <code>DEFERRABLE</code> events are
+     * pushed back to the next dispatch. The cost of each event is estimated from how long its receivers have taken to
+     * handle previous events of the same type, and is summed across every event of the dispatch. This method must be
+     * called before the <code>Core</code> is initialized.
+     *
+     * @param milliseconds The event budget per dispatch in milliseconds, or zero for an unlimited budget (the default)
+     * @see EventPriority
+     */
+    public void setEventBudget(double milliseconds) {
+        checkNotInitialized();
+        if (milliseconds < 0) {
+            throw new RuntimeException("Event budget cannot be negative");
+        }
+        eventBudget = milliseconds;
+    }
+
+    /**
+     * Sets the most events that may be posted in between two dispatches, which puts a hard limit on the memory taken up
+     * by the event queue should a module post events in a runaway loop, along with what to do with events posted once
+     * the queue is full. This method must be called before the <code>Core</code> is initialized.
+     *
+     * @param capacity The capacity of the event queue. The default is 1048576
+     * @param overflowPolicy The <code>OverflowPolicy</code> of the event queue. The default is <code>GROW</code>
+     */
+    public void setEventQueueCapacity(int capacity, OverflowPolicy overflowPolicy) {
+        checkNotInitialized();
+        if (capacity < 1) {
+            throw new RuntimeException("Event queue capacity must be at least one");
+        }
+        eventQueueCapacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Sets how much worker time background jobs of <code>NORMAL</code> and <code>LOW</code> priority may use each
+     * frame, summed across every worker thread. Once the budget has been used up, those jobs wait until the next frame
+     * before being picked up. Jobs only ever run on worker threads that have no frame work to do, so the budget limits
+     * how much of the machine background work takes up rather than protecting the frame itself. This method must be
+     * called before the <code>Core</code> is initialized.
+     *
+     * @param milliseconds The job budget per frame in milliseconds, or zero for an unlimited budget (the default)
+     * @see #submitJob(Callable, JobPriority)
+     */
+    public void setJobBudget(double milliseconds) {
+        checkNotInitialized();
+        if (milliseconds < 0) {
+            throw new RuntimeException("Job budget cannot be negative");
+        }
+        jobBudget = milliseconds;
+    }
+
+    /**
+     * Submits a background job to be run by the engine's worker threads, such as pathfinding, procedural generation,
+     * or asset decoding. Jobs are only picked up by worker threads that have no frame work to do, so they never delay a
+     * frame, and they share the engine's threads rather than competing with them for cores. This method is safe to
+     * call from any thread once the <code>Core</code> has been initialized.
+     *
+     * @param task The work to be run, the result of which is held by the returned job
+     * @param priority The <code>JobPriority</code> of the job
+     * @param <T> The type of the job's result
+     * @return The <code>Job</code> object representing the submitted job
+     */
+    public <T> Job<T> submitJob(Callable<T> task, JobPriority priority) {
+        Job<T> job = new Job<>(task, priority, jobQueue);
+        threadPool.submitJob(job);
+        return job;
+    }
+
+    /**
+     * Submits a background job to be run by the engine's worker threads with <code>NORMAL</code> priority.
+     *
+     * @param task The work to be run, the result of which is held by the returned job
+     * @param <T> The type of the job's result
+     * @return The <code>Job</code> object representing the submitted job
+     * @see #submitJob(Callable, JobPriority)
+     */
+    public <T> Job<T> submitJob(Callable<T> task) {
+        return submitJob(task, JobPriority.NORMAL);
+    }
+
+    /**
+     * Returns the <code>Timestep</code> object describing the fixed timestep of the update phase. States and components
+     * should read the update delta and tick from this object rather than measuring time themselves, and render states
+     * should use its alpha to blend the previous and current transforms of each component.
+     *
+     * @return The <code>Timestep</code> object of the engine loop
+     * @see TransformSnapshot#getInterpolatedXPos(int)
+     */
+    public Timestep getTimestep() {
+        return timestep;
+    }
+
+    /**
+     * Enables or disables the frame profiler. While enabled, the time spent in each phase, state, and batch of
+     * component updates is recorded on every engine thread. Only the most recent spans of each thread are kept. This
+     * method may be called at any time, including before the module is initialized.
+     *
+     * @param enabled True to start recording spans, false to stop
+     * @see #dumpProfile(String)
+     */
+    public void setProfilingEnabled(boolean enabled) {
+        profiler.setEnabled(enabled);
+    }
+
+    /**
+     * Writes every span recorded by the frame profiler to a file in the Chrome trace event format, which can be viewed
+     * in <code>chrome://tracing</code> or Perfetto. This method may be called from any thread while the engine is
+     * running.
+     *
+     * @param filePath The location of the file to be written
+     */
+    public void dumpProfile(String filePath) {
+        profiler.dump(filePath);
+    }
+
+    /**
+     * Sets how often a report of every engine metric is handed to a listener, such as one that writes it to a log.
+     * Reports are made by the main thread in between frames, and hold the same text as <code>getMetricsReport()</code>.
+     * This method must be called before the <code>Core</code> is initialized.
+     *
+     * @param seconds The interval between reports in seconds
+     * @param metricsListener The <code>MetricsListener</code> to receive reports, or null to disable periodic reports
+     *                        (the default)
+     * @see #getMetricsReport()
+     */
+    public void setMetricsDumpInterval(double seconds, MetricsListener metricsListener) {
+        checkNotInitialized();
+        if (seconds < 0) {
+            throw new RuntimeException("Metrics dump interval cannot be negative");
+        }
+        metricsDumpInterval = seconds;
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Returns a plain text report of every engine metric. Engine metrics include frame and update times, update rate,
+     * catch-up updates, event queue depth, worker utilization, and the update time of each state. Every metric is also
+     * exposed over JMX under the name <code>OpenJGE2D:type=Metrics</code>. Durations are reported in milliseconds.
+     *
+     * @return The engine metrics report
+     */
+    public String getMetricsReport() {
+        return metrics.dump();
+    }
+
+    /**
+     * Returns the <code>TransformSnapshot</code> object holding the transforms of every component in the update phase,
+     * as they were at the end of the last two updates.
+     *
+     * @return The <code>TransformSnapshot</code> object read by render states
+     */
+    public TransformSnapshot getTransformSnapshot() {
+        return transformSnapshot;
     }
 
     /**
@@ -80,7 +487,49 @@ public class Module implements IModule {
      *                      method that corresponds with this event
      */
     public void registerEventReceiver(Enum event, IModule module, EventReceiver eventReceiver) {
-        eventQueue.registerEventReceiver(event, module, eventReceiver);
+        eventQueue.registerEventReceiver(event, module, eventReceiver, false);
+    }
+
+    /**
+     * Registers an <code>EventReceiver</code> object with the <code>Core</code>, to be notified on the supplied lane.
+     * Receivers that perform blocking operations, such as saving to disk or sending telemetry, should be registered
+     * under the <code>BLOCKING</code> lane.
+     *
+     * @param event The event of interest to respond to
+     * @param module The <code>IModule</code> object that is registering to recieve the event
+     * @param eventReceiver The <code>EventReceiver</code> object, which should call the receiving module's handling
+     *                      method that corresponds with this event
+     * @param receiverType The <code>ReceiverType</code> lane that the receiver is notified on
+     */
+    public void registerEventReceiver(Enum event, IModule module, EventReceiver eventReceiver,
+                                      ReceiverType receiverType) {
+        eventQueue.registerEventReceiver(event, module, eventReceiver, receiverType == ReceiverType.BLOCKING);
+    }
+
+    /**
+     * Registers a <code>BatchEventReceiver</code> object with the <code>Core</code>. Rather than being notified once per
+     * event, the receiver is notified once per dispatch at the start of the input and render phases with every event of
+     * the supplied type, in the order they were posted. This allows a module receiving bursts of events, such as
+     * collisions, to handle all of them in a single pass.
+     *
+     * @param event The event of interest to respond to
+     * @param module The <code>IModule</code> object that is registering to recieve the event
+     * @param batchReceiver The <code>BatchEventReceiver</code> object, which should call the receiving module's
+     *                      handling method that corresponds with this event
+     */
+    public void registerBatchEventReceiver(Enum event, IModule module, BatchEventReceiver batchReceiver) {
+        eventQueue.registerBatchEventReceiver(event, module, batchReceiver);
+    }
+
+    /**
+     * Sets the dispatch policies of a type of event, such as whether bursts of the event are coalesced and the
+     * priority it is dispatched with. Applies to every event of the type that has yet to be dispatched.
+     *
+     * @param event The event type that the options apply to
+     * @param options The <code>EventOptions</code> object holding the event type's policies
+     */
+    public void setEventOptions(Enum event, EventOptions options) {
+        eventQueue.setEventOptions(event, options);
     }
 
     /**
@@ -95,12 +544,70 @@ public class Module implements IModule {
 
     /**
      * Posts an <code>Event</code> object to an internal queue. The <code>Event</code> object will then be dispatched
-     * to all interested modules at the beginning of each input and render phase.
+     * to all interested modules at the beginning of each input and render phase. This method is safe to call from any
+     * thread, including from component updates. Events posted during state and component updates are dispatched in the
+     * order of the schedule rather than the order in which threads happened to post them, so the dispatch order is the
+     * same every frame. Events posted from outside of the engine loop, such as by background jobs, are dispatched after
+     * these, in the order they were posted.
+     * <p>
+     * Posting an event acquired from an <code>EventPool</code> hands the poster's reference over to the
+     * <code>Core</code>, which releases the event back to its pool once every receiver has been notified. Should the
+     * queue be full and reject the event, the poster keeps its reference instead.
      *
      * @param event The <code>Event</code> object to be posted to the queue
+     * @return False if the queue was full and rejected the event, otherwise true
+     * @see #setEventQueueCapacity(int, OverflowPolicy)
      */
-    public void postEvent(Event event) {
-        eventQueue.postEvent(event);
+    public boolean postEvent(Event event) {
+        return eventQueue.postEvent(event);
+    }
+
+    /**
+     * Schedules an event to be posted after the supplied number of update ticks, such as at the end of a cooldown. The
+     * delay is counted from the last update to have started, and the event is posted at the start of the update it
+     * comes due in, to be dispatched along with the events posted during that update. Timers are cheap to schedule
+     * and cancel no matter how many are pending, so modules may keep one per entity rather than counting down in their
+     * components. This method is safe to call from any thread once the <code>Core</code> has been initialized.
+     * <p>
+     * Scheduling an event acquired from an <code>EventPool</code> hands the caller's reference over to the
+     * <code>Core</code>, in the same way as posting it does.
+     *
+     * @param event The <code>Event</code> object to be posted
+     * @param delayTicks The number of update ticks to wait before posting the event, which must be at least one
+     * @return The <code>EventTimer</code> object, which may be used to cancel the event before it is posted
+     */
+    public EventTimer scheduleEvent(Event event, long delayTicks) {
+        if (delayTicks < 1) {
+            throw new RuntimeException("Timer delay must be at least one tick");
+        }
+        if (event.isReleased()) {
+            throw new RuntimeException("Event " + event.eventEnum + " has been scheduled after being released");
+        }
+        EventTimer timer = new EventTimer(timerWheel, event, null, delayTicks, 0);
+        timerWheel.schedule(timer);
+        return timer;
+    }
+
+    /**
+     * Schedules an event to be posted repeatedly, once after the supplied delay and then every period after that,
+     * until the returned timer is cancelled. A new event is taken from the supplier every time the timer fires, so
+     * pooled events may be acquired from within it. The supplier is called on the main thread. This method is safe to
+     * call from any thread once the <code>Core</code> has been initialized.
+     *
+     * @param eventSupplier Supplies the <code>Event</code> object to be posted each time the timer fires
+     * @param delayTicks The number of update ticks to wait before first posting an event, which must be at least one
+     * @param periodTicks The number of update ticks between each event after the first, which must be at least one
+     * @return The <code>EventTimer</code> object, which may be used to stop the events from being posted
+     * @see #scheduleEvent(Event, long)
+     */
+    public EventTimer scheduleRepeatingEvent(Supplier<? extends Event> eventSupplier, long delayTicks,
+                                             long periodTicks) {
+        if (delayTicks < 1 || periodTicks < 1) {
+            throw new RuntimeException("Timer delay and period must be at least one tick");
+        }
+        EventTimer timer = new EventTimer(timerWheel, null, eventSupplier, delayTicks, periodTicks);
+        timerWheel.schedule(timer);
+        return timer;
     }
 
     /**
@@ -113,8 +620,27 @@ public class Module implements IModule {
      * @param threadType The target thread type that the registered state should be updated on
      */
     public void registerState(IState state, Phase phase, ThreadType threadType) {
-        moduleCSM.registerState(state, phase);
-        threadPool.registerState(state, threadType);
+        registerState(state, phase, threadType, null);
+    }
+
+    /**
+     * Registers an <code>IState</code> object with the <code>Core</code>, along with options describing how the state
+     * should be scheduled. A state that declares its data access through its <code>StateOptions</code> may be updated
+     * concurrently with other states in the same phase that it does not conflict with.
+     *
+     * @param state The <code>IState</code> object that is being registered
+     * @param phase The phase under which the registered state should be updated during
+     * @param threadType The target thread type that the registered state should be updated on
+     * @param options The <code>StateOptions</code> object holding the state's scheduling options
+     * @see StateOptions
+     */
+    public void registerState(IState state, Phase phase, ThreadType threadType, StateOptions options) {
+        if (phase != Phase.UPDATE && options != null && options.getTickDivisor(targetUPS) != 1) {
+            throw new RuntimeException("Only states registered under the update phase may have a tick rate");
+        }
+        moduleCSM.registerState(state, phase, options);
+        threadPool.registerState(state, threadType, options);
+        tickRates.registerState(state, options);
     }
 
     /**
@@ -126,6 +652,7 @@ public class Module implements IModule {
     public void unregisterState(IState state) {
         moduleCSM.unregisterState(state);
         threadPool.unregisterState(state);
+        tickRates.unregisterState(state);
     }
 
     /**
@@ -139,6 +666,37 @@ public class Module implements IModule {
         moduleCSM.pushScene(scene);
     }
 
+    /**
+     * Loads an <code>IScene</code> object in the background before pushing it onto the top of the scene stack, so that
+     * the engine loop keeps running while the scene is being loaded. The scene is prepared by a <code>HIGH</code>
+     * priority background job, which calls the scene's <code>prepare</code> method and sorts its states by phase. The
+     * scene is then pushed onto the scene stack at the start of the next frame, in between two frames, as if by
+     * <code>pushScene()</code>. Scenes loaded at the same time are pushed in the order that they finish being prepared.
+     * Should the scene throw an exception while being prepared, it is not pushed. This method is safe to call from any
+     * thread once the <code>Core</code> has been initialized.
+     *
+     * @param scene The <code>IScene</code> object to be pushed onto the scene stack
+     * @return The <code>SceneLoad</code> object, which may be used to follow the scene's progress
+     * @see IScene#prepare(SceneLoad)
+     */
+    public SceneLoad pushSceneAsync(IScene scene) {
+        SceneLoad load = new SceneLoad(scene);
+        submitJob(() -> {
+            scene.prepare(load);
+            return moduleCSM.prepareScene(scene);
+        }, JobPriority.HIGH).whenComplete(job -> {
+            // Job continuations are run by the main thread at the start of each frame
+            if (job.getFailure() != null) {
+                load.failed(job.getFailure());
+            }
+            else if (!job.isCancelled()) {
+                moduleCSM.pushScene(job.getResult());
+                load.pushed();
+            }
+        });
+        return load;
+    }
+
     /**
      * Pops the last pushed <code>IScene</code> object off the top of the scene stack. *All* <code>IState</code>
      * objects in the now removed scene will no longer receive updates from the <code>Core</code>.
@@ -164,6 +722,12 @@ public class Module implements IModule {
         moduleCSM.clearSceneStack();
     }
 
+    private void checkNotInitialized() {
+        if (engineLoop != null) {
+            throw new RuntimeException("The Core module has already been initialized");
+        }
+    }
+
     /**
      * The <code>EventReceiver</code> functional interface serves as a pointer towards event handling methods defined
      * within a module. A lambda, which can be created by this interface, passes the event of interest to the method
@@ -174,4 +738,39 @@ public class Module implements IModule {
         void onNotify(Event event);
 
     }
+
+    /**
+     * The <code>BatchEventReceiver</code> functional interface serves as a pointer towards a module's method for
+     * handling every event of a single type posted since the last dispatch. The events are passed in as the first
+     * <code>numEvents</code> elements of an array, in the order they were posted. The array is reused by the
+     * <code>Core</code> once the receiver returns, so it must not be held on to.
+     */
+    public interface BatchEventReceiver {
+
+        void onNotify(Event[] events, int numEvents);
+
+    }
+
+    /**
+     * The <code>StallListener</code> functional interface receives a report whenever the main thread has been kept
+     * waiting on other threads for longer than the stall timeout. The report is a single line of text naming the work
+     * that held up the frame. Listeners are called on the main thread while it is still waiting, so they should return
+     * quickly.
+     */
+    public interface StallListener {
+
+        void onStall(String report);
+
+    }
+
+    /**
+     * The <code>MetricsListener</code> functional interface receives the periodic report of every engine metric, as
+     * set up by <code>setMetricsDumpInterval()</code>. Listeners are called on the main thread in between frames, so
+     * they should return quickly.
+     */
+    public interface MetricsListener {
+
+        void onReport(String report);
+
+    }
 }
@@ -1,37 +1,50 @@
 package Core;
 
 import Core.Module.Phase;
-import EngineLibrary.IComponent;
 import EngineLibrary.IScene;
 import EngineLibrary.IState;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static Core.Module.Phase.*;
 
 /*
  * The Module Concurrent State Manager, or ModuleCSM for short, provides state management for all registered states
  * contained in every scene.
+ *
+ * A scene's states are sorted by phase before the scene is pushed, which may be done ahead of time on any thread so
+ * that loading a scene in the background doesn't hold up the main thread. The state registry is therefore safe to
+ * read from any thread, although it is only ever changed by the main thread. A sorted scene is kept by the node it was
+ * pushed with, and is sorted again only if its states or the state registry have changed since.
+ *
+ * The scene stack is a persistent linked list, with each node pointing to the node below it. Pushing a scene adds a
+ * node on top of the stack and popping a scene moves back down to the node below, so neither copies the stack. Each
+ * node holds the schedule of every scene from the bottom of the stack up to its own, which is built the first time it
+ * is needed and kept for as long as the node and the state registry stay the same. A node also keeps the last node
+ * pushed on top of it, so a scene that is pushed and popped over and over, such as a menu, reuses the same node and
+ * schedule every time.
  */
 class ModuleCSM {
 
+    private static final Phase[] PHASES = Phase.values();
+    private static final IState[] NO_STATES = new IState[0];
+
     private Map<IState, Phase> statePhaseMap;
-    private Map<Phase, IState[][]> phaseUpdateMap;
-    private ArrayList<IScene> sceneStack;
+    private Map<IState, StateOptions> stateOptionsMap;
+    // Incremented whenever the state registry changes, so that scenes prepared against an older registry can be sorted
+    // again before being pushed
+    private volatile int registryVersion;
+    // The empty stack that every other node rests on
+    private final SceneNode root;
+    private SceneNode top;
 
     ModuleCSM() {
-        statePhaseMap = new HashMap<>();
-        sceneStack = new ArrayList<>();
-        phaseUpdateMap = new HashMap<>();
-
-        IState[][] inputStates = new IState[0][0]; // Zero scenes, zero states
-        phaseUpdateMap.put(INPUT, inputStates);
-        IState[][] updateStates = new IState[0][0];
-        phaseUpdateMap.put(UPDATE, updateStates);
-        IState[][] renderStates = new IState[0][0];
-        phaseUpdateMap.put(RENDER, renderStates);
+        statePhaseMap = new ConcurrentHashMap<>();
+        stateOptionsMap = new ConcurrentHashMap<>();
+        registryVersion = 0;
+        root = new SceneNode(null, null);
+        top = root;
     }
 
     /*
@@ -39,9 +52,14 @@ class ModuleCSM {
      *
      * @param state The IState object to register
      * @param phase The Phase (INPUT, UPDATE, RENDER) to register under in which to recieve updates
+     * @param options The scheduling options of the state, or null if there are none
      */
-    void registerState(IState state, Phase phase) {
+    void registerState(IState state, Phase phase, StateOptions options) {
         statePhaseMap.put(state, phase);
+        if (options != null) {
+            stateOptionsMap.put(state, options);
+        }
+        registryVersion++;
     }
 
     void unregisterState(IState state) {
@@ -49,98 +67,177 @@ class ModuleCSM {
             throw new RuntimeException("Could not find state " + state + " in registry");
         }
         statePhaseMap.remove(state);
+        stateOptionsMap.remove(state);
+        registryVersion++;
     }
 
-    void pushScene(IScene scene) {
-        sceneStack.add(scene);
-
-        // Add new scene to the phase update map
-        IState[][] inputStates = new IState[sceneStack.size()][];
-        System.arraycopy(phaseUpdateMap.get(INPUT), 0, inputStates, 0, sceneStack.size() - 1);
-        IState[][] updateStates = new IState[sceneStack.size()][];
-        System.arraycopy(phaseUpdateMap.get(UPDATE), 0, updateStates, 0, sceneStack.size() - 1);
-        IState[][] renderStates = new IState[sceneStack.size()][];
-        System.arraycopy(phaseUpdateMap.get(RENDER), 0, renderStates, 0, sceneStack.size() - 1);
-        phaseUpdateMap.put(INPUT, inputStates);
-        phaseUpdateMap.put(UPDATE, updateStates);
-        phaseUpdateMap.put(RENDER, renderStates);
-
-        // Add each new state to the phase update map
-        IState[] sceneStates = scene.getStates();
-        IState[] inputStatesBuffer = new IState[sceneStates.length];
-        IState[] updateStatesBuffer = new IState[sceneStates.length];
-        IState[] renderStatesBuffer = new IState[sceneStates.length];
-        int numInputStates = 0;
-        int numUpdateStates = 0;
-        int numRenderStates = 0;
+    /*
+     * Sorts the states of a scene by phase, ready for the scene to be pushed onto the scene stack. This method is safe
+     * to call from any thread.
+     */
+    PreparedScene prepareScene(IScene scene) {
+        int version = registryVersion;
+        IState[] sceneStates = scene.getStates().clone();
+        IState[][] phaseStates = new IState[PHASES.length][];
+        int[] numStates = new int[PHASES.length];
         for (int i = 0; i < sceneStates.length; i++) {
-            Phase phase = statePhaseMap.get(sceneStates[i]);
-            if (phase == INPUT) {
-                inputStatesBuffer[numInputStates] = sceneStates[i];
-                numInputStates++;
-            }
-            else if (phase == UPDATE) {
-                updateStatesBuffer[numUpdateStates] = sceneStates[i];
-                numUpdateStates++;
-            }
-            else {
-                renderStatesBuffer[numRenderStates] = sceneStates[i];
-                numRenderStates++;
-            }
+            numStates[phaseOf(sceneStates[i]).ordinal()]++;
+        }
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseStates[i] = numStates[i] == 0 ? NO_STATES : new IState[numStates[i]];
+            numStates[i] = 0;
+        }
+        for (int i = 0; i < sceneStates.length; i++) {
+            int phase = phaseOf(sceneStates[i]).ordinal();
+            phaseStates[phase][numStates[phase]++] = sceneStates[i];
         }
-        IState[] newInputStates = new IState[numInputStates];
-        System.arraycopy(inputStatesBuffer, 0, newInputStates, 0, numInputStates);
-        IState[] newUpdateStates = new IState[numUpdateStates];
-        System.arraycopy(updateStatesBuffer, 0, newUpdateStates, 0, numUpdateStates);
-        IState[] newRenderStates = new IState[numRenderStates];
-        System.arraycopy(renderStatesBuffer, 0 , newRenderStates, 0, numRenderStates);
-        phaseUpdateMap.get(INPUT)[sceneStack.size() - 1] = newInputStates; // Remember that arrays are objects
-        phaseUpdateMap.get(UPDATE)[sceneStack.size() - 1] = newUpdateStates;
-        phaseUpdateMap.get(RENDER)[sceneStack.size() - 1] = newRenderStates;
+        return new PreparedScene(scene, sceneStates, phaseStates, version);
+    }
+
+    void pushScene(IScene scene) {
+        // A scene pushed again on top of the same scenes is only sorted if the node kept from last time is out of date
+        SceneNode node = top.lastChild;
+        pushScene(node != null && node.preparedScene.scene == scene ? node.preparedScene : prepareScene(scene));
+    }
+
+    /*
+     * Pushes a scene that has already been sorted by phase onto the scene stack. A scene sorted before its states or
+     * the state registry changed is sorted again first.
+     */
+    void pushScene(PreparedScene preparedScene) {
+        SceneNode node = top.lastChild;
+        if (node == null || node.preparedScene.scene != preparedScene.scene || !isCurrent(node.preparedScene)) {
+            node = new SceneNode(top, refresh(preparedScene));
+            top.lastChild = node;
+        }
+        top = node;
     }
 
     void popScene() {
-        int length = sceneStack.size();
-        if (length > 0) {
-            sceneStack.remove(length - 1);
-
-            // Remove scene from the phase update map
-            IState[][] inputStates = new IState[sceneStack.size()][];
-            System.arraycopy(phaseUpdateMap.get(INPUT), 0, inputStates, 0, sceneStack.size());
-            IState[][] updateStates = new IState[sceneStack.size()][];
-            System.arraycopy(phaseUpdateMap.get(UPDATE), 0, updateStates, 0, sceneStack.size());
-            IState[][] renderStates = new IState[sceneStack.size()][];
-            System.arraycopy(phaseUpdateMap.get(RENDER), 0, renderStates, 0, sceneStack.size());
-            phaseUpdateMap.put(INPUT, inputStates);
-            phaseUpdateMap.put(UPDATE, updateStates);
-            phaseUpdateMap.put(RENDER, renderStates);
+        if (top != root) {
+            top = top.parent;
         }
     }
 
     void clearSceneStack() {
-        sceneStack.clear();
-
-        phaseUpdateMap.put(INPUT, new IState[1][]);
-        phaseUpdateMap.put(UPDATE, new IState[1][]);
-        phaseUpdateMap.put(RENDER, new IState[1][]);
+        top = root;
     }
 
     int getNumScenes() {
-        return sceneStack.size();
+        return top.depth;
     }
 
     /*
-     * Returns a collection of component updates for each state in the specified scene. Every update is packaged up
-     * into a runnable and stored in an array representing its enclosing state. All "states" in the scene registered
-     * under the respective phase are stored in order of registration (oldest "states" being at the head of the array).
+     * Returns the update schedule of every state in the scene stack registered under the specified phase. States are
+     * grouped into levels, with the states on each level being free of data conflicts with one another so that they
+     * can be updated concurrently. Levels are to be updated in order, and conflicting states keep the same relative
+     * order as if they were updated one at a time, scene by scene.
      *
-     * @param sceneIndex The index of the desired scene on the scene stack, starting at 0. Stack is ordered in LIFO
      * @param phase The phase to target for state updates (INPUT, UPDATE, RENDER)
-     * @return A 2D array holding arrays of component updates for each state in the specified scene registered under
-     * the specified phase
+     * @return An array of levels, each holding the states that may be updated concurrently
      */
-    IState[] getStates(int sceneIndex, Phase phase) {
-        return phaseUpdateMap.get(phase)[sceneIndex];
+    IState[][] getSchedule(Phase phase) {
+        SceneNode node = top;
+        if (node.version != registryVersion) {
+            build(node);
+        }
+        return node.schedules[phase.ordinal()];
+    }
+
+    // Builds a node's states and schedule for every phase, along with those of any node below it that's out of date
+    private void build(SceneNode node) {
+        IState[][] sceneStates = null;
+        if (node.parent != null) {
+            if (node.parent.version != registryVersion) {
+                build(node.parent);
+            }
+            node.preparedScene = refresh(node.preparedScene);
+            sceneStates = node.preparedScene.phaseStates;
+        }
+        for (int i = 0; i < PHASES.length; i++) {
+            IState[] states = NO_STATES;
+            if (node.parent != null) {
+                IState[] parentStates = node.parent.states[i];
+                states = new IState[parentStates.length + sceneStates[i].length];
+                System.arraycopy(parentStates, 0, states, 0, parentStates.length);
+                System.arraycopy(sceneStates[i], 0, states, parentStates.length, sceneStates[i].length);
+            }
+            node.states[i] = states;
+            node.schedules[i] = StateGraph.buildLevels(states, stateOptionsMap);
+        }
+        node.version = registryVersion;
+    }
+
+    // Returns the supplied scene if it's still up to date, otherwise sorts the scene again
+    private PreparedScene refresh(PreparedScene preparedScene) {
+        return isCurrent(preparedScene) ? preparedScene : prepareScene(preparedScene.scene);
+    }
+
+    // Whether a sorted scene still matches the scene's states and the state registry
+    private boolean isCurrent(PreparedScene preparedScene) {
+        return preparedScene.registryVersion == registryVersion
+                && preparedScene.hasStates(preparedScene.scene.getStates());
+    }
+
+    // States that haven't been registered are updated in the render phase
+    private Phase phaseOf(IState state) {
+        Phase phase = statePhaseMap.get(state);
+        return phase != null ? phase : RENDER;
+    }
+
+    // A scene's states sorted by phase, along with the version of the state registry that they were sorted against
+    static class PreparedScene {
+
+        private final IScene scene;
+        // The scene's states at the time it was sorted
+        private final IState[] sceneStates;
+        // The scene's states in each phase, indexed by the phase's ordinal
+        private final IState[][] phaseStates;
+        private final int registryVersion;
+
+        private PreparedScene(IScene scene, IState[] sceneStates, IState[][] phaseStates, int registryVersion) {
+            this.scene = scene;
+            this.sceneStates = sceneStates;
+            this.phaseStates = phaseStates;
+            this.registryVersion = registryVersion;
+        }
+
+        private boolean hasStates(IState[] states) {
+            if (states.length != sceneStates.length) {
+                return false;
+            }
+            for (int i = 0; i < states.length; i++) {
+                if (states[i] != sceneStates[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // A node of the scene stack, which is the stack of every scene from the bottom up to the node's own scene
+    private static class SceneNode {
+
+        // Both are null for the root node
+        private final SceneNode parent;
+        private PreparedScene preparedScene;
+        private final int depth;
+        // The states of every scene in the stack in each phase, in update order, along with their schedule. Both are
+        // indexed by the phase's ordinal, and are only up to date while the version matches the state registry's
+        private final IState[][] states;
+        private final IState[][][] schedules;
+        private int version;
+        // The node most recently pushed on top of this one, which is reused if the same scene is pushed again
+        private SceneNode lastChild;
+
+        private SceneNode(SceneNode parent, PreparedScene preparedScene) {
+            this.parent = parent;
+            this.preparedScene = preparedScene;
+            depth = parent == null ? 0 : parent.depth + 1;
+            states = new IState[PHASES.length][];
+            schedules = new IState[PHASES.length][][];
+            version = -1;
+        }
     }
 
 }
@@ -0,0 +1,213 @@
+package Core;
+
+import Core.Module.StallListener;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/*
+ * The PhaseBarrier class joins the work that the main thread hands out to other threads. Every task submitted during a
+ * level of a phase, whether it is a set of event tasks or a state on a reserved thread, shares the barrier's completion
+ * counter, and the main thread waits on that counter before moving on to the next level. While waiting, the main
+ * thread helps by running tasks that are still queued up on worker threads, so that a worker held up by a long task
+ * doesn't leave the tasks queued behind it waiting too.
+ *
+ * States on reserved threads are tracked individually. Should the main thread be kept waiting for longer than the stall
+ * timeout, every tracked state that still hasn't finished is reported, which shows which state stalled the frame. A
+ * counter is used rather than java.util.concurrent.Phaser, as the set of parties changes every level and the main
+ * thread has to keep helping while it waits rather than blocking.
+ *
+ * A task that throws an exception is still counted down, so the main thread is never left waiting on it. The failure
+ * is handed to the barrier instead, and rethrown on the main thread by the next wait.
+ */
+class PhaseBarrier {
+
+    private final AtomicInteger completionCounter;
+    private final ArrayList<Task> tasks;
+    private final BooleanSupplier helper;
+    private final IdleStrategy idleStrategy;
+    private final long maxParkNanos;
+    // Zero if stall detection is disabled
+    private final long stallTimeout;
+    // Null if stalls are only counted
+    private final StallListener stallListener;
+    // The first failure since the last wait, which is rethrown by the next wait
+    private final AtomicReference<RuntimeException> failure;
+    private final Histogram waitTime;
+    private final AtomicLong helpedTasks;
+    private final AtomicLong stalls;
+    private final AtomicLong failedTasks;
+
+    /*
+     * @param helper Runs a single task queued up on another thread, if there is one, returning whether it did
+     * @param stallTimeout The time in nanoseconds that the main thread may wait before the outstanding tasks are
+     *                     reported, or zero to disable stall detection
+     * @param stallListener Receives a report of every stall, or null to only count stalls
+     */
+    PhaseBarrier(BooleanSupplier helper, IdleStrategy idleStrategy, long maxParkNanos, long stallTimeout,
+                 StallListener stallListener, Metrics metrics) {
+        this.helper = helper;
+        this.idleStrategy = idleStrategy;
+        this.maxParkNanos = maxParkNanos;
+        this.stallTimeout = stallTimeout;
+        this.stallListener = stallListener;
+        completionCounter = new AtomicInteger(0);
+        tasks = new ArrayList<>();
+        failure = new AtomicReference<>();
+        waitTime = metrics.histogram("barrier.wait.time");
+        helpedTasks = metrics.counter("barrier.helped.tasks");
+        stalls = metrics.counter("barrier.stalls");
+        failedTasks = metrics.counter("barrier.failed.tasks");
+    }
+
+    // The completion counter that every task joined by this barrier must be submitted with
+    AtomicInteger getCompletionCounter() {
+        return completionCounter;
+    }
+
+    /*
+     * Tracks a task for stall detection. Must be called by the main thread just before the task is submitted.
+     */
+    void track(Task task) {
+        task.submitTime = System.nanoTime();
+        task.startTime = 0;
+        task.finished = false;
+        tasks.add(task);
+    }
+
+    /*
+     * Records a task that threw an exception, to be rethrown on the main thread by the next wait. Must be called before
+     * the task is counted down, so that the wait on it can't finish without seeing the failure. This method is safe to
+     * call from any thread.
+     */
+    void fail(Throwable t) {
+        failedTasks.incrementAndGet();
+        // Only the first failure is rethrown, as later ones are often caused by it
+        failure.compareAndSet(null, new RuntimeException("Task failed on thread '" + Thread.currentThread().getName()
+                + "'", t));
+    }
+
+    /*
+     * Waits for every task submitted with the barrier's completion counter, then stops tracking them. Must only be
+     * called by the main thread.
+     *
+     * @param name Describes the work being waited on, which is reported if none of it is made up of tracked tasks
+     * @param cancelled Stops the wait early if it returns true, such as when the thread pool has been shut down
+     */
+    void await(String name, BooleanSupplier cancelled) {
+        try {
+            await(completionCounter, name, cancelled);
+        }
+        finally {
+            tasks.clear();
+        }
+    }
+
+    /*
+     * Waits for the supplied completion counter to reach zero, helping to run queued tasks in the meantime. If a task
+     * has failed since the last wait, its failure is rethrown once the counter reaches zero. Must only be called by the
+     * main thread.
+     *
+     * @param name Describes the work being waited on, which is reported if none of it is made up of tracked tasks
+     * @param cancelled Stops the wait early if it returns true
+     */
+    void await(AtomicInteger counter, String name, BooleanSupplier cancelled) {
+        if (counter.get() == 0) {
+            rethrowFailure();
+            return;
+        }
+        long startTime = System.nanoTime();
+        boolean reported = false;
+        int idleCount = 0;
+        while (counter.get() != 0) {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            if (helper.getAsBoolean()) {
+                helpedTasks.incrementAndGet();
+                idleCount = 0;
+            }
+            else {
+                idleCount = idleStrategy.idle(idleCount, maxParkNanos);
+            }
+            if (stallTimeout > 0 && !reported) {
+                long waited = System.nanoTime() - startTime;
+                if (waited >= stallTimeout) {
+                    reportStall(name, waited, counter == completionCounter);
+                    reported = true;
+                }
+            }
+        }
+        waitTime.record(System.nanoTime() - startTime);
+        rethrowFailure();
+    }
+
+    private void rethrowFailure() {
+        RuntimeException failure = this.failure.getAndSet(null);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void reportStall(String name, long waited, boolean tracked) {
+        stalls.incrementAndGet();
+        // The report is only built when there is someone to hand it to
+        if (stallListener == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        StringBuilder builder = new StringBuilder("Frame stalled for " + (waited / 1000000) + " ms waiting on: ");
+        boolean any = false;
+        for (int i = 0; tracked && i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            if (task.finished) {
+                continue;
+            }
+            long startTime = task.startTime;
+            if (any) {
+                builder.append(", ");
+            }
+            builder.append(task.getName());
+            if (startTime == 0) {
+                builder.append(" (queued for ").append((now - task.submitTime) / 1000000).append(" ms)");
+            }
+            else {
+                builder.append(" (running for ").append((now - startTime) / 1000000).append(" ms)");
+            }
+            any = true;
+        }
+        if (!any) {
+            builder.append(name);
+        }
+        stallListener.onStall(builder.toString());
+    }
+
+    /*
+     * A task whose progress is tracked by the barrier. Subclasses implement execute() with the work itself.
+     */
+    abstract static class Task implements Runnable {
+
+        private long submitTime;
+        private volatile long startTime;
+        private volatile boolean finished;
+
+        @Override
+        public final void run() {
+            startTime = System.nanoTime();
+            try {
+                execute();
+            }
+            finally {
+                finished = true;
+            }
+        }
+
+        abstract void execute();
+
+        abstract String getName();
+    }
+
+}
@@ -0,0 +1,171 @@
+package Core;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+ * The Profiler class records scoped timing spans from engine threads. Every thread records into its own fixed size
+ * ring buffer, so recording neither allocates nor contends with other threads, and only the most recent spans of each
+ * thread are kept. Spans are opened with begin() and closed with end() on the same thread, and may be nested. The
+ * recorded spans can be dumped at any time in the Chrome trace event format, which can be opened in chrome://tracing
+ * or Perfetto.
+ */
+class Profiler {
+
+    private static final int BUFFER_CAPACITY = 1 << 16; // Per thread
+    private static final int MAX_DEPTH = 64;
+
+    private final long startTime;
+    private final ThreadLocal<SpanBuffer> threadBuffer;
+    private final CopyOnWriteArrayList<SpanBuffer> buffers;
+    private volatile boolean enabled;
+    // Incremented whenever profiling is enabled, so that spans left open when profiling was last disabled are dropped
+    private volatile int generation;
+
+    Profiler() {
+        startTime = System.nanoTime();
+        buffers = new CopyOnWriteArrayList<>();
+        threadBuffer = ThreadLocal.withInitial(() -> {
+            SpanBuffer buffer = new SpanBuffer(Thread.currentThread());
+            buffers.add(buffer);
+            return buffer;
+        });
+    }
+
+    void setEnabled(boolean enabled) {
+        if (enabled && !this.enabled) {
+            generation++;
+        }
+        this.enabled = enabled;
+    }
+
+    /*
+     * Opens a span on the calling thread. The name should be a constant or cached string, as it is stored as is.
+     */
+    void begin(String name) {
+        if (!enabled) {
+            return;
+        }
+        SpanBuffer buffer = threadBuffer.get();
+        if (buffer.generation != generation) {
+            buffer.generation = generation;
+            buffer.depth = 0;
+        }
+        if (buffer.depth < MAX_DEPTH) {
+            buffer.openNames[buffer.depth] = name;
+            buffer.openStarts[buffer.depth] = System.nanoTime();
+        }
+        buffer.depth++;
+    }
+
+    /*
+     * Closes the span most recently opened on the calling thread.
+     */
+    void end() {
+        if (!enabled) {
+            return;
+        }
+        SpanBuffer buffer = threadBuffer.get();
+        if (buffer.generation != generation || buffer.depth == 0) {
+            return;
+        }
+        buffer.depth--;
+        if (buffer.depth < MAX_DEPTH) {
+            long start = buffer.openStarts[buffer.depth];
+            buffer.record(buffer.openNames[buffer.depth], start - startTime, System.nanoTime() - start);
+            buffer.openNames[buffer.depth] = null;
+        }
+    }
+
+    /*
+     * Writes every span currently held in the thread buffers to the supplied file as Chrome trace event JSON. This may
+     * be called from any thread while spans are still being recorded.
+     */
+    void dump(String filePath) {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filePath),
+                StandardCharsets.UTF_8))) {
+            writer.write("{\"traceEvents\":[");
+            boolean first = true;
+            for (SpanBuffer buffer : buffers) {
+                // Name each thread's track
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + buffer.threadId
+                        + ",\"args\":{\"name\":\"" + escape(buffer.threadName) + "\"}}");
+                // Copy the buffer's spans before writing them out, so that we can tell which spans were overwritten
+                // by the owning thread while we were copying them
+                long count = buffer.count;
+                int numSpans = (int) Math.min(count, BUFFER_CAPACITY);
+                String[] names = new String[numSpans];
+                long[] starts = new long[numSpans];
+                long[] durations = new long[numSpans];
+                for (int i = 0; i < numSpans; i++) {
+                    int index = (int) ((count - numSpans + i) % BUFFER_CAPACITY);
+                    names[i] = buffer.names[index];
+                    starts[i] = buffer.starts[index];
+                    durations[i] = buffer.durations[index];
+                }
+                // Any span that the owning thread has lapped since we started copying may be torn, so skip it
+                long overwritten = (buffer.count - BUFFER_CAPACITY) - (count - numSpans);
+                for (int i = (int) Math.max(0, overwritten); i < numSpans; i++) {
+                    if (names[i] == null) {
+                        continue;
+                    }
+                    writer.write(",{\"name\":\"" + escape(names[i]) + "\",\"cat\":\"engine\",\"ph\":\"X\",\"ts\":"
+                            + (starts[i] / 1000.0) + ",\"dur\":" + (durations[i] / 1000.0) + ",\"pid\":1,\"tid\":"
+                            + buffer.threadId + "}");
+                }
+            }
+            writer.write("]}");
+        }
+        catch (Exception e) {
+            throw new RuntimeException("Could not write profile to " + filePath, e);
+        }
+    }
+
+    private static String escape(String string) {
+        return string.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    // Spans are only ever written by the owning thread. The count is volatile so that the dumping thread sees every
+    // span written before it
+    private static class SpanBuffer {
+
+        private final String threadName;
+        private final long threadId;
+        private final String[] names;
+        private final long[] starts;
+        private final long[] durations;
+        private volatile long count;
+        // Stack of currently open spans
+        private final String[] openNames;
+        private final long[] openStarts;
+        private int depth;
+        private int generation;
+
+        private SpanBuffer(Thread thread) {
+            threadName = thread.getName();
+            threadId = thread.getId();
+            names = new String[BUFFER_CAPACITY];
+            starts = new long[BUFFER_CAPACITY];
+            durations = new long[BUFFER_CAPACITY];
+            openNames = new String[MAX_DEPTH];
+            openStarts = new long[MAX_DEPTH];
+        }
+
+        private void record(String name, long start, long duration) {
+            int index = (int) (count % BUFFER_CAPACITY);
+            names[index] = name;
+            starts[index] = start;
+            durations[index] = duration;
+            count++;
+        }
+    }
+
+}
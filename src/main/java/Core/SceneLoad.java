@@ -0,0 +1,101 @@
+package Core;
+
+import EngineLibrary.IScene;
+
+/**
+ * The <code>SceneLoad</code> class represents a scene being prepared in the background before it is pushed onto the
+ * scene stack. The scene is prepared by a background job, which calls the scene's <code>prepare</code> method and sorts
+ * its states by phase, after which the scene is pushed onto the stack at the start of the next frame. A
+ * <code>SceneLoad</code> object doubles as the handle used to follow the scene's progress, such as by a loading screen.
+ *
+ * @see Module#pushSceneAsync(IScene)
+ */
+public class SceneLoad {
+
+    private static final int PREPARING = 0;
+    private static final int PUSHED = 1;
+    private static final int FAILED = 2;
+
+    private final IScene scene;
+    private volatile double progress;
+    private volatile int state;
+    // Written before the state is set to FAILED, which publishes it to any thread that reads the state
+    private Throwable failure;
+
+    SceneLoad(IScene scene) {
+        this.scene = scene;
+        progress = 0;
+        state = PREPARING;
+    }
+
+    // Called by the main thread once the scene has been pushed onto the scene stack
+    void pushed() {
+        progress = 1;
+        state = PUSHED;
+    }
+
+    // Called by the main thread if the scene threw an exception while being prepared
+    void failed(Throwable failure) {
+        this.failure = failure;
+        state = FAILED;
+    }
+
+    /**
+     * Returns the scene being loaded.
+     *
+     * @return The <code>IScene</code> object being loaded
+     */
+    public IScene getScene() {
+        return scene;
+    }
+
+    /**
+     * Sets how far along the scene is in being prepared. Called by the scene while it's being prepared, and safe to
+     * call from any thread.
+     *
+     * @param progress The fraction of the scene that has been prepared, from zero to one
+     */
+    public void setProgress(double progress) {
+        this.progress = Math.max(0, Math.min(progress, 1));
+    }
+
+    /**
+     * Returns how far along the scene is in being prepared, as last reported by the scene. Once the scene has been
+     * pushed onto the scene stack, the progress is always one.
+     *
+     * @return The fraction of the scene that has been prepared, from zero to one
+     */
+    public double getProgress() {
+        return progress;
+    }
+
+    /**
+     * Returns whether the load has completed, either by the scene being pushed onto the scene stack or by the scene
+     * failing to be prepared.
+     *
+     * @return True if the load has completed, otherwise false
+     */
+    public boolean isDone() {
+        return state != PREPARING;
+    }
+
+    /**
+     * Returns whether the scene has been pushed onto the scene stack, in which case its states are now being updated.
+     *
+     * @return True if the scene has been pushed, otherwise false
+     */
+    public boolean isPushed() {
+        return state == PUSHED;
+    }
+
+    /**
+     * Returns the exception thrown by the scene while it was being prepared, in which case it was never pushed onto the
+     * scene stack.
+     *
+     * @return The exception thrown by the scene, or null if the scene has not failed
+     */
+    public Throwable getFailure() {
+        return state == FAILED ? failure : null;
+    }
+
+}
@@ -0,0 +1,59 @@
+package Core;
+
+import EngineLibrary.IState;
+
+import java.util.Map;
+
+/*
+ * The StateGraph class builds the dependency graph between the states of a single phase and flattens it into levels.
+ * A state depends on every state ahead of it in update order that it conflicts with, and is placed one level after the
+ * latest of those dependencies. All states on the same level are therefore free of conflicts with one another and may
+ * be updated concurrently, while conflicting states keep their original relative order.
+ */
+class StateGraph {
+
+    private StateGraph() {}
+
+    /*
+     * @param states Every state in the phase, in update order
+     * @param stateOptions The scheduling options of each state, if any were supplied
+     * @return An array of levels, each holding the states that may be updated concurrently, in update order
+     */
+    static IState[][] buildLevels(IState[] states, Map<IState, StateOptions> stateOptions) {
+        int[] stateLevels = new int[states.length];
+        int numLevels = 0;
+        for (int i = 0; i < states.length; i++) {
+            StateOptions options = stateOptions.get(states[i]);
+            int level = 0;
+            // Only conflicts with states on or after the current deepest dependency can push this state back further
+            for (int y = i - 1; y >= 0; y--) {
+                if (stateLevels[y] >= level && conflicts(options, stateOptions.get(states[y]))) {
+                    level = stateLevels[y] + 1;
+                }
+            }
+            stateLevels[i] = level;
+            numLevels = Math.max(numLevels, level + 1);
+        }
+        // Count the states on each level, then fill each level in update order
+        int[] levelSizes = new int[numLevels];
+        for (int i = 0; i < states.length; i++) {
+            levelSizes[stateLevels[i]]++;
+        }
+        IState[][] levels = new IState[numLevels][];
+        for (int i = 0; i < numLevels; i++) {
+            levels[i] = new IState[levelSizes[i]];
+            levelSizes[i] = 0;
+        }
+        for (int i = 0; i < states.length; i++) {
+            int level = stateLevels[i];
+            levels[level][levelSizes[level]] = states[i];
+            levelSizes[level]++;
+        }
+        return levels;
+    }
+
+    private static boolean conflicts(StateOptions options1, StateOptions options2) {
+        return options1 == null || options1.conflictsWith(options2);
+    }
+
+}
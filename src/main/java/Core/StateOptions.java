@@ -0,0 +1,180 @@
+package Core;
+
+/**
+ * The <code>StateOptions</code> class holds optional scheduling information that can be supplied when registering an
+ * <code>IState</code> object with the <code>Core</code>. Each state may declare the data that it reads from and writes
+ * to during its updates, with each piece of data being identified by an <code>Enum</code> of the registering module's
+ * choosing. States within the same phase that do not share any written data are free to be updated concurrently. A
+ * state that does not declare any data access is assumed to conflict with every other state, and will therefore always
+ * be updated on its own.
+ * <p>
+ * States registered under <code>ALL</code> may also supply hints about how finely their component updates should be
+ * split across threads, which keeps states with few or cheap components from paying more to fan out than they gain.
+ * States registered under the update phase may also tick at a lower rate than the engine loop.
+ */
+public class StateOptions {
+
+    private Enum[] reads;
+    private Enum[] writes;
+    private int minComponentsPerTask = 1;
+    private long costPerComponent = -1;
+    private int inlineThreshold;
+    private int tickDivisor = 1;
+    private double tickRate;
+
+    /**
+     * Declares the data that the state reads from during its updates.
+     *
+     * @param data The <code>Enum</code> identifying each piece of data that is read
+     * @return This <code>StateOptions</code> object
+     */
+    public StateOptions reads(Enum... data) {
+        reads = data;
+        return this;
+    }
+
+    /**
+     * Declares the data that the state writes to during its updates.
+     *
+     * @param data The <code>Enum</code> identifying each piece of data that is written
+     * @return This <code>StateOptions</code> object
+     */
+    public StateOptions writes(Enum... data) {
+        writes = data;
+        return this;
+    }
+
+    /**
+     * Sets the minimum number of components that each thread should update when the components of a state registered
+     * under <code>ALL</code> are split across threads. Fewer threads are used for a state that doesn't have enough
+     * components to give each of them this many. Only applies to states registered under <code>ALL</code>.
+     *
+     * @param numComponents The minimum number of components per thread. The default is one
+     * @return This <code>StateOptions</code> object
+     */
+    public StateOptions minComponentsPerTask(int numComponents) {
+        if (numComponents < 1) {
+            throw new RuntimeException("Minimum components per task must be at least 1");
+        }
+        minComponentsPerTask = numComponents;
+        return this;
+    }
+
+    /**
+     * Sets an estimate of how long a single component update of the state takes. By default, this is measured while
+     * the state is being updated, so an estimate only needs to be given if the first few updates need to be scheduled
+     * well, or if the cost of the state's updates varies too much for the measurement to be useful. Only applies to
+     * states registered under <code>ALL</code>.
+     *
+     * @param nanos The estimated time taken to update a single component, in nanoseconds
+     * @return This <code>StateOptions</code> object
+     */
+    public StateOptions costPerComponent(long nanos) {
+        if (nanos < 0) {
+            throw new RuntimeException("Cost per component cannot be negative");
+        }
+        costPerComponent = nanos;
+        return this;
+    }
+
+    /**
+     * Sets the number of components at or below which the state is always updated inline on the main thread, rather
+     * than being split across threads. Regardless of this setting, a state is also updated inline when its estimated
+     * update cost is lower than the cost of handing the work off to other threads. Only applies to states registered
+     * under <code>ALL</code>.
+     *
+     * @param numComponents The largest number of components that is updated inline. The default is zero
+     * @return This <code>StateOptions</code> object
+     */
+    public StateOptions inlineThreshold(int numComponents) {
+        inlineThreshold = numComponents;
+        return this;
+    }
+
+    /**
+     * Sets the state to be updated once every so many ticks of the update phase, rather than on every tick. Low rate
+     * states are spread across ticks so that they don't all update on the same tick. Since each of the state's updates
+     * covers several ticks, it should advance by its divisor multiplied by <code>Timestep.getDelta()</code>. Only
+     * applies to states registered under the update phase.
+     *
+     * @param divisor The number of ticks between each update of the state. The default is one
+     * @return This <code>StateOptions</code> object
+     * @see Timestep#getDelta()
+     */
+    public StateOptions tickDivisor(int divisor) {
+        if (divisor < 1) {
+            throw new RuntimeException("Tick divisor must be at least 1");
+        }
+        tickDivisor = divisor;
+        tickRate = 0;
+        return this;
+    }
+
+    /**
+     * Sets the rate at which the state is updated, which is rounded to the nearest whole divisor of the engine's
+     * update rate. For example, a state with a tick rate of 10 Hz in an engine running at 60 updates per second is
+     * updated every sixth tick. Only applies to states registered under the update phase.
+     *
+     * @param hertz The number of times per second that the state should be updated
+     * @return This <code>StateOptions</code> object
+     * @see #tickDivisor(int)
+     */
+    public StateOptions tickRate(double hertz) {
+        if (hertz <= 0) {
+            throw new RuntimeException("Tick rate must be positive");
+        }
+        tickRate = hertz;
+        tickDivisor = 1;
+        return this;
+    }
+
+    int getTickDivisor(int targetUPS) {
+        if (tickRate > 0) {
+            return (int) Math.max(1, Math.round(targetUPS / tickRate));
+        }
+        return tickDivisor;
+    }
+
+    int getMinComponentsPerTask() {
+        return minComponentsPerTask;
+    }
+
+    // Returns -1 if no estimate was given
+    long getCostPerComponent() {
+        return costPerComponent;
+    }
+
+    int getInlineThreshold() {
+        return inlineThreshold;
+    }
+
+    boolean declaresAccess() {
+        return reads != null || writes != null;
+    }
+
+    /*
+     * Returns whether two states may not be updated concurrently, which is the case if either state writes to data
+     * that the other state reads or writes, or if either state has not declared its data access.
+     */
+    boolean conflictsWith(StateOptions options) {
+        if (options == null || !declaresAccess() || !options.declaresAccess()) {
+            return true;
+        }
+        return overlaps(writes, options.reads) || overlaps(writes, options.writes) || overlaps(reads, options.writes);
+    }
+
+    private static boolean overlaps(Enum[] data1, Enum[] data2) {
+        if (data1 == null || data2 == null) {
+            return false;
+        }
+        for (int i = 0; i < data1.length; i++) {
+            for (int y = 0; y < data2.length; y++) {
+                if (data1[i] == data2[y]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,181 @@
+package Core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/*
+ * The TaskRing class is a bounded, lock-free, multi-producer multi-consumer task queue used by each WorkerThread. The
+ * owning WorkerThread is the ring's main consumer, but the main thread may also take tasks from it while waiting on a
+ * barrier.
+ * Every slot in the ring carries a sequence number, which tells producers and the consumer whose turn it is to use
+ * that slot, along with the task and the completion counter of the batch that the task belongs to. Submission neither
+ * allocates nor hashes the submitted task.
+ *
+ * For a slot at index i, a sequence equal to position p (where i = p % capacity) means that the slot is free for the
+ * producer claiming position p, and a sequence equal to p + 1 means that the slot holds the task published at position
+ * p and is ready to be consumed. Once consumed, the sequence is advanced to p + capacity, freeing the slot for the next
+ * lap around the ring.
+ *
+ * A task that throws an exception is handed to the ring's failure handler and still counted down, so that whoever is
+ * waiting on its completion counter is never left waiting on it.
+ */
+class TaskRing {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final Runnable[] tasks;
+    private final AtomicInteger[] completionCounters;
+    private final AtomicLong tail;
+    // Tasks that have been submitted but not yet completed, including the one currently being run, plus one while the
+    // consumer has claimed the ring with claimIdle()
+    private final AtomicInteger pending;
+    // Consumers claim positions by advancing the head with a CAS
+    private final AtomicLong head;
+    private final Consumer<Throwable> failureHandler;
+
+    /*
+     * @param capacity The maximum number of tasks held in the ring. Must be a power of two
+     * @param failureHandler Receives the exception thrown by a task, on the thread that ran it, before the task is
+     *                       counted down
+     */
+    TaskRing(int capacity, Consumer<Throwable> failureHandler) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new RuntimeException("Task ring capacity " + capacity + " is not a power of two");
+        }
+        mask = capacity - 1;
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        tasks = new Runnable[capacity];
+        completionCounters = new AtomicInteger[capacity];
+        tail = new AtomicLong(0);
+        head = new AtomicLong(0);
+        pending = new AtomicInteger(0);
+        this.failureHandler = failureHandler;
+    }
+
+    /*
+     * Attempts to add a task to the ring. The completion counter is incremented on success and decremented once the
+     * task has been run. This method is safe to call from any thread.
+     *
+     * @param task The task to be run by the consumer
+     * @param completionCounter The counter tracking the batch that the task belongs to
+     * @return False if the ring is full, otherwise true
+     */
+    boolean offer(Runnable task, AtomicInteger completionCounter) {
+        return offer(task, completionCounter, true);
+    }
+
+    /*
+     * Adds a task to the ring only if the ring is idle, meaning that it has no pending tasks and that the consumer
+     * hasn't claimed it with claimIdle(). Checking for idleness and submitting happen as a single atomic step, so the
+     * task is guaranteed to be run next. This method is safe to call from any thread.
+     *
+     * @return False if the ring was not idle, otherwise true
+     */
+    boolean offerIfIdle(Runnable task, AtomicInteger completionCounter) {
+        if (!pending.compareAndSet(0, 1)) {
+            return false;
+        }
+        // Nothing is pending, so every slot is free and the offer can't fail
+        return offer(task, completionCounter, false);
+    }
+
+    /*
+     * Marks the ring as busy without adding a task to it, so that offerIfIdle() fails until releaseIdle() is called.
+     * Used by the owning thread to run work from outside the ring.
+     *
+     * @return False if the ring was not idle, otherwise true
+     */
+    boolean claimIdle() {
+        return pending.compareAndSet(0, 1);
+    }
+
+    void releaseIdle() {
+        pending.decrementAndGet();
+    }
+
+    private boolean offer(Runnable task, AtomicInteger completionCounter, boolean countPending) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                // The slot is free, so try to claim the position before another producer does
+                if (tail.compareAndSet(position, position + 1)) {
+                    // The pending count MUST be incremented before the task is published, otherwise the consumer may
+                    // run and complete the task before it is counted, leaving the ring looking idle while still holding
+                    // an uncounted task
+                    if (countPending) {
+                        pending.incrementAndGet();
+                    }
+                    completionCounter.incrementAndGet();
+                    tasks[index] = task;
+                    completionCounters[index] = completionCounter;
+                    // Publishing the sequence is a volatile write, so the slot contents written above are guaranteed to
+                    // be visible to the consumer once it reads the new sequence
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            }
+            else if (difference < 0) {
+                // The consumer hasn't freed this slot from the previous lap yet, so the ring is full
+                return false;
+            }
+            // Otherwise another producer claimed this position first, so re-read the tail and try again
+        }
+    }
+
+    /*
+     * Runs the task at the head of the ring, if there is one. This method is safe to call from any thread.
+     *
+     * @return True if a task was run, otherwise false
+     */
+    boolean runNext() {
+        long position;
+        int index;
+        do {
+            position = head.get();
+            index = (int) position & mask;
+            if (sequences.get(index) != position + 1) {
+                return false;
+            }
+            // Another consumer may take the task first, in which case we re-read the head and try again
+        } while (!head.compareAndSet(position, position + 1));
+        Runnable task = tasks[index];
+        AtomicInteger completionCounter = completionCounters[index];
+        tasks[index] = null;
+        completionCounters[index] = null;
+        // Free the slot before running the task so that producers aren't held up by a long running task
+        sequences.set(index, position + mask + 1);
+        try {
+            task.run();
+        }
+        catch (Throwable t) {
+            failureHandler.accept(t);
+        }
+        finally {
+            // The pending count is decremented before the completion counter so that once a batch is seen as complete,
+            // the worker is already seen as inactive
+            pending.decrementAndGet();
+            completionCounter.decrementAndGet();
+        }
+        return true;
+    }
+
+    /*
+     * Returns whether there is a task at the head of the ring.
+     */
+    boolean isReady() {
+        long position = head.get();
+        return sequences.get((int) position & mask) == position + 1;
+    }
+
+    boolean hasPending() {
+        return pending.get() > 0;
+    }
+
+}
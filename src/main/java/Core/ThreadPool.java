@@ -1,17 +1,18 @@
 package Core;
 
+import Core.Module.StallListener;
 import Core.Module.ThreadType;
 import EngineLibrary.IComponent;
 import EngineLibrary.IState;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 import static Core.Module.ThreadType.*;
 
@@ -21,63 +22,162 @@ import static Core.Module.ThreadType.*;
  */
 class ThreadPool {
 
+    // Workers are unparked as soon as a task is submitted to them, so they can afford to park for much longer than the
+    // main thread, which has to notice batch completion on its own
+    private static final long WORKER_MAX_PARK_NANOS = 1000000;
+    private static final long BARRIER_MAX_PARK_NANOS = 50000;
+    private static final IComponent[] NO_COMPONENTS = new IComponent[0];
+
     private final int maxThreads;
+    private final IdleStrategy idleStrategy;
+    private final Profiler profiler;
+    private final Metrics metrics;
+    private final CostModel costModel;
+    private final JobQueue jobQueue;
+    private final PhaseBarrier phaseBarrier;
+    private final TickRates tickRates;
+    private final EventOrder eventOrder;
     private final WorkerThread renderThread;
     private final WorkerThread[] threads;
+    // The total time that the worker threads, not counting the render thread, have spent running tasks and jobs
+    private final AtomicLong busyTime;
     // Atomic variables use Compare-And-Swap (CAS) to ensure that operations, such as incrementing an Atomic integer,
     // are not interrupted by other threads partway through the operation and thus race conditions are avoided
     private Map<IState, ThreadType> stateThreadType;
-    private Map<IState, WorkerThread> reservedThreads;
+    // Profiler span names are cached per state so that recording a span never builds a string
+    private Map<IState, String> stateSpanNames;
+    // Each state's update time histogram, along with the name it is registered under in the metrics registry
+    private Map<IState, Histogram> stateUpdateTimes;
+    private Map<IState, String> stateMetricNames;
+    // The tasks of states on reserved threads, which are reused every time the state is updated
+    private Map<IState, ReservedTask> reservedTasks;
     private int nextUnreservedThread;
+    private volatile boolean shutDown;
+    // The update batch and its participant runnables are reused across every data parallel state update, since
+    // executeUpdateTasks() never returns before the batch has been completed
+    private final WorkStealingBatch updateBatch;
+    private final Runnable[] batchTasks;
+    private final AtomicInteger batchCompletionCounter;
+    // The set of event tasks handed to each worker, which is reused every dispatch
+    private final EventTaskSet[] eventTaskSets;
+    // The render phase task used in pipelined mode, which updates the levels it was last submitted with
+    private final Runnable renderTask;
+    private final AtomicInteger renderCompletionCounter;
+    private IState[][] renderLevels;
+    private long renderFirstKey;
+    // Scratch buffers for pooling the components of every state in a level, which only ever grow
+    private IComponent[][] levelComponents;
+    private long[] levelUpdateTimes;
+    private boolean[] levelInlined;
+    private IComponent[] parallelComponents;
 
-    ThreadPool() {
+    ThreadPool(IdleStrategy idleStrategy, Profiler profiler, Metrics metrics, CostModel costModel, JobQueue jobQueue,
+               TickRates tickRates, EventOrder eventOrder, long stallTimeout, StallListener stallListener) {
+        this.idleStrategy = idleStrategy;
+        this.profiler = profiler;
+        this.metrics = metrics;
+        this.costModel = costModel;
+        this.jobQueue = jobQueue;
+        this.tickRates = tickRates;
+        this.eventOrder = eventOrder;
         maxThreads = Runtime.getRuntime().availableProcessors() - 1;
-        if (maxThreads == 0) {
-            System.out.println("bruh");
-        }
-        System.out.println("Number of available threads: " + maxThreads); // TODO: Replace with logger
-        renderThread = new WorkerThread("Render Thread");
+        // Created before any thread is started, as every thread hands the failures of its tasks to the barrier
+        phaseBarrier = new PhaseBarrier(this::helpQueuedTask, idleStrategy, BARRIER_MAX_PARK_NANOS, stallTimeout,
+                stallListener, metrics);
+        // The render thread never runs background jobs, as it must always be free to pick up the render phase
+        renderThread = new WorkerThread("Render Thread", idleStrategy, profiler, null,
+                metrics.counter("render.busy.time"), phaseBarrier::fail);
         renderThread.start();
+        busyTime = metrics.counter("workers.busy.time");
         int remainingThreads = maxThreads - 1;
         if (remainingThreads > 0) { // remainingThreads equals -1 if single core, 0 if dual core
             threads = new WorkerThread[remainingThreads];
             for (int i = 0; i < remainingThreads; i++) {
-                threads[i] = new WorkerThread("Thread " + (i + 2));
+                threads[i] = new WorkerThread("Thread " + (i + 2), idleStrategy, profiler, jobQueue, busyTime,
+                        phaseBarrier::fail);
                 threads[i].start();
             }
         }
         else {
             threads = new WorkerThread[1];
-            threads[0] = new WorkerThread("Thread 2");
+            threads[0] = new WorkerThread("Thread 2", idleStrategy, profiler, jobQueue, busyTime, phaseBarrier::fail);
             threads[0].start();
-            System.out.println("Threadpool defaults to two threads"); // TODO: Replace with logger
         }
+        // The render thread isn't counted, as it never takes on work from the other phases
+        metrics.gauge("workers.threads", () -> threads.length);
 
-        stateThreadType = new HashMap<>();
-        reservedThreads = new HashMap<>();
+        stateThreadType = new ConcurrentHashMap<>();
+        stateSpanNames = new ConcurrentHashMap<>();
+        stateUpdateTimes = new ConcurrentHashMap<>();
+        stateMetricNames = new ConcurrentHashMap<>();
+        reservedTasks = new HashMap<>();
+        updateBatch = new WorkStealingBatch(threads.length + 1, eventOrder);
+        batchTasks = new Runnable[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            int participant = i + 1; // Participant 0 is always the main thread
+            batchTasks[i] = () -> {
+                profiler.begin("Component Batch");
+                updateBatch.run(participant);
+                profiler.end();
+            };
+        }
+        batchCompletionCounter = new AtomicInteger(0);
+        eventTaskSets = new EventTaskSet[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            eventTaskSets[i] = new EventTaskSet();
+        }
+        levelComponents = new IComponent[0][];
+        levelUpdateTimes = new long[0];
+        levelInlined = new boolean[0];
+        renderTask = this::runRenderLevels;
+        renderCompletionCounter = new AtomicInteger(0);
+        parallelComponents = new IComponent[0];
         // TODO: add support for running update tasks on the render thread if free
     }
 
-    void registerState(IState state, ThreadType threadType) {
+    void registerState(IState state, ThreadType threadType, StateOptions options) {
         if (stateThreadType.containsKey(state)) {
             throw new RuntimeException("State " + state + " has already been registered with the thread pool");
         }
         stateThreadType.put(state, threadType);
+        stateSpanNames.put(state, state.getClass().getSimpleName());
+        String metricName = "state." + state.getClass().getSimpleName() + "@"
+                + Integer.toHexString(System.identityHashCode(state)) + ".time";
+        stateMetricNames.put(state, metricName);
+        stateUpdateTimes.put(state, metrics.histogram(metricName));
+        costModel.registerState(state, threadType, options);
         // Reserve appropriate thread
         if (threadType == RENDER) {
-            reservedThreads.put(state, renderThread);
+            reservedTasks.put(state, new ReservedTask(state, renderThread));
         }
         else if (threadType == WORKER) {
             // Get the next thread with the least amount of reservations
-            reservedThreads.put(state, threads[nextUnreservedThread]);
+            reservedTasks.put(state, new ReservedTask(state, threads[nextUnreservedThread]));
             nextUnreservedThread = (nextUnreservedThread + 1) % threads.length;
         }
     }
 
     void unregisterState(IState state) {
         stateThreadType.remove(state);
+        stateSpanNames.remove(state);
+        String metricName = stateMetricNames.remove(state);
+        if (metricName != null) {
+            metrics.remove(metricName);
+        }
+        stateUpdateTimes.remove(state);
+        costModel.unregisterState(state);
         // TODO: Improve reserved thread tracking to optimize finding the next unreserved thread when states are unregistered
-        reservedThreads.remove(state);
+        reservedTasks.remove(state);
+    }
+
+    // Returns the number of worker threads, not including the render thread
+    int getNumThreads() {
+        return threads.length;
+    }
+
+    // Returns the total time that the worker threads have spent running tasks and jobs, in nanoseconds
+    long getBusyTime() {
+        return busyTime.get();
     }
 
     // The only threads that should sit idle would be those allocated to processing initial event tasks that have
@@ -87,147 +187,413 @@ class ThreadPool {
     int getAvailableThreads() {
         int availableThreads = 0;
         for (int i = 0; i < threads.length; i++) {
-            if (threads[i].isActive()) {
+            if (!threads[i].isActive()) {
                 availableThreads++;
             }
         }
         return availableThreads;
     }
 
-    void executeEventTasks(Runnable[] tasks, int numThreads) {
-        if (numThreads > getAvailableThreads()) {
+    /*
+     * Queues a background job to be run by the next worker thread to go idle, and wakes up an idle worker to run it.
+     * This method is safe to call from any thread.
+     */
+    void submitJob(Job<?> job) {
+        jobQueue.submit(job);
+        if (idleStrategy.parks()) {
+            for (int i = 0; i < threads.length; i++) {
+                if (!threads[i].isActive()) {
+                    LockSupport.unpark(threads[i]);
+                    break;
+                }
+            }
+        }
+    }
+
+    /*
+     * Replenishes the background job budget and runs the continuations of completed jobs. Must only be called by the
+     * main thread, once at the start of every frame.
+     */
+    void beginJobFrame() {
+        jobQueue.beginFrame();
+    }
+
+    /*
+     * Runs the first numTasks event tasks, split across the specified number of worker threads. The tasks are joined by
+     * the next call to awaitPhase(), or by the level that they run alongside.
+     */
+    void executeEventTasks(Runnable[] tasks, int numTasks, int numThreads) {
+        if (numThreads > threads.length) {
             throw new RuntimeException("Thread target 'nThreads' exceeds number of available threads");
         }
-        if (tasks.length == 0) {
+        if (numTasks == 0) {
             return;
         }
-        // Allocate a set of component updates to each thread
-        int numTasks = tasks.length / (numThreads); // We add one because we will also be using the main thread
-        int excessTasks = tasks.length % (numThreads);
-        int head = numTasks + excessTasks;
-        int tail = (head + numTasks) - 1; // Subtract one because head marks location in array, which starts at 0
-        // Create an AtomicInteger to track the completion of each task in the batch submitted to the worker threads
-        AtomicInteger batchCompletionCounter = new AtomicInteger(0);
-        // Distribute tasks to each thread
-        for (int i = 0; i < numThreads; i++) {
-            if (!threads[i].isActive()) {
-                threads[i].submitTasks(generateRunnable(tasks, head, tail), batchCompletionCounter);
+        // Without any available worker threads, the event tasks are simply run on the main thread
+        if (numThreads == 0) {
+            profiler.begin("Event Tasks");
+            for (int i = 0; i < numTasks; i++) {
+                tasks[i].run();
+            }
+            profiler.end();
+            return;
+        }
+        // Allocate a set of event tasks to each thread, with the first thread also taking any excess tasks
+        int tasksPerThread = numTasks / numThreads;
+        int excessTasks = numTasks % numThreads;
+        int head = 0;
+        int tail = (tasksPerThread + excessTasks) - 1; // Subtract one because tail marks the last task in the set
+        // The tasks are joined by the phase barrier at the end of the level that they run alongside
+        AtomicInteger batchCompletionCounter = phaseBarrier.getCompletionCounter();
+        // Distribute tasks to each thread, stopping once the specified number of threads have been handed a set. Idle
+        // threads past that point are left for the level that the tasks run alongside
+        int submittedSets = 0;
+        for (int i = 0; i < threads.length && submittedSets < numThreads && head < numTasks; i++) {
+            // Event tasks are always joined before the next dispatch, so every set is free to be reused by now
+            EventTaskSet taskSet = eventTaskSets[i];
+            taskSet.tasks = tasks;
+            taskSet.head = head;
+            taskSet.tail = tail;
+            if (threads[i].submitIfIdle(taskSet, batchCompletionCounter)) {
+                submittedSets++;
                 head = tail + 1;
-                tail = (head + numTasks) - 1;
+                tail = Math.min((head + tasksPerThread) - 1, numTasks - 1);
             }
         }
-    }
-
-    private Runnable generateRunnable(Runnable[] runnables, int head, int tail) {
-        Runnable runnable = () -> {
-            for (int i = head; i <= tail; i++) {
-                runnables[i].run();
+        // A worker may have picked up a background job since the available threads were counted, in which case the
+        // sets of tasks that couldn't be handed out are run on the main thread
+        if (head < numTasks) {
+            profiler.begin("Event Tasks");
+            for (int i = head; i < numTasks; i++) {
+                tasks[i].run();
             }
-        };
-        return runnable;
+            profiler.end();
+        }
     }
 
     /*
-     * Executes a collection of component updates across the specified number of threads. These tasks will be
-     * automatically distributed to each thread. If the number of specified threads is greater than the number of
-     * provided tasks, then excess threads will remain idle. This method is not thread safe.
+     * Executes the updates of a set of mutually independent states across the specified number of threads. States
+     * registered under RENDER or WORKER are handed off to their reserved thread, while the components of every ALL
+     * state are pooled into a single batch that is distributed across the main thread and the specified number of
+     * workers. MAIN states are run on the main thread while the workers are busy with the batch. Since the states don't
+     * share any data, the order in which they run relative to each other doesn't matter. Events posted by the states are
+     * still dispatched in a fixed order, as every state and component update posts under a key reserved in advance by
+     * the main thread. This method is not thread safe.
      *
-     * @param state
-     * @param components
-     * @param numThreads
+     * @param states The states to be updated, none of which may conflict with one another
+     * @param numThreads The number of worker threads to distribute data parallel component updates to
      */
-    void executeUpdateTasks(IState state, IComponent[] components, int numThreads) {
-        ThreadType threadType = stateThreadType.get(state);
-        if (threadType == null)
-            throw new RuntimeException("State " + state + " has not been registered with the threadpool");
-        if (components.length == 0) {
-            return;
+    void executeUpdateTasks(IState[] states, int numThreads) {
+        if (numThreads > threads.length) {
+            throw new RuntimeException("Thread target 'numThreads' exceeds number of available threads");
+        }
+        if (levelComponents.length < states.length) {
+            levelComponents = new IComponent[states.length][];
+            levelUpdateTimes = new long[states.length];
+            levelInlined = new boolean[states.length];
         }
-        // Distribute to all available threads
-        if (threadType == ALL) { // Data parallel
-            if (numThreads > getAvailableThreads()) {
-                throw new RuntimeException("Thread target 'numThreads' exceeds number of available threads");
+        // Kick off task parallel states first so that their reserved threads get to work as soon as possible, and
+        // prepare each data parallel state for its component updates. Data parallel states too small to be worth
+        // splitting across threads are instead updated inline on the main thread
+        EventOrder.Source source = eventOrder.getSource();
+        int numParallelStates = 0;
+        int numParallelComponents = 0;
+        int minComponentsPerTask = 1;
+        double parallelCost = 0;
+        for (int i = 0; i < states.length; i++) {
+            IState state = states[i];
+            ThreadType threadType = stateThreadType.get(state);
+            if (threadType == null)
+                throw new RuntimeException("State " + state + " has not been registered with the threadpool");
+            // States that aren't due on this tick are skipped the same way as states without any components
+            IComponent[] components = tickRates.isDue(state) ? state.getComponents() : NO_COMPONENTS;
+            levelComponents[i] = components;
+            levelInlined[i] = false;
+            if (components.length == 0) {
+                continue;
             }
-            state.updatePrep();
-            // Allocate a set of component updates to each thread
-            int numTasks = components.length / (numThreads + 1); // We add one because we will also be using the main thread
-            int excessTasks = components.length % (numThreads + 1);
-            int head = numTasks + excessTasks; // We leave the first allocation of tasks plus any excess for the main thread
-            int tail = (head + numTasks) - 1;
-            // Create an AtomicInteger to track the completion of each task in the batch submitted to the worker threads
-            AtomicInteger batchCompletionCounter = new AtomicInteger(0);
-            // Distribute each batch of tasks to available threads
-            for (int i = 0; i < numThreads; i++) {
-                // Check if thread is inactive
-                if (!threads[i].isActive()) {
-                    Runnable runnable = generateRunnable(components, head, tail);
-                    // Submit task
-                    threads[i].submitTasks(runnable, batchCompletionCounter);
-                    head = tail + 1;
-                    tail = (head + numTasks) - 1;
-                    // A previously inactive thread will never suddenly become active during this loop because tasks are
-                    // only ever submitted from this method. However, a previously active thread may complete its task
-                    // during this loop or later in the method, meaning it will sit idle until the next time this method
-                    // is called
+            // Distribute to specified thread
+            if (threadType == RENDER || threadType == WORKER) { // Task parallel
+                submitReservedTask(state, components);
+            }
+            else if (threadType == ALL && costModel.shouldInline(state, components.length)) {
+                levelInlined[i] = true;
+            }
+            // Distribute to all available threads
+            else if (threadType == ALL) { // Data parallel
+                profiler.begin(stateSpanNames.get(state));
+                source.set(eventOrder.reserve(1));
+                long startTime = System.nanoTime();
+                state.updatePrep();
+                levelUpdateTimes[i] = System.nanoTime() - startTime;
+                profiler.end();
+                numParallelStates++;
+                numParallelComponents += components.length;
+                minComponentsPerTask = Math.max(minComponentsPerTask, costModel.getMinComponentsPerTask(state));
+                parallelCost += components.length * costModel.getComponentCost(state);
+            }
+        }
+        // Pool the components of every data parallel state into a single batch
+        if (numParallelComponents > 0) {
+            IComponent[] components = gatherParallelComponents(states, numParallelStates, numParallelComponents);
+            // Split the components across the main thread and as many available workers as the batch is worth. The
+            // initial split is only a starting point, as participants that finish early will steal work from those
+            // that are lagging behind
+            int numParticipants = Math.min(numThreads + 1, Math.max(1, numParallelComponents / minComponentsPerTask));
+            numParticipants = Math.min(numParticipants, costModel.getMaxParticipants(parallelCost));
+            updateBatch.reset(components, numParallelComponents, numParticipants,
+                    eventOrder.reserve(numParallelComponents));
+            // Distribute a batch participant to each available thread
+            int participant = 1;
+            for (int i = 0; i < threads.length && participant < numParticipants; i++) {
+                // Submit task if thread is inactive
+                if (threads[i].submitIfIdle(batchTasks[participant - 1], batchCompletionCounter)) {
+                    participant++;
+                    // A previously active thread may complete its task during this loop or later in the method, meaning
+                    // it will sit idle until the next time this method is called. Should an inactive thread pick up a
+                    // background job before its participant is submitted, the participant's share of the batch is
+                    // simply stolen by the others
+                }
+            }
+        }
+        // Run on main
+        for (int i = 0; i < states.length; i++) {
+            IComponent[] components = levelComponents[i];
+            if (components.length > 0 && (stateThreadType.get(states[i]) == MAIN || levelInlined[i])) { // Not parallel
+                profiler.begin(stateSpanNames.get(states[i]));
+                source.set(eventOrder.reserve(1));
+                long startTime = System.nanoTime();
+                states[i].updatePrep();
+                long componentStartTime = System.nanoTime();
+                updateComponents(components, 0, components.length - 1);
+                long componentTime = System.nanoTime() - componentStartTime;
+                if (levelInlined[i]) {
+                    for (int y = 0; y < components.length; y++) {
+                        components[y].threadsafeUpdate();
+                    }
+                }
+                states[i].update();
+                long updateTime = System.nanoTime() - startTime;
+                stateUpdateTimes.get(states[i]).record(updateTime);
+                if (levelInlined[i]) {
+                    costModel.recordSerial(states[i], updateTime - componentTime);
+                    costModel.recordComponent(states[i], (double) componentTime / components.length);
                 }
+                else {
+                    costModel.recordSerial(states[i], updateTime);
+                }
+                profiler.end();
             }
-            // Run on main thread
-            tail = (numTasks + excessTasks) - 1;
-            runOnMain(components, 0, tail);
-            // Wait for each task in the batch to be completed
-            while (batchCompletionCounter.get() != 0) {}
+        }
+        if (numParallelComponents > 0) {
+            // Run on main thread, which keeps stealing until there is no work left to take
+            profiler.begin("Component Batch");
+            long batchStartTime = System.nanoTime();
+            int numUpdated = updateBatch.run(0);
+            long batchTime = System.nanoTime() - batchStartTime;
+            profiler.end();
+            // Wait for every worker to leave the batch. This also covers components still being updated by workers,
+            // since a participant only leaves the batch once its own range is empty and there is nothing to steal
+            profiler.begin("Batch Wait");
+            phaseBarrier.await(batchCompletionCounter, "Component Batch", this::isStopped);
+            profiler.end();
+            // The main thread never waits while it is part of the batch, so its share gives a clean measure of the cost
+            // of a component update. Pooled states share the cost evenly
+            double componentCost = numUpdated > 0 ? (double) batchTime / numUpdated : Double.NaN;
             // Perform all threadsafe updates on the main thread. MAIN, RENDER, and WORKER threading options are all
             // inherently threadsafe
-            for (int i = 0; i < components.length; i++) {
-                components[i].threadsafeUpdate();
+            for (int i = 0; i < states.length; i++) {
+                IComponent[] components = levelComponents[i];
+                if (isPooled(states[i], i)) {
+                    profiler.begin(stateSpanNames.get(states[i]));
+                    source.set(eventOrder.reserve(1));
+                    long startTime = System.nanoTime();
+                    for (int y = 0; y < components.length; y++) {
+                        components[y].threadsafeUpdate();
+                    }
+                    states[i].update();
+                    // Component updates are pooled with other states, so a data parallel state's recorded time only
+                    // covers the work done on the main thread
+                    long serialTime = levelUpdateTimes[i] + (System.nanoTime() - startTime);
+                    stateUpdateTimes.get(states[i]).record(serialTime);
+                    costModel.recordSerial(states[i], serialTime);
+                    if (numUpdated > 0) {
+                        costModel.recordComponent(states[i], componentCost);
+                    }
+                    profiler.end();
+                }
             }
-            state.update();
         }
-        // Distribute to specified thread
-        else if (threadType == RENDER || threadType == WORKER) { // Task parallel
-            WorkerThread reservedThread = reservedThreads.get(state);
-            // The task completion counter isn't really needed since we never wait on the main thread for completion
-            AtomicInteger taskCompletionCounter = new AtomicInteger(0);
-            // Package each runnable up into a single task runnable
-            Runnable prepRunnable = state::updatePrep;
-            Runnable componentRunnable = generateRunnable(components, 0, components.length - 1);
-            Runnable updateRunnable = state::update;
-            Runnable taskRunnable = () -> {
-                prepRunnable.run();
-                componentRunnable.run();
-                updateRunnable.run();
-            };
-            // Run the task runnable
-            reservedThread.submitTasks(taskRunnable, taskCompletionCounter);
+        source.clear();
+        // Join the level's tasks on other threads, including states on reserved threads, before moving on to the next
+        // level
+        awaitPhase("State Level");
+        // Drop component references so that removed components can be garbage collected
+        for (int i = 0; i < states.length; i++) {
+            levelComponents[i] = null;
         }
-        // Run on main
-        else { // Not parallel
-            state.updatePrep();
-            runOnMain(components, 0, components.length - 1);
-            state.update();
+    }
+
+    // Returns the components of every data parallel state in the current level as a single array. If there's only the
+    // one data parallel state, its component array is used as is
+    private IComponent[] gatherParallelComponents(IState[] states, int numParallelStates, int numParallelComponents) {
+        if (numParallelStates == 1) {
+            for (int i = 0; i < states.length; i++) {
+                if (isPooled(states[i], i)) {
+                    return levelComponents[i];
+                }
+            }
+        }
+        if (parallelComponents.length < numParallelComponents) {
+            parallelComponents = new IComponent[numParallelComponents];
+        }
+        int head = 0;
+        for (int i = 0; i < states.length; i++) {
+            IComponent[] components = levelComponents[i];
+            if (isPooled(states[i], i)) {
+                System.arraycopy(components, 0, parallelComponents, head, components.length);
+                head += components.length;
+            }
         }
+        return parallelComponents;
     }
 
-    // In this case, the tail marks the last component that will be updated
-    private Runnable generateRunnable(IComponent[] components, int head, int tail) {
-        Runnable runnable = () -> {
-            for (int i = head; i <= tail; i++) {
-                components[i].update();
+    // Returns whether the state at the supplied index of the current level has its components in the update batch
+    private boolean isPooled(IState state, int index) {
+        return levelComponents[index].length > 0 && !levelInlined[index] && stateThreadType.get(state) == ALL;
+    }
+
+    private void submitReservedTask(IState state, IComponent[] components) {
+        ReservedTask task = reservedTasks.get(state);
+        // The components are published to the reserved thread by the task submission itself
+        task.components = components;
+        task.orderKey = eventOrder.reserve(1);
+        phaseBarrier.track(task);
+        task.thread.submitTasks(task, phaseBarrier.getCompletionCounter());
+    }
+
+    /*
+     * Waits for every task submitted since the last call to complete, including event tasks and states on reserved
+     * threads. The main thread helps run tasks still queued on worker threads while it waits. Must only be called by
+     * the main thread.
+     *
+     * @param name Describes the work being waited on, which is reported if the wait stalls without any tracked tasks
+     *             left to name
+     */
+    void awaitPhase(String name) {
+        profiler.begin("Phase Wait");
+        phaseBarrier.await(name, this::isStopped);
+        profiler.end();
+    }
+
+    // Runs a single task queued on a worker thread on the calling thread, returning whether there was one. Tasks on
+    // the render thread are never taken, as they may depend on the render thread's graphics context
+    private boolean helpQueuedTask() {
+        for (int i = 0; i < threads.length; i++) {
+            if (threads[i].taskQueue.runNext()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Submits every level of the render phase to the render thread as a single task, to be updated one state at a time
+     * regardless of each state's thread type. The previous submission must have been completed, which is guaranteed by
+     * calling awaitRenderTasks() first. Used for pipelining render phases with the following frame's update phase.
+     *
+     * @param levels The render phase schedule
+     */
+    void executeRenderTasks(IState[][] levels) {
+        if (renderCompletionCounter.get() != 0) {
+            throw new RuntimeException("Render tasks have been submitted before the previous render tasks completed");
+        }
+        for (int i = 0; i < levels.length; i++) {
+            for (int y = 0; y < levels[i].length; y++) {
+                if (stateThreadType.get(levels[i][y]) == null)
+                    throw new RuntimeException("State " + levels[i][y] + " has not been registered with the threadpool");
             }
-        };
-        return runnable;
+        }
+        // The levels are published to the render thread by the task submission itself, along with a key for each state
+        int numStates = 0;
+        for (int i = 0; i < levels.length; i++) {
+            numStates += levels[i].length;
+        }
+        renderLevels = levels;
+        renderFirstKey = eventOrder.reserve(numStates);
+        renderThread.submitTasks(renderTask, renderCompletionCounter);
     }
 
-    private void runOnMain(IComponent[] components, int head, int tail) {
+    // Idles the main thread until the render tasks submitted by executeRenderTasks() have been completed
+    void awaitRenderTasks() {
+        phaseBarrier.await(renderCompletionCounter, "Render Phase", this::isStopped);
+    }
+
+    private void runRenderLevels() {
+        IState[][] levels = renderLevels;
+        EventOrder.Source source = eventOrder.getSource();
+        long key = renderFirstKey;
+        for (int i = 0; i < levels.length; i++) {
+            for (int y = 0; y < levels[i].length; y++) {
+                IState state = levels[i][y];
+                IComponent[] components = state.getComponents();
+                source.set(key++);
+                if (components.length == 0) {
+                    continue;
+                }
+                profiler.begin(stateSpanNames.get(state));
+                long startTime = System.nanoTime();
+                state.updatePrep();
+                updateComponents(components, 0, components.length - 1);
+                // Threadsafe updates of data parallel states are still run after every component update, as they
+                // would be on the main thread
+                if (stateThreadType.get(state) == ALL) {
+                    for (int z = 0; z < components.length; z++) {
+                        components[z].threadsafeUpdate();
+                    }
+                }
+                state.update();
+                // The state may have been unregistered while the render thread was still working through the levels
+                Histogram updateTime = stateUpdateTimes.get(state);
+                if (updateTime != null) {
+                    updateTime.record(System.nanoTime() - startTime);
+                }
+                profiler.end();
+            }
+        }
+        source.clear();
+    }
+
+    private void updateComponents(IComponent[] components, int head, int tail) {
         for (int i = head; i <= tail; i++) {
             components[i].update();
         }
     }
 
+    // Once shut down, tasks submitted after a thread has exited will never be completed, so waits stop as soon as
+    // every thread is gone
+    private boolean isStopped() {
+        return shutDown && !isAnyThreadAlive();
+    }
+
+    private boolean isAnyThreadAlive() {
+        if (renderThread.isAlive()) {
+            return true;
+        }
+        for (int i = 0; i < threads.length; i++) {
+            if (threads[i].isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /*
      * Shuts down each WorkerThread. WorkerThreads will complete submitted tasks before being killed.
      */
     void shutDown() {
+        shutDown = true;
+        jobQueue.cancelAll();
         renderThread.shutDown();
         for (int i = 0; i < threads.length; i++) {
             threads[i].shutDown();
@@ -235,113 +601,163 @@ class ThreadPool {
         nextUnreservedThread = 0;
     }
 
+    // Runs a contiguous set of event tasks on a worker thread. The tail marks the last task in the set
+    private class EventTaskSet implements Runnable {
+
+        private Runnable[] tasks;
+        private int head;
+        private int tail;
+
+        @Override
+        public void run() {
+            profiler.begin("Event Tasks");
+            for (int i = head; i <= tail; i++) {
+                tasks[i].run();
+            }
+            profiler.end();
+        }
+    }
+
+    // Updates a state on its reserved thread
+    private class ReservedTask extends PhaseBarrier.Task {
+
+        private final IState state;
+        private final WorkerThread thread;
+        private final String spanName;
+        private final Histogram updateTime;
+        private IComponent[] components;
+        private long orderKey;
+
+        private ReservedTask(IState state, WorkerThread thread) {
+            this.state = state;
+            this.thread = thread;
+            spanName = stateSpanNames.get(state);
+            updateTime = stateUpdateTimes.get(state);
+        }
+
+        @Override
+        void execute() {
+            profiler.begin(spanName);
+            EventOrder.Source source = eventOrder.getSource();
+            source.set(orderKey);
+            long startTime = System.nanoTime();
+            state.updatePrep();
+            updateComponents(components, 0, components.length - 1);
+            state.update();
+            updateTime.record(System.nanoTime() - startTime);
+            source.clear();
+            profiler.end();
+            components = null;
+        }
+
+        @Override
+        String getName() {
+            return spanName + " on " + thread.name;
+        }
+    }
+
     private static class WorkerThread extends Thread {
 
+        // Each phase submits at most a handful of tasks to a thread, so this leaves plenty of headroom
+        private static final int QUEUE_CAPACITY = 64;
+
         private final String name; // Avoids contention in tasksCompleted method because the name is final
         // See: https://stackoverflow.com/questions/16320838/when-do-i-really-need-to-use-atomicbool-instead-of-bool for
         // why an AtomicBoolean should be used instead of a boolean even though there is only one step to changing its
         // value
         private AtomicBoolean running;
-        private AtomicBoolean active;
-        private AtomicInteger numTasks;
-        private AtomicInteger queueHead;
-        private AtomicInteger queueTail;
-        private ConcurrentHashMap<Runnable, AtomicInteger> batchCounterMap;
+        private final TaskRing taskQueue;
+        private final IdleStrategy idleStrategy;
+        private final Profiler profiler;
+        // Null if the thread doesn't run background jobs
+        private final JobQueue jobQueue;
+        // Shared with the other threads that count towards the same utilization
+        private final AtomicLong busyTime;
 
-        private Runnable[] taskQueue;
-
-        private WorkerThread(String name) {
+        private WorkerThread(String name, IdleStrategy idleStrategy, Profiler profiler, JobQueue jobQueue,
+                             AtomicLong busyTime, Consumer<Throwable> failureHandler) {
+            super(name);
             this.name = name;
+            this.idleStrategy = idleStrategy;
+            this.profiler = profiler;
+            this.jobQueue = jobQueue;
+            this.busyTime = busyTime;
             running = new AtomicBoolean(true);
-            active = new AtomicBoolean(false);
-            numTasks = new AtomicInteger(0);
-            queueHead = new AtomicInteger(0);
-            queueTail = new AtomicInteger(0);
-
-            taskQueue = new Runnable[10]; // To start, we allocate one element for each phase
-            batchCounterMap = new ConcurrentHashMap<>();
+            taskQueue = new TaskRing(QUEUE_CAPACITY, failureHandler);
         }
 
+        // A thread is active from the moment a task is submitted to it until every submitted task has been completed,
+        // and while it is running a background job
         boolean isActive() {
-            return active.get();
+            return taskQueue.hasPending();
         }
 
-        void submitTasks(Runnable task, AtomicInteger batchCompletionCounter) {
-            // Check if the queue is full, or if it is about to be full (there is a chance that the queue head might be
-            // advanced after the if clause meaning that although the queue is read as being "full", there is still an
-            // empty spot, but this won't cause any problems)
-            if (queueTail.get() == queueHead.get() && numTasks.get() > 0) { // This condition will never change to true during task execution
-                // Instead of just dropping the task entirely, we have the main thread wait for a spot to free up in the
-                // queue
-                System.out.println("Waiting");
-                while (queueTail.get() == queueHead.get() && numTasks.get() > 0) {}
-                System.out.println("Finished Waiting");
+        // Submits a task only if the thread is inactive, which guarantees that the task is run straight away rather
+        // than waiting behind other tasks or a background job
+        boolean submitIfIdle(Runnable task, AtomicInteger batchCompletionCounter) {
+            if (!taskQueue.offerIfIdle(task, batchCompletionCounter)) {
+                return false;
+            }
+            if (idleStrategy.parks()) {
+                LockSupport.unpark(this);
+            }
+            return true;
+        }
 
+        void submitTasks(Runnable task, AtomicInteger batchCompletionCounter) {
+            // Instead of just dropping the task entirely when the queue is full, we have the submitting thread wait for
+            // a spot to free up in the queue
+            int idleCount = 0;
+            while (!taskQueue.offer(task, batchCompletionCounter)) {
+                idleCount = idleStrategy.idle(idleCount, BARRIER_MAX_PARK_NANOS);
+            }
+            // If the thread was parked while waiting for work, wake it up. Should the thread only be about to park, the
+            // unpark permit makes that park return immediately, so the wake up is never lost
+            if (idleStrategy.parks()) {
+                LockSupport.unpark(this);
             }
-            batchCompletionCounter.incrementAndGet();
-            batchCounterMap.putIfAbsent(task, batchCompletionCounter);
-            // Add task to queue. This MUST be done before incrementing numTasks to prevent the thread from grabbing a
-            // null runnable value from the queue head when the first task is submitted to the queue
-            taskQueue[queueTail.get()] = task;
-            // The task queue length does not have to be atomic because it is only ever changed in this method, which is
-            // only ever accessed by a single thread at a time
-            // We also don't have to worry about the queue head position changing partway through this method's
-            // execution because the thread is guaranteed to wait, as seen in the run() method
-            // And the queue tail position also only changes in this method so it'll never overwrite the queue head
-            int newTail = (queueTail.get() + 1) % taskQueue.length;
-            queueTail.getAndSet(newTail);
-            // Note: We MUST increment the number of tasks prior to setting the thread as active. To see why, consider
-            // the case of there being one task left in the queue while a new task is submitted to the queue. If we're
-            // unlucky, the ordering may go like this: submitTasks is called and the thread is set as active. Then,
-            // in between that boolean change and incrementing the number of tasks, the "last" task in the queue is
-            // completed. numTasks is seen as 0 in the run method (since it is incremented AFTER setting as active) and
-            // the thread activity is set to false, even though a new task has just been submitted.
-            numTasks.incrementAndGet();
-            // We can rely on the active AtomicBoolean for monitoring thread activity because this method is only called
-            // on the main thread, which is also the only thread that the getAvailableThreads() method is called on.
-            // This means that we will never read the thread activity value halfway through task submission
-            active.getAndSet(true);
         }
 
         void shutDown() {
             running.getAndSet(false);
+            // Unpark the thread so that it notices the shut down straight away
+            if (idleStrategy.parks()) {
+                LockSupport.unpark(this);
+            }
         }
 
         @Override
         public void run() {
-            System.out.println("Thread '" + name + "' started"); // TODO: Replace with logger
-            // The scan boolean ensures that we do not manipulate the queue head position while the queue is being
-            // copied over
-            boolean scan = true;
+            int idleCount = 0;
             while (running.get()) {
-                if (numTasks.get() > 0) {
-                    // See note in submitTasks method for why activity is set to true here
-                    active.getAndSet(true);
-                    // Execute tasks
-                    Runnable runnable = taskQueue[queueHead.get()];
-                    if (runnable == null) {
-                        throw new RuntimeException("Error: queue head [" + queueHead.get() + "] points to null");
-                    }
-                    runnable.run();
-                    numTasks.decrementAndGet();
-                    // Once again, it is safe to get task queue length because this block never executes while the task
-                    // queue is being copied over in the submitTasks() method
-                    int newHead = (queueHead.get() + 1) % taskQueue.length;
-                    queueHead.getAndSet(newHead);
-
-                    // Notify threadpool of task completion
-                    // Using the numTasks AtomicInteger to check for thread activity is thread safe because the submit
-                    // tasks method, which manipulates numTasks, is only ever called on the main thread. Therefore,
-                    // executing tasks from the main thread will never poll a weird, intermediary activity state between
-                    // when numTasks is being checked here and when it is being incremented in the submitTasks method
-                    if (numTasks.get() == 0) {
-                        active.getAndSet(false);
+                if (taskQueue.isReady()) {
+                    profiler.begin("Worker Task");
+                    long start = System.nanoTime();
+                    taskQueue.runNext();
+                    busyTime.addAndGet(System.nanoTime() - start);
+                    profiler.end();
+                    idleCount = 0;
+                }
+                // With no frame work to do, pick up a background job. Claiming the task queue marks the thread as
+                // active first, so the main thread can't hand it frame work that would then wait behind the job
+                else if (jobQueue != null && jobQueue.hasRunnableJobs() && taskQueue.claimIdle()) {
+                    Job<?> job = jobQueue.poll();
+                    if (job != null) {
+                        profiler.begin("Job");
+                        long start = System.nanoTime();
+                        jobQueue.run(job);
+                        busyTime.addAndGet(System.nanoTime() - start);
+                        profiler.end();
+                        idleCount = 0;
                     }
-                    batchCounterMap.get(runnable).decrementAndGet();
-                    batchCounterMap.remove(runnable);
+                    taskQueue.releaseIdle();
+                }
+                else {
+                    idleCount = idleStrategy.idle(idleCount, WORKER_MAX_PARK_NANOS);
                 }
             }
-            System.out.println("Thread '" + name + "' shutting down"); // TODO: Replace with logger
+            // Complete any tasks that were submitted before shutting down
+            while (taskQueue.runNext()) {}
         }
     }
 
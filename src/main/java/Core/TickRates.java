@@ -0,0 +1,91 @@
+package Core;
+
+import EngineLibrary.IState;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * The TickRates class keeps track of update phase states that tick at a lower rate than the engine loop. Each such state
+ * is updated once every n ticks, where n is its tick divisor, on the ticks where the tick number minus the state's
+ * offset is a multiple of n. Offsets are picked when a state is registered so that low rate states are spread across
+ * ticks as evenly as possible, which flattens the cost of each tick rather than having every low rate state update on
+ * the same tick.
+ */
+class TickRates {
+
+    private final Timestep timestep;
+    private final int targetUPS;
+    private final Map<IState, Rate> rates;
+
+    TickRates(Timestep timestep, int targetUPS) {
+        this.timestep = timestep;
+        this.targetUPS = targetUPS;
+        rates = new ConcurrentHashMap<>();
+    }
+
+    void registerState(IState state, StateOptions options) {
+        int divisor = options == null ? 1 : options.getTickDivisor(targetUPS);
+        if (divisor > 1) {
+            rates.put(state, new Rate(divisor, pickOffset(divisor)));
+        }
+    }
+
+    void unregisterState(IState state) {
+        rates.remove(state);
+    }
+
+    /*
+     * Returns whether the supplied state is due to be updated on the current tick.
+     */
+    boolean isDue(IState state) {
+        if (rates.isEmpty()) {
+            return true;
+        }
+        Rate rate = rates.get(state);
+        return rate == null || (timestep.getTick() - rate.offset) % rate.divisor == 0;
+    }
+
+    // Picks the offset that collides least with the states already registered. Two states with divisors a and b and
+    // offsets x and y update on the same tick once every lcm(a, b) ticks if x and y are equal modulo gcd(a, b), and
+    // never otherwise
+    private int pickOffset(int divisor) {
+        int bestOffset = 0;
+        double bestCollisions = Double.MAX_VALUE;
+        for (int offset = 0; offset < divisor; offset++) {
+            double collisions = 0;
+            for (Rate rate : rates.values()) {
+                int gcd = gcd(divisor, rate.divisor);
+                if (offset % gcd == rate.offset % gcd) {
+                    collisions += (double) gcd / ((long) divisor * rate.divisor);
+                }
+            }
+            if (collisions < bestCollisions) {
+                bestCollisions = collisions;
+                bestOffset = offset;
+            }
+        }
+        return bestOffset;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+        return a;
+    }
+
+    private static class Rate {
+
+        private final int divisor;
+        private final int offset;
+
+        private Rate(int divisor, int offset) {
+            this.divisor = divisor;
+            this.offset = offset;
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+package Core;
+
+import EngineLibrary.Event;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * The TimerWheel class holds the event timers waiting for a future engine tick, and posts their events to the event
+ * queue as they come due. Timers are kept in a hierarchical timing wheel: four levels of 64 slots, with each slot of a
+ * level covering a whole revolution of the level below it. A timer is placed in the lowest level that its deadline
+ * fits in, and is moved down a level whenever the wheel reaches the slot that it's in, until it's eventually fired
+ * from the bottom level. Inserting and cancelling a timer only ever links or unlinks it from a single slot, so
+ * advancing the wheel only touches the timers that are due, no matter how many are pending.
+ *
+ * Timers may be scheduled and cancelled from any thread. Both are handed to the main thread through queues, which are
+ * drained every time the wheel advances, so the wheel itself is only ever accessed by the main thread.
+ */
+class TimerWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int NUM_SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = NUM_SLOTS - 1;
+    private static final int NUM_LEVELS = 4;
+    // Timers with longer delays are placed in the top level as far ahead as it reaches, and are placed again once the
+    // wheel gets there
+    private static final long MAX_DELAY = (1L << (SLOT_BITS * NUM_LEVELS)) - 1;
+
+    private final EventQueue eventQueue;
+    // The first timer of each slot of each level, with the rest of the slot's timers linked from it
+    private final EventTimer[][] slots;
+    private final ConcurrentLinkedQueue<EventTimer> scheduled;
+    private final ConcurrentLinkedQueue<EventTimer> cancelled;
+    // The number of times the wheel has advanced
+    private long tick;
+    private final AtomicInteger numTimers;
+    private final AtomicLong firedTimers;
+
+    TimerWheel(EventQueue eventQueue, Metrics metrics) {
+        this.eventQueue = eventQueue;
+        slots = new EventTimer[NUM_LEVELS][NUM_SLOTS];
+        scheduled = new ConcurrentLinkedQueue<>();
+        cancelled = new ConcurrentLinkedQueue<>();
+        tick = 0;
+        numTimers = new AtomicInteger(0);
+        firedTimers = metrics.counter("timers.fired");
+        metrics.gauge("timers.pending", numTimers::get);
+    }
+
+    /*
+     * Schedules a timer, the delay of which is counted from the last time the wheel advanced. Safe to call from any
+     * thread.
+     */
+    void schedule(EventTimer timer) {
+        scheduled.add(timer);
+    }
+
+    /*
+     * Takes a cancelled timer off of the wheel the next time it advances. Safe to call from any thread.
+     */
+    void cancel(EventTimer timer) {
+        cancelled.add(timer);
+    }
+
+    /*
+     * Advances the wheel by a tick, posting the events of every timer that has come due. Must only be called by the
+     * main thread.
+     */
+    void advance() {
+        EventTimer timer;
+        while ((timer = scheduled.poll()) != null) {
+            if (timer.isCancelled()) {
+                timer.discard();
+                continue;
+            }
+            timer.deadline = tick + timer.getDelay();
+            insert(timer);
+        }
+        // A cancelled timer is no longer on the wheel if it was cancelled before being scheduled, or if it came due
+        // before its cancellation was picked up
+        while ((timer = cancelled.poll()) != null) {
+            if (timer.linked) {
+                unlink(timer);
+                timer.discard();
+            }
+        }
+
+        tick++;
+        // Move the timers of the slot that each upper level has reached down to the levels below it, starting with
+        // the lowest level, so that the timers due this tick all end up in the bottom level
+        for (int level = 1; level < NUM_LEVELS; level++) {
+            int shift = SLOT_BITS * level;
+            if ((tick & ((1L << shift) - 1)) != 0) {
+                break;
+            }
+            timer = detach(level, (int) (tick >>> shift) & SLOT_MASK);
+            while (timer != null) {
+                EventTimer next = timer.next;
+                insert(timer);
+                timer = next;
+            }
+        }
+
+        // Every timer in the bottom level's current slot is due. The slot is emptied before its timers are fired, as
+        // repeating timers may be placed back into it
+        timer = detach(0, (int) tick & SLOT_MASK);
+        while (timer != null) {
+            EventTimer next = timer.next;
+            timer.next = null;
+            Event event = timer.fire();
+            if (event == null) {
+                timer.discard();
+            }
+            else {
+                // The timer posted the event on its owner's behalf, so nobody is left to take back a rejected event
+                if (!eventQueue.postEvent(event)) {
+                    event.release();
+                }
+                firedTimers.incrementAndGet();
+                if (timer.getPeriod() > 0) {
+                    timer.deadline += timer.getPeriod();
+                    insert(timer);
+                }
+            }
+            timer = next;
+        }
+    }
+
+    // Places a timer in the lowest level that its deadline fits in
+    private void insert(EventTimer timer) {
+        long deadline = Math.min(timer.deadline, tick + MAX_DELAY);
+        long delay = deadline - tick;
+        int level = 0;
+        while (level < NUM_LEVELS - 1 && delay >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) (deadline >>> (SLOT_BITS * level)) & SLOT_MASK;
+        EventTimer head = slots[level][slot];
+        timer.previous = null;
+        timer.next = head;
+        if (head != null) {
+            head.previous = timer;
+        }
+        slots[level][slot] = timer;
+        timer.level = level;
+        timer.slot = slot;
+        timer.linked = true;
+        numTimers.incrementAndGet();
+    }
+
+    private void unlink(EventTimer timer) {
+        if (timer.previous != null) {
+            timer.previous.next = timer.next;
+        }
+        else {
+            slots[timer.level][timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.previous = timer.previous;
+        }
+        timer.previous = null;
+        timer.next = null;
+        timer.linked = false;
+        numTimers.decrementAndGet();
+    }
+
+    // Empties a slot, returning its first timer. The detached timers stay linked to each other
+    private EventTimer detach(int level, int slot) {
+        EventTimer head = slots[level][slot];
+        slots[level][slot] = null;
+        for (EventTimer timer = head; timer != null; timer = timer.next) {
+            timer.linked = false;
+            numTimers.decrementAndGet();
+        }
+        return head;
+    }
+
+}
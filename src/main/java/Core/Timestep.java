@@ -0,0 +1,69 @@
+package Core;
+
+/**
+ * The <code>Timestep</code> class describes the fixed timestep that the update phase runs at. Updates always advance
+ * the simulation by the same delta, and are run as many times per frame as needed to keep up with the engine clock, up
+ * to a configurable maximum. Since the render phase usually falls somewhere in between two updates, an interpolation
+ * alpha is provided for blending the transforms of the previous and current update.
+ * <p>
+ * The values held by a <code>Timestep</code> object are only valid on engine threads during the phase that they
+ * describe. In pipelined mode, the render phase should use the alpha held by the <code>TransformSnapshot</code>
+ * instead, as the main thread will have already moved on to the next frame.
+ */
+public class Timestep {
+
+    private final double delta;
+    private long tick;
+    private double alpha;
+
+    Timestep(double delta) {
+        this.delta = delta;
+    }
+
+    /**
+     * Returns the amount of time that a single update advances the simulation by.
+     *
+     * @return The update delta, in seconds
+     */
+    public double getDelta() {
+        return delta;
+    }
+
+    /**
+     * Returns the number of the current update, starting at 0 for the first update.
+     *
+     * @return The current update tick
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns the total amount of simulated time that has passed before the current update.
+     *
+     * @return The simulation time, in seconds
+     */
+    public double getTime() {
+        return tick * delta;
+    }
+
+    /**
+     * Returns how far the render phase falls between the previous update and the next one, where 0 means that it lines
+     * up with the last update. Render states should blend the previous and current transforms of each component by
+     * this amount to avoid visible stutter when the update rate is lower than the frame rate.
+     *
+     * @return The interpolation alpha, from 0 (inclusive) to 1 (exclusive)
+     */
+    public double getAlpha() {
+        return alpha;
+    }
+
+    void setTick(long tick) {
+        this.tick = tick;
+    }
+
+    void setAlpha(double alpha) {
+        this.alpha = alpha;
+    }
+
+}
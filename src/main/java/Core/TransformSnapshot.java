@@ -0,0 +1,383 @@
+package Core;
+
+import EngineLibrary.IComponent;
+import EngineLibrary.IState;
+
+import java.util.Arrays;
+
+/**
+ * The <code>TransformSnapshot</code> class holds a copy of the transform (position, rotation, and scale) of every
+ * component in every state registered under the update phase, as they were after each of the last two updates. The
+ * snapshot is double-buffered: the render phase reads from one buffer while the next frame's update phase captures
+ * into the other, so render states that read their transforms from the snapshot never observe a half-updated frame.
+ * Reading from the snapshot is required when the <code>Core</code> runs in pipelined mode, as components are then
+ * updated concurrently with rendering. Since only components of the update phase are captured, capturing never has to
+ * wait for the render thread.
+ * <p>
+ * Components of a state are stored contiguously, in the order returned by <code>IState.getComponents()</code>. To read
+ * a state's transforms, get its offset and number of components, then pass each index in that range to the getters.
+ * The interpolated getters blend the previous and current transforms by the snapshot's alpha, which allows the update
+ * rate to be lower than the frame rate without visible stutter.
+ */
+public class TransformSnapshot {
+
+    private Frame front;
+    private Frame back;
+    // Whether the back buffer has captured an update since it was last published. If not, the latest transforms are
+    // still held in the front buffer
+    private boolean backFresh;
+
+    TransformSnapshot() {
+        front = new Frame();
+        back = new Frame();
+    }
+
+    /*
+     * Captures the transform of every component in the supplied states into the back buffer, keeping the transforms of
+     * the previous update for interpolation. Called on the main thread after every update, with the update phase's
+     * schedule.
+     */
+    void capture(IState[][] levels) {
+        // The previous update's transforms are either the back buffer's current transforms, or if nothing has been
+        // captured since the last publish, the front buffer's. The front buffer is only ever read from at this point,
+        // so reading it here is safe even while the render thread reads it too
+        if (backFresh) {
+            back.shiftCurrentToPrevious();
+        }
+        else {
+            back.copyCurrentToPrevious(front);
+        }
+        back.clear();
+        for (int i = 0; i < levels.length; i++) {
+            for (int y = 0; y < levels[i].length; y++) {
+                back.add(levels[i][y]);
+            }
+        }
+        backFresh = true;
+    }
+
+    /*
+     * Makes the last capture visible to the render phase by swapping the front and back buffers. If there were no
+     * updates since the last publish, the front buffer is republished with the new alpha instead. Must only be called on
+     * the main thread while nothing is reading from the front buffer.
+     */
+    void publish(double alpha, long tick) {
+        if (!backFresh) {
+            back.copyFrom(front);
+        }
+        back.alpha = alpha;
+        back.tick = tick;
+        Frame buffer = front;
+        front = back;
+        back = buffer;
+        backFresh = false;
+    }
+
+    /**
+     * Returns how far the render phase falls between the previous and current update that this snapshot holds, which
+     * is used by the interpolated getters.
+     *
+     * @return The interpolation alpha, from 0 (inclusive) to 1 (exclusive)
+     */
+    public double getAlpha() {
+        return front.alpha;
+    }
+
+    /**
+     * Returns the number of the update that the current transforms in this snapshot were captured after.
+     *
+     * @return The update tick of this snapshot
+     */
+    public long getTick() {
+        return front.tick;
+    }
+
+    /**
+     * Returns the index of the first component of the supplied state.
+     *
+     * @param state The <code>IState</code> object registered under the update phase
+     * @return The index of the state's first component, or -1 if the state was not captured in this snapshot
+     */
+    public int getOffset(IState state) {
+        int index = front.indexOf(state);
+        return index == -1 ? -1 : front.stateOffsets[index];
+    }
+
+    /**
+     * Returns the number of components of the supplied state that were captured in this snapshot.
+     *
+     * @param state The <code>IState</code> object registered under the update phase
+     * @return The number of captured components, or 0 if the state was not captured in this snapshot
+     */
+    public int getNumComponents(IState state) {
+        int index = front.indexOf(state);
+        return index == -1 ? 0 : front.stateCounts[index];
+    }
+
+    /**
+     * Returns the component captured at the supplied index.
+     *
+     * @param index The index of the captured component
+     * @return The <code>IComponent</code> object captured at the index
+     */
+    public IComponent getComponent(int index) {
+        return front.components[index];
+    }
+
+    /**
+     * Returns the position along the x-axis of the component captured at the supplied index.
+     *
+     * @param index The index of the captured component
+     * @return The position of the component along the x-axis
+     */
+    public float getXPos(int index) {
+        return front.xPos[index];
+    }
+
+    /**
+     * Returns the position along the y-axis of the component captured at the supplied index.
+     *
+     * @param index The index of the captured component
+     * @return The position of the component along the y-axis
+     */
+    public float getYPos(int index) {
+        return front.yPos[index];
+    }
+
+    /**
+     * Returns the rotation of the component captured at the supplied index.
+     *
+     * @param index The index of the captured component
+     * @return The rotation of the component, in degrees
+     */
+    public float getRotation(int index) {
+        return front.rotation[index];
+    }
+
+    /**
+     * Returns the scale factor of the component captured at the supplied index.
+     *
+     * @param index The index of the captured component
+     * @return The scale factor of the component
+     */
+    public float getScalar(int index) {
+        return front.scalar[index];
+    }
+
+    /**
+     * Returns the position along the x-axis of the component captured at the supplied index, blended between the
+     * previous and current update.
+     *
+     * @param index The index of the captured component
+     * @return The interpolated position of the component along the x-axis
+     */
+    public float getInterpolatedXPos(int index) {
+        return lerp(front.previousXPos[index], front.xPos[index], front.alpha);
+    }
+
+    /**
+     * Returns the position along the y-axis of the component captured at the supplied index, blended between the
+     * previous and current update.
+     *
+     * @param index The index of the captured component
+     * @return The interpolated position of the component along the y-axis
+     */
+    public float getInterpolatedYPos(int index) {
+        return lerp(front.previousYPos[index], front.yPos[index], front.alpha);
+    }
+
+    /**
+     * Returns the rotation of the component captured at the supplied index, blended between the previous and current
+     * update along the shortest direction of rotation.
+     *
+     * @param index The index of the captured component
+     * @return The interpolated rotation of the component, in degrees
+     */
+    public float getInterpolatedRotation(int index) {
+        float previous = front.previousRotation[index];
+        float difference = (front.rotation[index] - previous) % 360;
+        if (difference > 180) {
+            difference -= 360;
+        }
+        else if (difference < -180) {
+            difference += 360;
+        }
+        return (float) (previous + difference * front.alpha);
+    }
+
+    /**
+     * Returns the scale factor of the component captured at the supplied index, blended between the previous and
+     * current update.
+     *
+     * @param index The index of the captured component
+     * @return The interpolated scale factor of the component
+     */
+    public float getInterpolatedScalar(int index) {
+        return lerp(front.previousScalar[index], front.scalar[index], front.alpha);
+    }
+
+    private static float lerp(float previous, float current, double alpha) {
+        return (float) (previous + (current - previous) * alpha);
+    }
+
+    // A single buffer of the snapshot. Every array only ever grows, so capturing is allocation free once the buffer
+    // has reached the size of the scene
+    private static class Frame {
+
+        private IState[] states = new IState[8];
+        private int[] stateOffsets = new int[8];
+        private int[] stateCounts = new int[8];
+        private int numStates;
+        private IComponent[] components = new IComponent[64];
+        private float[] xPos = new float[64];
+        private float[] yPos = new float[64];
+        private float[] rotation = new float[64];
+        private float[] scalar = new float[64];
+        private int numComponents;
+        // The components and transforms of the previous update
+        private IComponent[] previousComponents = new IComponent[64];
+        private float[] previousXPos = new float[64];
+        private float[] previousYPos = new float[64];
+        private float[] previousRotation = new float[64];
+        private float[] previousScalar = new float[64];
+        private int numPreviousComponents;
+        private double alpha;
+        private long tick;
+
+        private void clear() {
+            // Drop references so that removed states and components can be garbage collected
+            Arrays.fill(states, 0, numStates, null);
+            numStates = 0;
+            Arrays.fill(components, 0, numComponents, null);
+            numComponents = 0;
+        }
+
+        // Makes the current transforms the previous ones by swapping the arrays, which avoids a copy. The counts are
+        // swapped along with them, so that the components left in the old previous array are still dropped by clear()
+        private void shiftCurrentToPrevious() {
+            IComponent[] componentsBuffer = previousComponents;
+            previousComponents = components;
+            components = componentsBuffer;
+            float[] buffer = previousXPos;
+            previousXPos = xPos;
+            xPos = buffer;
+            buffer = previousYPos;
+            previousYPos = yPos;
+            yPos = buffer;
+            buffer = previousRotation;
+            previousRotation = rotation;
+            rotation = buffer;
+            buffer = previousScalar;
+            previousScalar = scalar;
+            scalar = buffer;
+            int count = numPreviousComponents;
+            numPreviousComponents = numComponents;
+            numComponents = count;
+        }
+
+        private void copyCurrentToPrevious(Frame frame) {
+            copyPrevious(frame.components, frame.xPos, frame.yPos, frame.rotation, frame.scalar, frame.numComponents);
+        }
+
+        private void copyPrevious(IComponent[] components, float[] xPos, float[] yPos, float[] rotation,
+                                  float[] scalar, int length) {
+            ensureComponentCapacity(length);
+            System.arraycopy(components, 0, previousComponents, 0, length);
+            System.arraycopy(xPos, 0, previousXPos, 0, length);
+            System.arraycopy(yPos, 0, previousYPos, 0, length);
+            System.arraycopy(rotation, 0, previousRotation, 0, length);
+            System.arraycopy(scalar, 0, previousScalar, 0, length);
+            if (numPreviousComponents > length) {
+                Arrays.fill(previousComponents, length, numPreviousComponents, null);
+            }
+            numPreviousComponents = length;
+        }
+
+        // Makes this frame an exact copy of the supplied frame
+        private void copyFrom(Frame frame) {
+            clear();
+            ensureStateCapacity(frame.numStates);
+            System.arraycopy(frame.states, 0, states, 0, frame.numStates);
+            System.arraycopy(frame.stateOffsets, 0, stateOffsets, 0, frame.numStates);
+            System.arraycopy(frame.stateCounts, 0, stateCounts, 0, frame.numStates);
+            numStates = frame.numStates;
+            ensureComponentCapacity(Math.max(frame.numComponents, frame.numPreviousComponents));
+            System.arraycopy(frame.components, 0, components, 0, frame.numComponents);
+            System.arraycopy(frame.xPos, 0, xPos, 0, frame.numComponents);
+            System.arraycopy(frame.yPos, 0, yPos, 0, frame.numComponents);
+            System.arraycopy(frame.rotation, 0, rotation, 0, frame.numComponents);
+            System.arraycopy(frame.scalar, 0, scalar, 0, frame.numComponents);
+            numComponents = frame.numComponents;
+            copyPrevious(frame.previousComponents, frame.previousXPos, frame.previousYPos, frame.previousRotation,
+                    frame.previousScalar, frame.numPreviousComponents);
+        }
+
+        private void add(IState state) {
+            IComponent[] stateComponents = state.getComponents();
+            ensureStateCapacity(numStates + 1);
+            states[numStates] = state;
+            stateOffsets[numStates] = numComponents;
+            stateCounts[numStates] = stateComponents.length;
+            numStates++;
+            ensureComponentCapacity(numComponents + stateComponents.length);
+            for (int i = 0; i < stateComponents.length; i++) {
+                IComponent component = stateComponents[i];
+                components[numComponents] = component;
+                xPos[numComponents] = component.getXPos();
+                yPos[numComponents] = component.getYPos();
+                rotation[numComponents] = component.getRotation();
+                scalar[numComponents] = component.getScalar();
+                // Components that didn't exist at the same index in the previous update have nothing to be blended
+                // with, so they are treated as if they hadn't moved
+                if (numComponents >= numPreviousComponents || previousComponents[numComponents] != component) {
+                    previousXPos[numComponents] = xPos[numComponents];
+                    previousYPos[numComponents] = yPos[numComponents];
+                    previousRotation[numComponents] = rotation[numComponents];
+                    previousScalar[numComponents] = scalar[numComponents];
+                }
+                numComponents++;
+            }
+        }
+
+        private void ensureStateCapacity(int required) {
+            if (required > states.length) {
+                int length = Math.max(required, states.length * 2);
+                states = Arrays.copyOf(states, length);
+                stateOffsets = Arrays.copyOf(stateOffsets, length);
+                stateCounts = Arrays.copyOf(stateCounts, length);
+            }
+        }
+
+        // The previous transform arrays are kept at least as long as the current ones, so that a component without a
+        // previous transform always has somewhere to store its current transform as the previous one
+        private void ensureComponentCapacity(int required) {
+            if (required > components.length) {
+                int length = Math.max(required, components.length * 2);
+                components = Arrays.copyOf(components, length);
+                xPos = Arrays.copyOf(xPos, length);
+                yPos = Arrays.copyOf(yPos, length);
+                rotation = Arrays.copyOf(rotation, length);
+                scalar = Arrays.copyOf(scalar, length);
+            }
+            if (required > previousComponents.length) {
+                int length = Math.max(required, previousComponents.length * 2);
+                previousComponents = Arrays.copyOf(previousComponents, length);
+                previousXPos = Arrays.copyOf(previousXPos, length);
+                previousYPos = Arrays.copyOf(previousYPos, length);
+                previousRotation = Arrays.copyOf(previousRotation, length);
+                previousScalar = Arrays.copyOf(previousScalar, length);
+            }
+        }
+
+        // Update phases rarely hold more than a few states, so a linear search beats hashing
+        private int indexOf(IState state) {
+            for (int i = 0; i < numStates; i++) {
+                if (states[i] == state) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package Core;
+
+import EngineLibrary.IComponent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * The WorkStealingBatch class distributes the component updates of data parallel (ALL) states across a set of
+ * participating threads. Each participant owns a deque of component indices, packed into a single AtomicLong as a
+ * [head, tail) range. Owners take small chunks from the head of their own range, while participants that have run out
+ * of work steal the upper half of another participant's range from its tail. This way, a participant that is held up
+ * by a few expensive components has the rest of its work picked up by idle participants instead of stalling the batch.
+ * Each chunk posts its events under the key of its first component, which keeps them in component order however the
+ * chunks end up being split across participants.
+ */
+class WorkStealingBatch {
+
+    // Each participant's grain size is a fraction of its initial share so that owners return to their deque often
+    // enough for thieves to still find something worth stealing
+    private static final int GRAINS_PER_PARTICIPANT = 8;
+
+    private final AtomicLong[] ranges;
+    private final AtomicInteger remaining;
+    private final EventOrder eventOrder;
+    private IComponent[] components;
+    private long firstKey;
+    private int numParticipants;
+    private int grainSize;
+
+    WorkStealingBatch(int maxParticipants, EventOrder eventOrder) {
+        this.eventOrder = eventOrder;
+        ranges = new AtomicLong[maxParticipants];
+        for (int i = 0; i < maxParticipants; i++) {
+            ranges[i] = new AtomicLong(pack(0, 0));
+        }
+        remaining = new AtomicInteger(0);
+    }
+
+    /*
+     * Prepares the batch for a new set of components. The components are initially split into contiguous, evenly
+     * sized ranges with participant 0 (the main thread) receiving any excess. This method must only be called once
+     * every participant of the previous batch has returned from run().
+     *
+     * @param components The components to be updated
+     * @param numComponents The number of components to be updated, starting from the head of the array
+     * @param numParticipants The number of threads, including the main thread, that will call run()
+     * @param firstKey The first of a block of event order keys reserved for each component
+     */
+    void reset(IComponent[] components, int numComponents, int numParticipants, long firstKey) {
+        if (numParticipants > ranges.length) {
+            throw new RuntimeException("Batch participants " + numParticipants + " exceeds maximum of " + ranges.length);
+        }
+        this.components = components;
+        this.numParticipants = numParticipants;
+        this.firstKey = firstKey;
+        int share = numComponents / numParticipants;
+        int excess = numComponents % numParticipants;
+        grainSize = Math.max(1, share / GRAINS_PER_PARTICIPANT);
+        remaining.set(numComponents);
+        int head = 0;
+        for (int i = 0; i < numParticipants; i++) {
+            int tail = head + share + (i == 0 ? excess : 0);
+            ranges[i].set(pack(head, tail));
+            head = tail;
+        }
+    }
+
+    /*
+     * Updates components until the batch has no work left to take or steal. Note that returning from this method does
+     * not mean that the batch is complete, as other participants may still be updating the chunks that they hold. Use
+     * isComplete() to check for that.
+     *
+     * @param participant The index of the calling participant, starting at 0
+     * @return The number of components updated by the calling participant
+     */
+    int run(int participant) {
+        AtomicLong own = ranges[participant];
+        EventOrder.Source source = eventOrder.getSource();
+        int numUpdated = 0;
+        while (remaining.get() > 0) {
+            long range = own.get();
+            int head = head(range);
+            int tail = tail(range);
+            if (head < tail) {
+                int end = Math.min(head + grainSize, tail);
+                // Only the owner ever advances the head, but a thief may have shrunk the tail in the meantime, in
+                // which case we simply re-read the range and try again
+                if (own.compareAndSet(range, pack(end, tail))) {
+                    source.set(firstKey + head);
+                    for (int i = head; i < end; i++) {
+                        components[i].update();
+                    }
+                    remaining.addAndGet(head - end);
+                    numUpdated += end - head;
+                }
+            }
+            else if (!steal(participant)) {
+                break;
+            }
+        }
+        source.clear();
+        return numUpdated;
+    }
+
+    boolean isComplete() {
+        return remaining.get() == 0;
+    }
+
+    private boolean steal(int thief) {
+        for (int offset = 1; offset < numParticipants; offset++) {
+            AtomicLong victim = ranges[(thief + offset) % numParticipants];
+            while (true) {
+                long range = victim.get();
+                int head = head(range);
+                int tail = tail(range);
+                int size = tail - head;
+                if (size <= 0) {
+                    break;
+                }
+                // Take the upper half of the victim's range, or all of it if only a single component is left
+                int split = size == 1 ? head : tail - (size / 2);
+                if (victim.compareAndSet(range, pack(head, split))) {
+                    // The thief's own range is empty at this point, and an empty range is never written to by other
+                    // thieves, so a plain set is safe
+                    ranges[thief].set(pack(split, tail));
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static long pack(int head, int tail) {
+        return ((long) head << 32) | (tail & 0xFFFFFFFFL);
+    }
+
+    private static int head(long range) {
+        return (int) (range >>> 32);
+    }
+
+    private static int tail(long range) {
+        return (int) range;
+    }
+
+}
@@ -2,19 +2,36 @@ package EngineLibrary;
 
 import Core.Module.EventReceiver;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 /**
  * The <code>Event</code> abstract class serves as the basis for all event implementations. Any event class declared by
  * a module must extend this abstract class so that the <code>EventQueue</code> class can interact with it. This allows
  * modules to create classes that include data relevant to each event, while working in conformity with the function of
  * the <code>EventQueue</code>.
+ * <p>
+ * Events that are posted often may be recycled through an <code>EventPool</code> rather than being allocated every
+ * time. A pooled event is reference counted, and is returned to its pool once every reference has been released. The
+ * <code>Core</code> releases a posted event as soon as every receiver has been notified, so a receiver that holds on
+ * to a pooled event past <code>onNotify</code> must <code>retain()</code> it first, and <code>release()</code> it once
+ * done. Events created without a pool are left to the garbage collector, and are unaffected by either method.
+ *
+ * @see EventPool
  */
 public abstract class Event {
 
+    private static final AtomicIntegerFieldUpdater<Event> REFERENCES =
+            AtomicIntegerFieldUpdater.newUpdater(Event.class, "references");
+
     /**
      * An <code>Enum</code> denoting the type of event that has occurred
      */
     public Enum eventEnum;
 
+    // Null if the event isn't pooled
+    private EventPool<?> pool;
+    private volatile int references;
+
     /**
      * Notifies each module registered to receive an event of this type. Each <code>EventReceiver</code> passed into
      * the method represents a different module. Simply call the <code>EventReceiver</code>'s <code>onNotify</code>
@@ -24,4 +41,92 @@ public abstract class Event {
      */
     public abstract void notifyModules(EventReceiver[] eventReceivers);
 
+    /**
+     * Returns the key that the event is coalesced by when its type is coalesced with the <code>BY_KEY</code> policy,
+     * such as the ID of the entity that the event is about. Of the events with the same key posted in between two
+     * dispatches, only the latest is dispatched. Returns zero by default, which coalesces every event of the type.
+     *
+     * @return The event's coalesce key
+     * @see Core.Module.CoalescePolicy
+     */
+    public long getCoalesceKey() {
+        return 0;
+    }
+
+    /**
+     * Adds a reference to a pooled event, which keeps it from being returned to its pool until the reference is
+     * released. Has no effect on events that aren't pooled.
+     *
+     * @return This <code>Event</code> object
+     * @throws RuntimeException If the event has already been released
+     */
+    public final Event retain() {
+        if (pool == null) {
+            return this;
+        }
+        while (true) {
+            int references = this.references;
+            if (references <= 0) {
+                throw new RuntimeException("Event " + eventEnum + " has been used after being released");
+            }
+            if (REFERENCES.compareAndSet(this, references, references + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Releases a reference to a pooled event. Once every reference has been released, the event is reset and returned
+     * to its pool, after which it must no longer be used. Has no effect on events that aren't pooled.
+     *
+     * @throws RuntimeException If the event has already been released
+     */
+    public final void release() {
+        if (pool == null) {
+            return;
+        }
+        int references = REFERENCES.decrementAndGet(this);
+        if (references == 0) {
+            pool.recycle(this);
+        }
+        else if (references < 0) {
+            throw new RuntimeException("Event " + eventEnum + " has been released more times than it was retained");
+        }
+    }
+
+    /**
+     * Returns whether the event is pooled and has been released back to its pool.
+     *
+     * @return True if the event has been released, otherwise false
+     */
+    public final boolean isReleased() {
+        return pool != null && references <= 0;
+    }
+
+    /**
+     * Throws an exception if the event has been released. Event classes may call this method from their accessors to
+     * catch receivers that use a pooled event after it has been released, which is only reliable while the event's
+     * pool is in debug mode, as released events are otherwise reused straight away.
+     *
+     * @throws RuntimeException If the event has been released
+     * @see EventPool#setDebugEnabled(boolean)
+     */
+    protected final void checkNotReleased() {
+        if (isReleased()) {
+            throw new RuntimeException("Event " + eventEnum + " has been used after being released");
+        }
+    }
+
+    /**
+     * Clears the event's data before it is returned to its pool, such as by dropping references to other objects so
+     * that they can be garbage collected. Does nothing by default.
+     */
+    protected void reset() {}
+
+    // Called by the event's pool whenever the event is acquired
+    void acquired(EventPool<?> pool) {
+        this.pool = pool;
+        references = 1;
+    }
+
 }
@@ -0,0 +1,156 @@
+package EngineLibrary;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * The <code>EventPool</code> class recycles the instances of a single event class, so that events that are posted
+ * often, such as input or collision events, don't have to be allocated every time. A module should create a pool for
+ * each such event class, acquire an event from it, fill in the event's data, and post it as usual. Posting an event
+ * hands it over to the <code>Core</code>, which releases it back to the pool once every receiver has been notified. An
+ * acquired event that ends up not being posted should be released by the module instead.
+ * <p>
+ * Pools are safe to use from any thread. Released events are kept in a bounded, lock-free queue, and events released
+ * while the queue is full are simply left to the garbage collector.
+ * <p>
+ * Since released events are reused straight away, a receiver that keeps using an event after it has been released sees
+ * the data of whichever event it has since become. Debug mode catches this: released events are never reused, and
+ * retaining, releasing, or posting a released event throws an exception, as do the accessors of event classes that call
+ * <code>checkNotReleased()</code>.
+ *
+ * @param <T> The event class that the pool holds
+ * @see Event
+ */
+public class EventPool<T extends Event> {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final Supplier<T> factory;
+    // A bounded multi-producer, multi-consumer queue. Each slot's sequence number tells whether it's ready to be
+    // written to or read from for a given position, so producers and consumers only ever contend on the head or tail
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head;
+    private final AtomicLong tail;
+    private final int mask;
+    private volatile boolean debugEnabled;
+
+    /**
+     * Creates a pool that holds up to 1024 released events.
+     *
+     * @param factory Creates a new event whenever the pool is empty, such as the event class's constructor
+     */
+    public EventPool(Supplier<T> factory) {
+        this(factory, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a pool that holds up to the supplied number of released events, rounded up to the next power of two.
+     *
+     * @param factory Creates a new event whenever the pool is empty, such as the event class's constructor
+     * @param capacity The largest number of released events that the pool holds on to
+     */
+    public EventPool(Supplier<T> factory, int capacity) {
+        if (capacity < 1) {
+            throw new RuntimeException("Event pool capacity must be at least 1");
+        }
+        this.factory = factory;
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        head = new AtomicLong(0);
+        tail = new AtomicLong(0);
+        mask = size - 1;
+    }
+
+    /**
+     * Takes an event from the pool, or creates a new one if the pool is empty. The event holds a single reference,
+     * which belongs to the caller until the event is posted.
+     *
+     * @return An event whose data has been reset
+     */
+    public T acquire() {
+        T event = poll();
+        if (event == null) {
+            event = factory.get();
+        }
+        event.acquired(this);
+        return event;
+    }
+
+    /**
+     * Enables or disables debug mode, in which released events are never reused so that any use of them after being
+     * released can be detected. Debug mode should only be enabled while tracking down such a bug, as every acquired
+     * event is then newly allocated.
+     *
+     * @param debugEnabled True to enable debug mode
+     */
+    public void setDebugEnabled(boolean debugEnabled) {
+        this.debugEnabled = debugEnabled;
+    }
+
+    // Called by an event once its last reference has been released
+    void recycle(Event event) {
+        event.reset();
+        if (!debugEnabled) {
+            // Only events acquired from this pool are ever recycled to it
+            @SuppressWarnings("unchecked")
+            T recycled = (T) event;
+            offer(recycled);
+        }
+    }
+
+    private boolean offer(T event) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, event);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            }
+            else if (difference < 0) {
+                return false; // Full
+            }
+            else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private T poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    T event = slots.get(index);
+                    slots.set(index, null);
+                    sequences.set(index, position + mask + 1);
+                    return event;
+                }
+                position = head.get();
+            }
+            else if (difference < 0) {
+                return null; // Empty
+            }
+            else {
+                position = head.get();
+            }
+        }
+    }
+
+}
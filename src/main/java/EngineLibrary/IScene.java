@@ -1,5 +1,7 @@
 package EngineLibrary;
 
+import Core.SceneLoad;
+
 public interface IScene {
 
     /**
@@ -23,4 +25,15 @@ public interface IScene {
      */
     IState[] getStates();
 
+    /**
+     * Prepares the scene before it is pushed onto the scene stack by <code>Core.Module.pushSceneAsync()</code>, such
+     * as by loading the resources needed by its states and components. This method is called on a background worker
+     * thread while the engine loop keeps running, so it must not register states or otherwise change the
+     * <code>Core</code>'s state. Progress should be reported through the supplied <code>SceneLoad</code> object. Does
+     * nothing by default.
+     *
+     * @param load The <code>SceneLoad</code> object representing the scene being loaded
+     */
+    default void prepare(SceneLoad load) {}
+
 }
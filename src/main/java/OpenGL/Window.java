@@ -113,7 +113,7 @@ public class Window {
 
         // Make the OpenGL context current
         glfwMakeContextCurrent(windowHandle);
-        // Enable v-sync
+        // Disable v-sync by default. It can be enabled later with setVSync()
         glfwSwapInterval(0);
 
         // Make the windowHandle visible
@@ -201,6 +201,17 @@ public class Window {
         glDepthMask(false);
     }
 
+    /**
+     * Enables or disables v-sync, which makes swapping buffers wait for the display to refresh. This prevents screen
+     * tearing and limits the frame rate to the display's refresh rate. This method must be called on the thread that
+     * the window's context is attached to.
+     *
+     * @param enabled True to wait for the display to refresh before swapping buffers, false to swap immediately
+     */
+    public void setVSync(boolean enabled) {
+        glfwSwapInterval(enabled ? 1 : 0);
+    }
+
     /**
      * Swaps the back buffer with the current buffer, displaying a new frame.
      */
@@ -0,0 +1,193 @@
+package Core;
+
+import Core.Module.ThreadType;
+import EngineLibrary.IComponent;
+import EngineLibrary.IState;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CostModelTest {
+
+    private enum TestEvents {
+        A, B
+    }
+
+    private final CostModel costModel = new CostModel();
+
+    @Test
+    void noEventTasksGetNoThreads() {
+        assertEquals(0, costModel.allocateEventThreads(0, 0, 0, new IState[0], 4));
+    }
+
+    @Test
+    void unmeasuredEventsRunInlineWithNothingAlongside() {
+        double eventCost = costModel.getEventCost(TestEvents.A);
+
+        // Handing a single cheap event off costs more than running it on the main thread
+        assertEquals(0, costModel.allocateEventThreads(eventCost, eventCost, 1, new IState[0], 4));
+    }
+
+    @Test
+    void unmeasuredStatesAreEstimatedFromTheirComponents() {
+        IState state = state(ThreadType.MAIN, 1000);
+        double eventCost = costModel.getEventCost(TestEvents.A);
+
+        // The state's 1000 components are estimated at the default cost, which dwarfs a single event task
+        assertEquals(1, costModel.allocateEventThreads(eventCost * 8, eventCost, 8, new IState[] {state}, 4));
+    }
+
+    @Test
+    void eventsAreSplitAcrossEveryThreadWithNothingAlongside() {
+        assertEquals(4, costModel.allocateEventThreads(800000, 100000, 8, new IState[0], 4));
+    }
+
+    @Test
+    void eventsAreNotSplitAcrossMoreThreadsThanTasks() {
+        assertEquals(2, costModel.allocateEventThreads(800000, 400000, 2, new IState[0], 4));
+    }
+
+    @Test
+    void eventThreadsStopOnceTheMainThreadIsTheCriticalPath() {
+        IState state = state(ThreadType.MAIN, 10);
+        costModel.recordSerial(state, 300000);
+
+        // Three threads bring the events under the state's 300 us, so a fourth would shorten nothing
+        assertEquals(3, costModel.allocateEventThreads(800000, 100000, 8, new IState[] {state}, 4));
+    }
+
+    @Test
+    void singleExpensiveEventMovesOffTheMainThread() {
+        IState state = state(ThreadType.MAIN, 10);
+        costModel.recordSerial(state, 500000);
+
+        assertEquals(1, costModel.allocateEventThreads(500000, 500000, 1, new IState[] {state}, 4));
+    }
+
+    @Test
+    void threadsAreSplitBetweenEventsAndDataParallelComponents() {
+        IState state = state(ThreadType.ALL, 1000);
+        costModel.recordComponent(state, 1000);
+
+        // Two event threads leave three threads for the components, which balances both paths best
+        assertEquals(2, costModel.allocateEventThreads(400000, 100000, 4, new IState[] {state}, 4));
+    }
+
+    @Test
+    void reservedStatesAreNotOnTheCriticalPath() {
+        IState state = state(ThreadType.WORKER, 10);
+        costModel.recordSerial(state, 10000000);
+        double eventCost = costModel.getEventCost(TestEvents.A);
+
+        assertEquals(0, costModel.allocateEventThreads(eventCost, eventCost, 1, new IState[] {state}, 4));
+    }
+
+    @Test
+    void smallStatesAreInlinedBelowTheTaskOverhead() {
+        IState state = state(ThreadType.ALL, 0);
+
+        // Unmeasured components cost 200 ns each, against 5 us to hand off a task
+        assertTrue(costModel.shouldInline(state, 24));
+        assertFalse(costModel.shouldInline(state, 25));
+        costModel.recordComponent(state, 10);
+        assertTrue(costModel.shouldInline(state, 499));
+        assertFalse(costModel.shouldInline(state, 500));
+    }
+
+    @Test
+    void participantsAreLimitedByTheTaskOverhead() {
+        assertEquals(1, costModel.getMaxParticipants(0));
+        assertEquals(1, costModel.getMaxParticipants(9999));
+        assertEquals(4, costModel.getMaxParticipants(20000));
+    }
+
+    @Test
+    void costsFollowTheMovingAverage() {
+        costModel.recordEvent(TestEvents.A, 1000);
+        assertEquals(1000, costModel.getEventCost(TestEvents.A));
+        costModel.recordEvent(TestEvents.A, 2000);
+        assertEquals(1200, costModel.getEventCost(TestEvents.A), 1e-9);
+        // Each event type is tracked on its own
+        assertEquals(costModel.getEventCost(TestEvents.B), costModel.getBatchCost(TestEvents.B, 1));
+
+        costModel.recordBatch(TestEvents.A, 3000, 3);
+        assertEquals(4000, costModel.getBatchCost(TestEvents.A, 4));
+    }
+
+    @Test
+    void costHintTakesPrecedenceOverMeasuredCosts() {
+        IState state = state(ThreadType.ALL, 0, new StateOptions().costPerComponent(1000));
+        costModel.recordComponent(state, 10);
+
+        assertEquals(1000, costModel.getComponentCost(state));
+        assertTrue(costModel.shouldInline(state, 4));
+        assertFalse(costModel.shouldInline(state, 5));
+    }
+
+    @Test
+    void statesUnderTheirInlineThresholdAreAlwaysInlined() {
+        IState state = state(ThreadType.ALL, 0, new StateOptions().costPerComponent(1000000).inlineThreshold(64));
+
+        assertTrue(costModel.shouldInline(state, 64));
+        assertFalse(costModel.shouldInline(state, 65));
+    }
+
+    @Test
+    void minComponentsPerTaskComesFromTheOptions() {
+        IState hinted = state(ThreadType.ALL, 0, new StateOptions().minComponentsPerTask(32));
+        IState unhinted = state(ThreadType.ALL, 0);
+
+        assertEquals(32, costModel.getMinComponentsPerTask(hinted));
+        assertEquals(1, costModel.getMinComponentsPerTask(unhinted));
+        assertEquals(1, costModel.getMinComponentsPerTask(new TestState(0)));
+    }
+
+    private IState state(ThreadType threadType, int numComponents) {
+        return state(threadType, numComponents, null);
+    }
+
+    private IState state(ThreadType threadType, int numComponents, StateOptions options) {
+        IState state = new TestState(numComponents);
+        costModel.registerState(state, threadType, options);
+        return state;
+    }
+
+    private static class TestState implements IState {
+
+        private final IComponent[] components;
+
+        private TestState(int numComponents) {
+            // Only the number of components is ever looked at
+            components = new IComponent[numComponents];
+        }
+
+        @Override
+        public void enter() {}
+
+        @Override
+        public void addComponent(IComponent component) {}
+
+        @Override
+        public void removeComponent(IComponent component) {}
+
+        @Override
+        public IComponent[] getComponents() {
+            return components;
+        }
+
+        @Override
+        public void updatePrep() {}
+
+        @Override
+        public void update() {}
+
+        @Override
+        public IState exit() {
+            return null;
+        }
+
+        @Override
+        public void delete() {}
+    }
+
+}
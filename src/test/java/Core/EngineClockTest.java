@@ -0,0 +1,106 @@
+package Core;
+
+import Core.Module.ClockType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EngineClockTest {
+
+    @Test
+    void virtualClockRunsTheSameNumberOfTicksEveryFrame() {
+        for (int timeScale = 1; timeScale <= 16; timeScale++) {
+            EngineClock clock = EngineClock.create(ClockType.VIRTUAL, timeScale, 0.02, 5, new Metrics());
+            for (int frame = 0; frame < 100000; frame++) {
+                assertEquals(timeScale, clock.advance());
+                assertEquals(0, clock.getTickFraction());
+            }
+        }
+    }
+
+    @Test
+    void virtualClockSpreadsFractionalTicksEvenly() {
+        EngineClock clock = EngineClock.create(ClockType.VIRTUAL, 0.25, 0.02, 5, new Metrics());
+        for (int frame = 1; frame <= 1000; frame++) {
+            assertEquals(frame % 4 == 0 ? 1 : 0, clock.advance());
+            assertEquals((frame % 4) * 0.25, clock.getTickFraction());
+        }
+    }
+
+    @Test
+    void virtualClockNeverLosesTicksToRounding() {
+        // 0.29 is just short of its decimal value as a double, so multiplying it by a frame count would round down
+        EngineClock clock = EngineClock.create(ClockType.VIRTUAL, 0.29, 0.02, 5, new Metrics());
+        long ticks = 0;
+        for (int frame = 0; frame < 100; frame++) {
+            ticks += clock.advance();
+        }
+        assertEquals(29, ticks);
+    }
+
+    @Test
+    void timeClockCarriesTimeShortOfATickOverAsLag() {
+        ManualClock clock = new ManualClock(5, new Metrics());
+        assertEquals(0, clock.advance());
+        clock.time = 0.5;
+        assertEquals(0, clock.advance());
+        assertEquals(0.5, clock.getTickFraction(), 1e-9);
+        clock.time = 2.75;
+        assertEquals(2, clock.advance());
+        assertEquals(0.75, clock.getTickFraction(), 1e-9);
+    }
+
+    @Test
+    void timeClockStartsCountingFromTheFirstFrame() {
+        ManualClock clock = new ManualClock(5, new Metrics());
+        clock.time = 100;
+        assertEquals(0, clock.advance());
+        clock.time = 101;
+        assertEquals(1, clock.advance());
+    }
+
+    @Test
+    void timeClockDropsTicksPastTheCatchUpLimit() {
+        Metrics metrics = new Metrics();
+        ManualClock clock = new ManualClock(5, metrics);
+        clock.advance();
+        clock.time = 8.5;
+        assertEquals(5, clock.advance());
+        assertEquals(0.5, clock.getTickFraction(), 1e-9);
+        assertEquals(3, metrics.counter("update.dropped.steps").get());
+        assertEquals(1, metrics.counter("update.catchup.frames").get());
+        clock.time = 9.5;
+        assertEquals(1, clock.advance());
+        assertEquals(1, metrics.counter("update.catchup.frames").get());
+    }
+
+    @Test
+    void virtualClockIsNeverLimitedByTheCatchUpLimit() {
+        Metrics metrics = new Metrics();
+        EngineClock clock = EngineClock.create(ClockType.VIRTUAL, 8, 0.02, 5, metrics);
+        assertEquals(8, clock.advance());
+        assertEquals(0, metrics.counter("update.dropped.steps").get());
+    }
+
+    @Test
+    void rejectsTimeScalesTooSmallToCount() {
+        assertThrows(RuntimeException.class, () -> EngineClock.create(ClockType.VIRTUAL, 0, 0.02, 5, new Metrics()));
+        assertThrows(RuntimeException.class, () -> EngineClock.create(ClockType.VIRTUAL, 1e-9, 0.02, 5, new Metrics()));
+    }
+
+    // A time clock with ticks of one second, moved on by hand
+    private static class ManualClock extends EngineClock.TimeClock {
+
+        private double time;
+
+        private ManualClock(int maxCatchUpSteps, Metrics metrics) {
+            super(1, maxCatchUpSteps, metrics);
+        }
+
+        @Override
+        double getTime() {
+            return time;
+        }
+    }
+
+}
@@ -0,0 +1,348 @@
+package Core;
+
+import Core.Module.EventReceiver;
+import Core.Module.OverflowPolicy;
+import EngineLibrary.Event;
+import EngineLibrary.EventPool;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventBufferTest {
+
+    private static final int CAPACITY = 1 << 20;
+
+    @Test
+    void drainsEventsSortedByKey() {
+        EventOrder eventOrder = new EventOrder();
+        EventBuffer buffer = new EventBuffer(eventOrder, new Metrics(), CAPACITY, OverflowPolicy.GROW);
+        EventOrder.Source source = eventOrder.getSource();
+        long[] keys = {5, 1, 3, 1, 0, 5, 2};
+        for (int i = 0; i < keys.length; i++) {
+            source.set(keys[i]);
+            buffer.add(new TestEvent(i));
+        }
+        source.clear();
+
+        List<TestEvent> events = drain(buffer);
+
+        // Events posted under the same key keep the order they were posted in
+        assertEquals(Arrays.asList(4, 1, 3, 6, 2, 0, 5), ids(events));
+    }
+
+    @Test
+    void drainsUnorderedEventsLastInTheOrderTheyWerePosted() {
+        EventOrder eventOrder = new EventOrder();
+        EventBuffer buffer = new EventBuffer(eventOrder, new Metrics(), CAPACITY, OverflowPolicy.GROW);
+        EventOrder.Source source = eventOrder.getSource();
+        buffer.add(new TestEvent(0));
+        source.set(7);
+        buffer.add(new TestEvent(1));
+        source.clear();
+        buffer.add(new TestEvent(2));
+        source.set(3);
+        buffer.add(new TestEvent(3));
+        source.clear();
+
+        assertEquals(Arrays.asList(3, 1, 0, 2), ids(drain(buffer)));
+    }
+
+    @Test
+    void drainTakesOnlyTheEventsAddedSinceTheLastDrain() {
+        EventBuffer buffer = new EventBuffer(new EventOrder(), new Metrics(), CAPACITY, OverflowPolicy.GROW);
+        buffer.add(new TestEvent(0));
+        buffer.add(new TestEvent(1));
+
+        assertEquals(Arrays.asList(0, 1), ids(drain(buffer)));
+        assertEquals(0, buffer.drain());
+
+        buffer.add(new TestEvent(2));
+        assertEquals(Arrays.asList(2), ids(drain(buffer)));
+    }
+
+    @Test
+    void takeDropsTheBuffersReference() {
+        EventBuffer buffer = new EventBuffer(new EventOrder(), new Metrics(), CAPACITY, OverflowPolicy.GROW);
+        TestEvent event = new TestEvent(0);
+        buffer.add(event);
+
+        assertEquals(1, buffer.drain());
+        assertSame(event, buffer.take(0));
+        assertNull(buffer.take(0));
+    }
+
+    @Test
+    void growsToFitABurstOfEvents() {
+        Metrics metrics = new Metrics();
+        EventBuffer buffer = new EventBuffer(new EventOrder(), metrics, CAPACITY, OverflowPolicy.GROW);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 1000; i++) {
+                buffer.add(new TestEvent(i));
+            }
+
+            List<TestEvent> events = drain(buffer);
+
+            assertEquals(1000, events.size());
+            for (int i = 0; i < events.size(); i++) {
+                assertEquals(i, events.get(i).id);
+            }
+        }
+        // The segments only grow once each, after which the burst fits without overflowing
+        assertEquals(2, metrics.getCounters().get("events.queue.growths").get());
+    }
+
+    @Test
+    void drainsEveryEventAddedByConcurrentPosters() throws InterruptedException {
+        EventOrder eventOrder = new EventOrder();
+        EventBuffer buffer = new EventBuffer(eventOrder, new Metrics(), CAPACITY, OverflowPolicy.GROW);
+        int numPosters = 4;
+        int eventsPerPoster = 50000;
+        Thread[] posters = new Thread[numPosters];
+        for (int i = 0; i < numPosters; i++) {
+            int poster = i;
+            posters[i] = new Thread(() -> {
+                // Each poster posts under its own key, so its events must come out in the order they were posted
+                eventOrder.getSource().set(poster);
+                for (int y = 0; y < eventsPerPoster; y++) {
+                    buffer.add(new TestEvent(poster * eventsPerPoster + y));
+                }
+            });
+            posters[i].start();
+        }
+
+        int[] nextIds = new int[numPosters];
+        for (int i = 0; i < numPosters; i++) {
+            nextIds[i] = i * eventsPerPoster;
+        }
+        int numDrained = 0;
+        boolean posting = true;
+        while (posting) {
+            posting = false;
+            for (Thread poster : posters) {
+                posting |= poster.isAlive();
+            }
+            long previousPoster = -1;
+            int count = buffer.drain();
+            for (int i = 0; i < count; i++) {
+                TestEvent event = (TestEvent) buffer.take(i);
+                int poster = event.id / eventsPerPoster;
+                assertTrue(poster >= previousPoster);
+                assertEquals(nextIds[poster]++, event.id);
+                previousPoster = poster;
+            }
+            numDrained += count;
+        }
+
+        assertEquals(numPosters * eventsPerPoster, numDrained);
+    }
+
+    @Test
+    void dropNewestDropsTheEventsPostedOnceFull() {
+        Metrics metrics = new Metrics();
+        EventBuffer buffer = new EventBuffer(new EventOrder(), metrics, 4, OverflowPolicy.DROP_NEWEST);
+        PooledEvent[] events = acquire(6);
+        for (PooledEvent event : events) {
+            assertTrue(buffer.add(event));
+        }
+
+        assertEquals(Arrays.asList(0, 1, 2, 3), pooledIds(buffer));
+        assertReleased(events, 4, 5);
+        assertEquals(2, metrics.getCounters().get("events.dropped").get());
+    }
+
+    @Test
+    void dropOldestKeepsTheNewestEvents() {
+        Metrics metrics = new Metrics();
+        EventBuffer buffer = new EventBuffer(new EventOrder(), metrics, 4, OverflowPolicy.DROP_OLDEST);
+        PooledEvent[] events = acquire(6);
+        for (PooledEvent event : events) {
+            assertTrue(buffer.add(event));
+        }
+
+        assertEquals(Arrays.asList(2, 3, 4, 5), pooledIds(buffer));
+        assertReleased(events, 0, 1);
+        assertEquals(2, metrics.getCounters().get("events.dropped").get());
+    }
+
+    @Test
+    void dropOldestKeepsNoMoreThanTheCapacityOfOverflowedEvents() {
+        Metrics metrics = new Metrics();
+        EventBuffer buffer = new EventBuffer(new EventOrder(), metrics, 4, OverflowPolicy.DROP_OLDEST);
+        PooledEvent[] events = acquire(12);
+        for (PooledEvent event : events) {
+            assertTrue(buffer.add(event));
+        }
+
+        assertEquals(Arrays.asList(8, 9, 10, 11), pooledIds(buffer));
+        assertReleased(events, 0, 1, 2, 3, 4, 5, 6, 7);
+        assertEquals(8, metrics.getCounters().get("events.dropped").get());
+    }
+
+    @Test
+    void rejectHandsTheEventsPostedOnceFullBackToThePoster() {
+        Metrics metrics = new Metrics();
+        EventBuffer buffer = new EventBuffer(new EventOrder(), metrics, 4, OverflowPolicy.REJECT);
+        PooledEvent[] events = acquire(6);
+        for (int i = 0; i < events.length; i++) {
+            assertEquals(i < 4, buffer.add(events[i]));
+        }
+
+        assertEquals(Arrays.asList(0, 1, 2, 3), pooledIds(buffer));
+        // Rejected events still belong to the poster
+        assertFalse(events[4].isReleased());
+        assertFalse(events[5].isReleased());
+        assertEquals(2, metrics.getCounters().get("events.rejected").get());
+        assertEquals(0, metrics.getCounters().get("events.dropped").get());
+    }
+
+    @Test
+    void growDropsTheEventsPostedPastTheCapacity() {
+        Metrics metrics = new Metrics();
+        EventBuffer buffer = new EventBuffer(new EventOrder(), metrics, 100, OverflowPolicy.GROW);
+        PooledEvent[] events = acquire(150);
+        for (PooledEvent event : events) {
+            assertTrue(buffer.add(event));
+        }
+
+        List<Integer> ids = pooledIds(buffer);
+
+        assertEquals(100, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i, ids.get(i));
+        }
+        for (int i = 100; i < events.length; i++) {
+            assertTrue(events[i].isReleased());
+        }
+        assertEquals(50, metrics.getCounters().get("events.dropped").get());
+        assertEquals(1, metrics.getCounters().get("events.queue.growths").get());
+    }
+
+    @Test
+    void capacityAppliesToEachDrainSeparately() {
+        for (OverflowPolicy overflowPolicy : OverflowPolicy.values()) {
+            Metrics metrics = new Metrics();
+            EventBuffer buffer = new EventBuffer(new EventOrder(), metrics, 4, overflowPolicy);
+            for (int round = 0; round < 3; round++) {
+                PooledEvent[] events = acquire(4);
+                for (PooledEvent event : events) {
+                    assertTrue(buffer.add(event));
+                }
+
+                assertEquals(Arrays.asList(0, 1, 2, 3), pooledIds(buffer), overflowPolicy.toString());
+            }
+            assertEquals(0, metrics.getCounters().get("events.dropped").get());
+        }
+    }
+
+    @Test
+    void growShrinksOnceMostlyEmptyForLongEnough() {
+        Metrics metrics = new Metrics();
+        EventBuffer buffer = new EventBuffer(new EventOrder(), metrics, CAPACITY, OverflowPolicy.GROW);
+        // Grow both segments
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 1000; i++) {
+                buffer.add(new TestEvent(i));
+            }
+            assertEquals(1000, buffer.drain());
+        }
+        // Long enough for both segments to halve all the way back down, which shrinks the drained events as well
+        for (int i = 0; i < 4000; i++) {
+            buffer.add(new TestEvent(i));
+            assertEquals(Arrays.asList(i), ids(drain(buffer)));
+        }
+
+        assertEquals(12, metrics.getCounters().get("events.queue.shrinks").get());
+        // A shrunk buffer still takes every event of another burst
+        for (int i = 0; i < 1000; i++) {
+            buffer.add(new TestEvent(i));
+        }
+        assertEquals(1000, drain(buffer).size());
+    }
+
+    private static PooledEvent[] acquire(int numEvents) {
+        EventPool<PooledEvent> pool = new EventPool<>(PooledEvent::new);
+        // Released events are never reused, so that they can be told apart from those still held
+        pool.setDebugEnabled(true);
+        PooledEvent[] events = new PooledEvent[numEvents];
+        for (int i = 0; i < numEvents; i++) {
+            events[i] = pool.acquire();
+            events[i].id = i;
+        }
+        return events;
+    }
+
+    // Drains the buffer, releasing every drained event as its dispatch would
+    private static List<Integer> pooledIds(EventBuffer buffer) {
+        int count = buffer.drain();
+        List<Integer> ids = new ArrayList<>();
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            PooledEvent event = (PooledEvent) buffer.take(i);
+            assertFalse(event.isReleased());
+            ids.add(event.id);
+            events.add(event);
+        }
+        for (Event event : events) {
+            event.release();
+        }
+        return ids;
+    }
+
+    // Drained events are checked to still be held by pooledIds(), so only the dropped events need checking here
+    private static void assertReleased(PooledEvent[] events, int... indices) {
+        for (int index : indices) {
+            assertTrue(events[index].isReleased(), "Event " + index + " was not released");
+        }
+    }
+
+    private static List<TestEvent> drain(EventBuffer buffer) {
+        int count = buffer.drain();
+        List<TestEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add((TestEvent) buffer.take(i));
+        }
+        return events;
+    }
+
+    private static List<Integer> ids(List<TestEvent> events) {
+        List<Integer> ids = new ArrayList<>();
+        for (TestEvent event : events) {
+            ids.add(event.id);
+        }
+        return ids;
+    }
+
+    private enum TestEvents {
+        TEST
+    }
+
+    private static class TestEvent extends Event {
+
+        private final int id;
+
+        private TestEvent(int id) {
+            this.id = id;
+            eventEnum = TestEvents.TEST;
+        }
+
+        @Override
+        public void notifyModules(EventReceiver[] eventReceivers) {}
+    }
+
+    private static class PooledEvent extends Event {
+
+        private int id;
+
+        private PooledEvent() {
+            eventEnum = TestEvents.TEST;
+        }
+
+        @Override
+        public void notifyModules(EventReceiver[] eventReceivers) {}
+    }
+
+}
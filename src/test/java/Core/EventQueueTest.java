@@ -0,0 +1,292 @@
+package Core;
+
+import Core.Module.CoalescePolicy;
+import Core.Module.EventPriority;
+import Core.Module.EventReceiver;
+import Core.Module.OverflowPolicy;
+import EngineLibrary.Event;
+import EngineLibrary.EventPool;
+import EngineLibrary.IModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventQueueTest {
+
+    private Metrics metrics;
+    private EventQueue eventQueue;
+    private EventPool<TestEvent> pool;
+    private List<String> received;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new Metrics();
+        eventQueue = new EventQueue(metrics, new CostModel(), new EventOrder(), 0, 1 << 20, OverflowPolicy.GROW);
+        pool = new EventPool<>(TestEvent::new);
+        // Released events are never reused, so that they can be told apart from those still held
+        pool.setDebugEnabled(true);
+        received = new ArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventQueue.shutDown();
+    }
+
+    @Test
+    void preparesATaskForEachEventWithReceivers() {
+        register(TestEvents.A);
+        TestEvent[] events = {post(TestEvents.A, 0), post(TestEvents.A, 1), post(TestEvents.A, 2)};
+
+        assertEquals(3, eventQueue.prepareDispatch());
+        for (TestEvent event : events) {
+            assertFalse(event.isReleased());
+        }
+        runTasks(3);
+
+        assertEquals(Arrays.asList("A0", "A1", "A2"), received);
+        for (TestEvent event : events) {
+            assertTrue(event.isReleased());
+        }
+    }
+
+    @Test
+    void releasesEventsWithoutReceiversInsteadOfQueueingThem() {
+        register(TestEvents.A);
+        TestEvent event = post(TestEvents.B, 0);
+
+        assertTrue(event.isReleased());
+        assertEquals(0, eventQueue.prepareDispatch());
+    }
+
+    @Test
+    void releasesEventsWhoseReceiversWereUnregisteredBeforeTheDispatch() {
+        IModule module = register(TestEvents.A);
+        TestEvent event = post(TestEvents.A, 0);
+        eventQueue.unregisterModule(TestEvents.A, module);
+
+        assertEquals(0, eventQueue.prepareDispatch());
+        assertTrue(event.isReleased());
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void clearsTheTasksLeftOverFromALargerDispatch() {
+        register(TestEvents.A);
+        for (int i = 0; i < 5; i++) {
+            post(TestEvents.A, i);
+        }
+        assertEquals(5, eventQueue.prepareDispatch());
+        runTasks(5);
+
+        post(TestEvents.A, 5);
+        post(TestEvents.A, 6);
+        assertEquals(2, eventQueue.prepareDispatch());
+
+        Runnable[] tasks = eventQueue.getEventTasks();
+        for (int i = 2; i < 5; i++) {
+            assertNull(tasks[i]);
+        }
+        runTasks(2);
+        assertEquals(0, eventQueue.prepareDispatch());
+        assertNull(tasks[0]);
+        assertNull(tasks[1]);
+        assertEquals(Arrays.asList("A0", "A1", "A2", "A3", "A4", "A5", "A6"), received);
+    }
+
+    @Test
+    void eventTaskThatHasAlreadyRunFails() {
+        register(TestEvents.A);
+        post(TestEvents.A, 0);
+        assertEquals(1, eventQueue.prepareDispatch());
+        Runnable task = eventQueue.getEventTasks()[0];
+
+        task.run();
+        assertThrows(RuntimeException.class, task::run);
+
+        assertEquals(Arrays.asList("A0"), received);
+    }
+
+    @Test
+    void batchTasksFollowTheEventTasks() {
+        register(TestEvents.A);
+        registerBatch(TestEvents.A);
+        registerBatch(TestEvents.B);
+        TestEvent[] events = {post(TestEvents.A, 0), post(TestEvents.B, 1), post(TestEvents.A, 2)};
+
+        assertEquals(4, eventQueue.prepareDispatch());
+        runTasks(4);
+
+        assertEquals(Arrays.asList("A0", "A2", "A[0, 2]", "B[1]"), received);
+        // Each event is only released once both its event task and its batch have been run
+        for (TestEvent event : events) {
+            assertTrue(event.isReleased());
+        }
+    }
+
+    @Test
+    void coalescedTypeOnlyDispatchesItsLatestEvent() {
+        register(TestEvents.A);
+        eventQueue.setEventOptions(TestEvents.A, new EventOptions().coalesce(CoalescePolicy.LATEST));
+        TestEvent[] events = {post(TestEvents.A, 0), post(TestEvents.A, 1), post(TestEvents.A, 2)};
+
+        assertEquals(1, eventQueue.prepareDispatch());
+
+        assertTrue(events[0].isReleased());
+        assertTrue(events[1].isReleased());
+        assertFalse(events[2].isReleased());
+        runTasks(1);
+        assertEquals(Arrays.asList("A2"), received);
+        assertEquals(2, metrics.getCounters().get("events.coalesced").get());
+    }
+
+    @Test
+    void typeCoalescedByKeyDispatchesTheLatestEventOfEachKey() {
+        register(TestEvents.A);
+        register(TestEvents.B);
+        eventQueue.setEventOptions(TestEvents.A, new EventOptions().coalesce(CoalescePolicy.BY_KEY));
+        for (int i = 0; i < 5; i++) {
+            post(TestEvents.A, i).coalesceKey = i % 2;
+            post(TestEvents.B, i).coalesceKey = i % 2;
+        }
+
+        assertEquals(7, eventQueue.prepareDispatch());
+        runTasks(7);
+
+        // Events that aren't coalesced are never dropped, and the events that are kept stay in the order they were
+        // posted in
+        assertEquals(Arrays.asList("B0", "B1", "B2", "A3", "B3", "A4", "B4"), received);
+        assertEquals(3, metrics.getCounters().get("events.coalesced").get());
+    }
+
+    @Test
+    void dispatchesEventsByPriority() {
+        register(TestEvents.A);
+        register(TestEvents.C);
+        register(TestEvents.D);
+        eventQueue.setEventOptions(TestEvents.C, new EventOptions().priority(EventPriority.CRITICAL));
+        eventQueue.setEventOptions(TestEvents.D, new EventOptions().priority(EventPriority.DEFERRABLE));
+        post(TestEvents.D, 0);
+        post(TestEvents.A, 1);
+        post(TestEvents.C, 2);
+        post(TestEvents.A, 3);
+        post(TestEvents.C, 4);
+
+        assertEquals(5, eventQueue.prepareDispatch());
+        runTasks(5);
+
+        assertEquals(Arrays.asList("C2", "C4", "A1", "A3", "D0"), received);
+    }
+
+    @Test
+    void carriesDeferrableEventsPastTheBudgetOverToTheNextDispatch() {
+        eventQueue.shutDown();
+        // Every event is estimated to cost 1000 nanoseconds, so the budget fits two events
+        CostModel costModel = new CostModel() {
+            @Override
+            double getEventCost(Enum event) {
+                return 1000;
+            }
+        };
+        eventQueue = new EventQueue(metrics, costModel, new EventOrder(), 2500, 1 << 20, OverflowPolicy.GROW);
+        register(TestEvents.A);
+        register(TestEvents.D);
+        eventQueue.setEventOptions(TestEvents.D, new EventOptions().priority(EventPriority.DEFERRABLE));
+        post(TestEvents.D, 0);
+        post(TestEvents.D, 1);
+        post(TestEvents.D, 2);
+        post(TestEvents.A, 3);
+
+        assertEquals(2, eventQueue.prepareDispatch());
+        runTasks(2);
+        assertEquals(Arrays.asList("A3", "D0"), received);
+        assertEquals(2, metrics.getCounters().get("events.deferred").get());
+
+        // Carried events are dispatched first, and are never carried over a second time even if they go over the
+        // budget, unlike the events posted since
+        received.clear();
+        post(TestEvents.D, 4);
+        assertEquals(2, eventQueue.prepareDispatch());
+        runTasks(2);
+        assertEquals(Arrays.asList("D1", "D2"), received);
+
+        received.clear();
+        assertEquals(1, eventQueue.prepareDispatch());
+        runTasks(1);
+        assertEquals(Arrays.asList("D4"), received);
+        assertEquals(3, metrics.getCounters().get("events.deferred").get());
+    }
+
+    private IModule register(TestEvents event) {
+        IModule module = new TestModule();
+        eventQueue.registerEventReceiver(event, module, e -> received.add(e.eventEnum + "" + ((TestEvent) e).id),
+                false);
+        return module;
+    }
+
+    private void registerBatch(TestEvents event) {
+        eventQueue.registerBatchEventReceiver(event, new TestModule(), (events, numEvents) -> {
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < numEvents; i++) {
+                ids.add(((TestEvent) events[i]).id);
+            }
+            received.add(event + "" + ids);
+        });
+    }
+
+    private TestEvent post(TestEvents eventEnum, int id) {
+        TestEvent event = pool.acquire();
+        event.eventEnum = eventEnum;
+        event.id = id;
+        assertTrue(eventQueue.postEvent(event));
+        return event;
+    }
+
+    private void runTasks(int numTasks) {
+        Runnable[] tasks = eventQueue.getEventTasks();
+        for (int i = 0; i < numTasks; i++) {
+            tasks[i].run();
+        }
+    }
+
+    private enum TestEvents {
+        A, B, C, D
+    }
+
+    private static class TestEvent extends Event {
+
+        private int id;
+        private long coalesceKey;
+
+        @Override
+        public long getCoalesceKey() {
+            return coalesceKey;
+        }
+
+        @Override
+        public void notifyModules(EventReceiver[] eventReceivers) {
+            for (EventReceiver eventReceiver : eventReceivers) {
+                eventReceiver.onNotify(this);
+            }
+        }
+    }
+
+    private static class TestModule implements IModule {
+
+        @Override
+        public void init() {}
+
+        @Override
+        public void start() {}
+
+        @Override
+        public void shutdown() {}
+    }
+
+}
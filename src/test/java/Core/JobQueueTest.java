@@ -0,0 +1,72 @@
+package Core;
+
+import Core.Module.JobPriority;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobQueueTest {
+
+    @Test
+    void takesHigherPriorityJobsFirst() {
+        JobQueue jobQueue = new JobQueue(0, new Metrics());
+        Job<Integer> low = submit(jobQueue, JobPriority.LOW);
+        Job<Integer> normal = submit(jobQueue, JobPriority.NORMAL);
+        Job<Integer> high = submit(jobQueue, JobPriority.HIGH);
+
+        assertSame(high, jobQueue.poll());
+        assertSame(normal, jobQueue.poll());
+        assertSame(low, jobQueue.poll());
+        assertNull(jobQueue.poll());
+        assertFalse(jobQueue.hasRunnableJobs());
+    }
+
+    @Test
+    void exhaustedBudgetHoldsBackAllButHighPriorityJobsUntilTheNextFrame() {
+        Metrics metrics = new Metrics();
+        // A budget of a single nanosecond is used up by any job
+        JobQueue jobQueue = new JobQueue(1, metrics);
+        jobQueue.run(submitAndPoll(jobQueue, JobPriority.NORMAL));
+        Job<Integer> normal = submit(jobQueue, JobPriority.NORMAL);
+
+        assertNull(jobQueue.poll());
+        Job<Integer> high = submit(jobQueue, JobPriority.HIGH);
+        assertTrue(jobQueue.hasRunnableJobs());
+        assertSame(high, jobQueue.poll());
+        // HIGH priority jobs aren't charged to the budget, but the budget is already spent
+        jobQueue.run(high);
+        assertNull(jobQueue.poll());
+
+        jobQueue.beginFrame();
+
+        assertSame(normal, jobQueue.poll());
+        assertEquals(1, metrics.getCounters().get("jobs.budget.exhausted.frames").get());
+        assertEquals(2, metrics.getCounters().get("jobs.run").get());
+    }
+
+    @Test
+    void cancelAllCancelsEveryQueuedJob() {
+        JobQueue jobQueue = new JobQueue(0, new Metrics());
+        Job<Integer> normal = submit(jobQueue, JobPriority.NORMAL);
+        Job<Integer> high = submit(jobQueue, JobPriority.HIGH);
+
+        jobQueue.cancelAll();
+
+        assertTrue(normal.isCancelled());
+        assertTrue(high.isCancelled());
+        assertNull(jobQueue.poll());
+        assertFalse(jobQueue.hasRunnableJobs());
+    }
+
+    private static Job<Integer> submit(JobQueue jobQueue, JobPriority priority) {
+        Job<Integer> job = new Job<>(() -> 7, priority, jobQueue);
+        jobQueue.submit(job);
+        return job;
+    }
+
+    private static Job<?> submitAndPoll(JobQueue jobQueue, JobPriority priority) {
+        submit(jobQueue, priority);
+        return jobQueue.poll();
+    }
+
+}
@@ -0,0 +1,130 @@
+package Core;
+
+import Core.Module.JobPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobTest {
+
+    @Test
+    void continuationRegisteredBeforeCompletionRunsOnceOnTheNextFrame() {
+        JobQueue jobQueue = new JobQueue(0, new Metrics());
+        Job<Integer> job = new Job<>(() -> 7, JobPriority.NORMAL, jobQueue);
+        AtomicInteger result = new AtomicInteger(0);
+        job.whenComplete(completed -> result.addAndGet(completed.getResult()));
+
+        job.run();
+        assertEquals(0, result.get());
+        jobQueue.beginFrame();
+        jobQueue.beginFrame();
+
+        assertEquals(7, result.get());
+    }
+
+    @Test
+    void continuationRegisteredAfterCompletionRunsOnceOnTheNextFrame() {
+        JobQueue jobQueue = new JobQueue(0, new Metrics());
+        Job<Integer> job = new Job<>(() -> 7, JobPriority.NORMAL, jobQueue);
+        AtomicInteger runs = new AtomicInteger(0);
+        job.run();
+
+        job.whenComplete(completed -> runs.incrementAndGet());
+        jobQueue.beginFrame();
+        jobQueue.beginFrame();
+
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void continuationRunsOnceWhenRegisteredWhileTheJobCompletes() throws InterruptedException {
+        JobQueue jobQueue = new JobQueue(0, new Metrics());
+        Job<Integer> job = new Job<>(() -> 7, JobPriority.NORMAL, jobQueue);
+        AtomicInteger runs = new AtomicInteger(0);
+        Thread worker = new Thread(job::run);
+
+        // Holding the job's monitor stops the worker right after it has completed the job, but before it has checked
+        // for a continuation, which is exactly when a racing registration would see the job as done
+        synchronized (job) {
+            worker.start();
+            awaitDone(job);
+            job.whenComplete(completed -> runs.incrementAndGet());
+        }
+        worker.join();
+        jobQueue.beginFrame();
+        jobQueue.beginFrame();
+
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void continuationRunsOnceWhenRegisteredWhileTheJobIsCancelled() throws InterruptedException {
+        JobQueue jobQueue = new JobQueue(0, new Metrics());
+        Job<Integer> job = new Job<>(() -> 7, JobPriority.NORMAL, jobQueue);
+        AtomicInteger runs = new AtomicInteger(0);
+        Thread canceller = new Thread(job::cancel);
+
+        synchronized (job) {
+            canceller.start();
+            awaitDone(job);
+            job.whenComplete(completed -> runs.incrementAndGet());
+        }
+        canceller.join();
+        jobQueue.beginFrame();
+        jobQueue.beginFrame();
+
+        assertEquals(1, runs.get());
+        assertTrue(job.isCancelled());
+    }
+
+    @Test
+    void failedJobHandsItsExceptionToTheContinuation() {
+        JobQueue jobQueue = new JobQueue(0, new Metrics());
+        RuntimeException exception = new RuntimeException("Job failed");
+        Job<Integer> job = new Job<>(() -> {
+            throw exception;
+        }, JobPriority.NORMAL, jobQueue);
+        Throwable[] failure = new Throwable[1];
+        job.whenComplete(completed -> failure[0] = completed.getFailure());
+
+        job.run();
+        jobQueue.beginFrame();
+
+        assertSame(exception, failure[0]);
+        RuntimeException thrown = assertThrows(RuntimeException.class, job::getResult);
+        assertSame(exception, thrown.getCause());
+    }
+
+    @Test
+    void cancelledJobIsNeverRun() {
+        JobQueue jobQueue = new JobQueue(0, new Metrics());
+        AtomicInteger calls = new AtomicInteger(0);
+        Job<Integer> job = new Job<>(calls::incrementAndGet, JobPriority.NORMAL, jobQueue);
+
+        assertTrue(job.cancel());
+        job.run();
+
+        assertEquals(0, calls.get());
+        assertTrue(job.isDone());
+        assertFalse(job.cancel());
+        assertThrows(RuntimeException.class, job::getResult);
+    }
+
+    @Test
+    void rejectsASecondContinuation() {
+        JobQueue jobQueue = new JobQueue(0, new Metrics());
+        Job<Integer> job = new Job<>(() -> 7, JobPriority.NORMAL, jobQueue);
+        job.whenComplete(completed -> {});
+
+        assertThrows(RuntimeException.class, () -> job.whenComplete(completed -> {}));
+    }
+
+    private static void awaitDone(Job<?> job) {
+        while (!job.isDone()) {
+            Thread.yield();
+        }
+    }
+
+}
@@ -0,0 +1,198 @@
+package Core;
+
+import Core.Module.Phase;
+import EngineLibrary.IComponent;
+import EngineLibrary.IScene;
+import EngineLibrary.IState;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModuleCSMTest {
+
+    @Test
+    void emptyStackHasNothingScheduled() {
+        ModuleCSM moduleCSM = new ModuleCSM();
+
+        assertEquals(0, moduleCSM.getNumScenes());
+        for (Phase phase : Phase.values()) {
+            assertEquals(0, moduleCSM.getSchedule(phase).length);
+        }
+    }
+
+    @Test
+    void schedulesTheStatesOfEverySceneInTheStackByPhase() {
+        ModuleCSM moduleCSM = new ModuleCSM();
+        TestState input = register(moduleCSM, "input", Phase.INPUT);
+        TestState update = register(moduleCSM, "update", Phase.UPDATE);
+        TestState render = register(moduleCSM, "render", Phase.RENDER);
+        TestState menuUpdate = register(moduleCSM, "menuUpdate", Phase.UPDATE);
+        // States that aren't registered are updated in the render phase
+        TestState unregistered = new TestState("unregistered");
+
+        moduleCSM.pushScene(new TestScene(input, update, render));
+        moduleCSM.pushScene(new TestScene(menuUpdate, unregistered));
+
+        assertEquals(2, moduleCSM.getNumScenes());
+        assertEquals(Arrays.asList(input), flatten(moduleCSM.getSchedule(Phase.INPUT)));
+        assertEquals(Arrays.asList(update, menuUpdate), flatten(moduleCSM.getSchedule(Phase.UPDATE)));
+        assertEquals(Arrays.asList(render, unregistered), flatten(moduleCSM.getSchedule(Phase.RENDER)));
+
+        moduleCSM.popScene();
+        assertEquals(1, moduleCSM.getNumScenes());
+        assertEquals(Arrays.asList(update), flatten(moduleCSM.getSchedule(Phase.UPDATE)));
+        moduleCSM.clearSceneStack();
+        assertEquals(0, moduleCSM.getNumScenes());
+        moduleCSM.popScene();
+        assertEquals(0, moduleCSM.getNumScenes());
+    }
+
+    @Test
+    void scenePushedAgainOnTheSameScenesReusesItsSchedule() {
+        ModuleCSM moduleCSM = new ModuleCSM();
+        TestScene level = new TestScene(register(moduleCSM, "update", Phase.UPDATE));
+        TestScene menu = new TestScene(register(moduleCSM, "menuUpdate", Phase.UPDATE));
+        moduleCSM.pushScene(level);
+        IState[][] levelSchedule = moduleCSM.getSchedule(Phase.UPDATE);
+        moduleCSM.pushScene(menu);
+        IState[][] menuSchedule = moduleCSM.getSchedule(Phase.UPDATE);
+
+        for (int i = 0; i < 5; i++) {
+            moduleCSM.popScene();
+            assertSame(levelSchedule, moduleCSM.getSchedule(Phase.UPDATE));
+            moduleCSM.pushScene(menu);
+            assertSame(menuSchedule, moduleCSM.getSchedule(Phase.UPDATE));
+        }
+        // Scenes prepared ahead of time, such as by a background load, reuse the schedule too
+        moduleCSM.popScene();
+        moduleCSM.pushScene(moduleCSM.prepareScene(menu));
+        assertSame(menuSchedule, moduleCSM.getSchedule(Phase.UPDATE));
+    }
+
+    @Test
+    void sceneIsSortedAgainOnceItsStatesChange() {
+        ModuleCSM moduleCSM = new ModuleCSM();
+        TestState update = register(moduleCSM, "update", Phase.UPDATE);
+        TestState menuUpdate = register(moduleCSM, "menuUpdate", Phase.UPDATE);
+        TestScene level = new TestScene(update);
+        TestScene menu = new TestScene(menuUpdate);
+        moduleCSM.pushScene(level);
+        moduleCSM.pushScene(menu);
+        IState[][] menuSchedule = moduleCSM.getSchedule(Phase.UPDATE);
+
+        TestState added = new TestState("added");
+        menu.addState(added);
+        moduleCSM.popScene();
+        moduleCSM.pushScene(menu);
+
+        assertNotSame(menuSchedule, moduleCSM.getSchedule(Phase.UPDATE));
+        assertEquals(Arrays.asList(update, menuUpdate), flatten(moduleCSM.getSchedule(Phase.UPDATE)));
+        assertEquals(Arrays.asList(added), flatten(moduleCSM.getSchedule(Phase.RENDER)));
+    }
+
+    @Test
+    void scheduleIsRebuiltOnceTheRegistryChanges() {
+        ModuleCSM moduleCSM = new ModuleCSM();
+        TestState update = register(moduleCSM, "update", Phase.UPDATE);
+        TestState state = new TestState("state");
+        TestScene scene = new TestScene(update, state);
+        moduleCSM.pushScene(scene);
+        assertEquals(Arrays.asList(state), flatten(moduleCSM.getSchedule(Phase.RENDER)));
+
+        moduleCSM.registerState(state, Phase.UPDATE, null);
+
+        assertEquals(Arrays.asList(update, state), flatten(moduleCSM.getSchedule(Phase.UPDATE)));
+        assertEquals(0, moduleCSM.getSchedule(Phase.RENDER).length);
+
+        moduleCSM.unregisterState(state);
+
+        assertEquals(Arrays.asList(update), flatten(moduleCSM.getSchedule(Phase.UPDATE)));
+        assertEquals(Arrays.asList(state), flatten(moduleCSM.getSchedule(Phase.RENDER)));
+        assertThrows(RuntimeException.class, () -> moduleCSM.unregisterState(state));
+    }
+
+    private static TestState register(ModuleCSM moduleCSM, String name, Phase phase) {
+        TestState state = new TestState(name);
+        moduleCSM.registerState(state, phase, null);
+        return state;
+    }
+
+    private static List<IState> flatten(IState[][] levels) {
+        List<IState> states = new ArrayList<>();
+        for (IState[] level : levels) {
+            states.addAll(Arrays.asList(level));
+        }
+        return states;
+    }
+
+    private static class TestScene implements IScene {
+
+        private final List<IState> states;
+
+        private TestScene(IState... states) {
+            this.states = new ArrayList<>(Arrays.asList(states));
+        }
+
+        @Override
+        public String getName() {
+            return "Test Scene";
+        }
+
+        @Override
+        public void addState(IState state) {
+            states.add(state);
+        }
+
+        @Override
+        public IState[] getStates() {
+            return states.toArray(new IState[0]);
+        }
+    }
+
+    private static class TestState implements IState {
+
+        private final String name;
+
+        private TestState(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void enter() {}
+
+        @Override
+        public void addComponent(IComponent component) {}
+
+        @Override
+        public void removeComponent(IComponent component) {}
+
+        @Override
+        public IComponent[] getComponents() {
+            return new IComponent[0];
+        }
+
+        @Override
+        public void updatePrep() {}
+
+        @Override
+        public void update() {}
+
+        @Override
+        public IState exit() {
+            return null;
+        }
+
+        @Override
+        public void delete() {}
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+package Core;
+
+import EngineLibrary.IComponent;
+import EngineLibrary.IState;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateGraphTest {
+
+    private enum Data {
+        POSITION, VELOCITY, HEALTH
+    }
+
+    private final Map<IState, StateOptions> stateOptions = new HashMap<>();
+
+    @Test
+    void statesThatOnlyReadTheSameDataShareALevel() {
+        IState a = state("A", new StateOptions().reads(Data.POSITION));
+        IState b = state("B", new StateOptions().reads(Data.POSITION, Data.VELOCITY));
+
+        assertLevels(new IState[][] {{a, b}}, a, b);
+    }
+
+    @Test
+    void statesThatTouchDisjointDataShareALevel() {
+        IState a = state("A", new StateOptions().writes(Data.POSITION));
+        IState b = state("B", new StateOptions().reads(Data.VELOCITY).writes(Data.HEALTH));
+
+        assertLevels(new IState[][] {{a, b}}, a, b);
+    }
+
+    @Test
+    void writeConflictsWithAReadOrWriteOfTheSameData() {
+        IState writer = state("Writer", new StateOptions().writes(Data.POSITION));
+        IState reader = state("Reader", new StateOptions().reads(Data.POSITION));
+        IState otherWriter = state("Other Writer", new StateOptions().writes(Data.POSITION));
+
+        // A read after a write, and a write after a read
+        assertLevels(new IState[][] {{writer}, {reader}, {otherWriter}}, writer, reader, otherWriter);
+    }
+
+    @Test
+    void writeAfterWriteConflicts() {
+        IState a = state("A", new StateOptions().writes(Data.POSITION));
+        IState b = state("B", new StateOptions().writes(Data.POSITION, Data.HEALTH));
+
+        assertLevels(new IState[][] {{a}, {b}}, a, b);
+    }
+
+    @Test
+    void stateWithoutOptionsConflictsWithEverything() {
+        IState a = state("A", new StateOptions().reads(Data.POSITION));
+        IState unknown = state("Unknown", null);
+        IState b = state("B", new StateOptions().reads(Data.VELOCITY));
+
+        assertLevels(new IState[][] {{a}, {unknown}, {b}}, a, unknown, b);
+    }
+
+    @Test
+    void optionsWithoutDeclaredAccessConflictWithEverything() {
+        IState a = state("A", new StateOptions().reads(Data.POSITION));
+        IState undeclared = state("Undeclared", new StateOptions().minComponentsPerTask(4));
+        IState b = state("B", new StateOptions().reads(Data.VELOCITY));
+
+        assertLevels(new IState[][] {{a}, {undeclared}, {b}}, a, undeclared, b);
+    }
+
+    @Test
+    void stateIsPlacedAfterItsLatestConflict() {
+        IState a = state("A", new StateOptions().writes(Data.POSITION));
+        IState b = state("B", new StateOptions().writes(Data.VELOCITY));
+        IState c = state("C", new StateOptions().reads(Data.VELOCITY).writes(Data.HEALTH));
+        IState d = state("D", new StateOptions().reads(Data.HEALTH));
+        IState e = state("E", new StateOptions().reads(Data.POSITION));
+
+        // E only conflicts with A, so it moves up beside C even though it comes after D in update order
+        assertLevels(new IState[][] {{a, b}, {c, e}, {d}}, a, b, c, d, e);
+    }
+
+    @Test
+    void statesWithinALevelKeepTheirUpdateOrder() {
+        IState a = state("A", new StateOptions().reads(Data.POSITION));
+        IState b = state("B", new StateOptions().reads(Data.VELOCITY));
+        IState c = state("C", new StateOptions().reads(Data.HEALTH));
+
+        assertLevels(new IState[][] {{c, a, b}}, c, a, b);
+        assertLevels(new IState[][] {{b, c, a}}, b, c, a);
+    }
+
+    @Test
+    void noStatesBuildNoLevels() {
+        assertEquals(0, StateGraph.buildLevels(new IState[0], stateOptions).length);
+    }
+
+    private IState state(String name, StateOptions options) {
+        IState state = new TestState(name);
+        if (options != null) {
+            stateOptions.put(state, options);
+        }
+        return state;
+    }
+
+    private void assertLevels(IState[][] expected, IState... states) {
+        IState[][] levels = StateGraph.buildLevels(states, stateOptions);
+        assertEquals(expected.length, levels.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], levels[i], "Level " + i);
+        }
+    }
+
+    private static class TestState implements IState {
+
+        private final String name;
+
+        private TestState(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void enter() {}
+
+        @Override
+        public void addComponent(IComponent component) {}
+
+        @Override
+        public void removeComponent(IComponent component) {}
+
+        @Override
+        public IComponent[] getComponents() {
+            return new IComponent[0];
+        }
+
+        @Override
+        public void updatePrep() {}
+
+        @Override
+        public void update() {}
+
+        @Override
+        public IState exit() {
+            return null;
+        }
+
+        @Override
+        public void delete() {}
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+}
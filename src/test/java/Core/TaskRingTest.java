@@ -0,0 +1,183 @@
+package Core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskRingTest {
+
+    @Test
+    void runsTasksInTheOrderTheyWereOffered() {
+        TaskRing ring = new TaskRing(8, TaskRingTest::rethrow);
+        AtomicInteger completionCounter = new AtomicInteger(0);
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int task = i;
+            assertTrue(ring.offer(() -> order.add(task), completionCounter));
+        }
+        assertEquals(3, completionCounter.get());
+        assertTrue(ring.isReady());
+
+        while (ring.runNext()) {}
+
+        assertEquals(Arrays.asList(0, 1, 2), order);
+        assertEquals(0, completionCounter.get());
+        assertFalse(ring.isReady());
+        assertFalse(ring.hasPending());
+    }
+
+    @Test
+    void rejectsOffersOnceFullAndReusesSlotsOnceRun() {
+        TaskRing ring = new TaskRing(4, TaskRingTest::rethrow);
+        AtomicInteger completionCounter = new AtomicInteger(0);
+        AtomicInteger runs = new AtomicInteger(0);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(runs::incrementAndGet, completionCounter));
+        }
+        assertFalse(ring.offer(runs::incrementAndGet, completionCounter));
+        assertEquals(4, completionCounter.get());
+
+        // Run more laps around the ring than it has slots
+        for (int i = 0; i < 20; i++) {
+            assertTrue(ring.runNext());
+            assertTrue(ring.offer(runs::incrementAndGet, completionCounter));
+        }
+        while (ring.runNext()) {}
+
+        assertEquals(24, runs.get());
+        assertEquals(0, completionCounter.get());
+    }
+
+    @Test
+    void offerIfIdleOnlySucceedsWithNothingPending() {
+        TaskRing ring = new TaskRing(8, TaskRingTest::rethrow);
+        AtomicInteger completionCounter = new AtomicInteger(0);
+        Runnable task = () -> {};
+
+        assertTrue(ring.offer(task, completionCounter));
+        assertFalse(ring.offerIfIdle(task, completionCounter));
+        assertTrue(ring.runNext());
+        assertTrue(ring.offerIfIdle(task, completionCounter));
+        assertFalse(ring.offerIfIdle(task, completionCounter));
+        assertTrue(ring.runNext());
+        assertEquals(0, completionCounter.get());
+        assertFalse(ring.hasPending());
+    }
+
+    @Test
+    void claimIdleBlocksOfferIfIdleUntilReleased() {
+        TaskRing ring = new TaskRing(8, TaskRingTest::rethrow);
+        AtomicInteger completionCounter = new AtomicInteger(0);
+        Runnable task = () -> {};
+
+        assertTrue(ring.claimIdle());
+        assertTrue(ring.hasPending());
+        assertFalse(ring.claimIdle());
+        assertFalse(ring.offerIfIdle(task, completionCounter));
+        ring.releaseIdle();
+
+        assertTrue(ring.offerIfIdle(task, completionCounter));
+        assertFalse(ring.claimIdle());
+        assertTrue(ring.runNext());
+        assertTrue(ring.claimIdle());
+        ring.releaseIdle();
+    }
+
+    @Test
+    void taskIsPendingUntilItHasBeenRun() {
+        TaskRing ring = new TaskRing(8, TaskRingTest::rethrow);
+        AtomicInteger completionCounter = new AtomicInteger(0);
+        boolean[] pendingWhileRunning = new boolean[1];
+        int[] counterWhileRunning = new int[1];
+        ring.offer(() -> {
+            pendingWhileRunning[0] = ring.hasPending();
+            counterWhileRunning[0] = completionCounter.get();
+        }, completionCounter);
+
+        assertTrue(ring.runNext());
+
+        assertTrue(pendingWhileRunning[0]);
+        assertEquals(1, counterWhileRunning[0]);
+        assertFalse(ring.hasPending());
+        assertEquals(0, completionCounter.get());
+    }
+
+    @Test
+    void runsEveryTaskOfferedByConcurrentProducers() throws InterruptedException {
+        TaskRing ring = new TaskRing(16, TaskRingTest::rethrow);
+        AtomicInteger completionCounter = new AtomicInteger(0);
+        AtomicInteger runs = new AtomicInteger(0);
+        int numProducers = 4;
+        int tasksPerProducer = 10000;
+        Thread[] producers = new Thread[numProducers];
+        for (int i = 0; i < numProducers; i++) {
+            producers[i] = new Thread(() -> {
+                for (int y = 0; y < tasksPerProducer; y++) {
+                    while (!ring.offer(runs::incrementAndGet, completionCounter)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            producers[i].start();
+        }
+        // Two consumers take tasks from the ring at once, as the main thread does while waiting on a barrier
+        Thread consumer = new Thread(() -> {
+            while (runs.get() < numProducers * tasksPerProducer) {
+                if (!ring.runNext()) {
+                    Thread.yield();
+                }
+            }
+        });
+        consumer.start();
+        while (runs.get() < numProducers * tasksPerProducer) {
+            if (!ring.runNext()) {
+                Thread.yield();
+            }
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        consumer.join();
+
+        assertEquals(numProducers * tasksPerProducer, runs.get());
+        assertEquals(0, completionCounter.get());
+        assertFalse(ring.hasPending());
+    }
+
+    @Test
+    void failedTaskIsHandedToTheFailureHandlerAndStillCountedDown() {
+        List<Throwable> failures = new ArrayList<>();
+        TaskRing ring = new TaskRing(8, failures::add);
+        AtomicInteger completionCounter = new AtomicInteger(0);
+        AtomicInteger runs = new AtomicInteger(0);
+        RuntimeException exception = new RuntimeException("Task failed");
+        ring.offer(() -> {
+            throw exception;
+        }, completionCounter);
+        ring.offer(runs::incrementAndGet, completionCounter);
+
+        while (ring.runNext()) {}
+
+        assertEquals(Arrays.asList(exception), failures);
+        // The task queued behind the failed one is still run
+        assertEquals(1, runs.get());
+        assertEquals(0, completionCounter.get());
+        assertFalse(ring.hasPending());
+    }
+
+    @Test
+    void rejectsCapacityThatIsNotAPowerOfTwo() {
+        assertThrows(RuntimeException.class, () -> new TaskRing(12, TaskRingTest::rethrow));
+    }
+
+    // None of the other tests' tasks are meant to fail
+    private static void rethrow(Throwable t) {
+        throw new AssertionError("Task failed", t);
+    }
+
+}
@@ -0,0 +1,89 @@
+package Core;
+
+import Core.Module.IdleType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThreadPoolTest {
+
+    private ThreadPool threadPool;
+
+    @BeforeEach
+    void setUp() {
+        Metrics metrics = new Metrics();
+        threadPool = new ThreadPool(new IdleStrategy(IdleType.SPIN_PARK), new Profiler(), metrics, new CostModel(),
+                new JobQueue(0, metrics), new TickRates(new Timestep(1.0 / 50), 50), new EventOrder(),
+                100000000L, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        threadPool.shutDown();
+    }
+
+    @Test
+    void runsEveryEventTaskOnceForAnyNumberOfThreads() {
+        int[] taskCounts = {1, 2, 3, 5, 8, 13, 64};
+        for (int numThreads = 0; numThreads <= threadPool.getNumThreads(); numThreads++) {
+            for (int numTasks : taskCounts) {
+                // Slots past the tasks to be run are left over from an earlier, larger dispatch, and must never be run
+                AtomicInteger[] runs = new AtomicInteger[numTasks];
+                AtomicBoolean staleTaskRun = new AtomicBoolean(false);
+                Runnable[] tasks = new Runnable[numTasks + 16];
+                for (int i = 0; i < tasks.length; i++) {
+                    if (i < numTasks) {
+                        AtomicInteger taskRuns = new AtomicInteger(0);
+                        runs[i] = taskRuns;
+                        tasks[i] = taskRuns::incrementAndGet;
+                    }
+                    else {
+                        tasks[i] = () -> staleTaskRun.set(true);
+                    }
+                }
+
+                threadPool.executeEventTasks(tasks, numTasks, Math.min(numThreads, threadPool.getAvailableThreads()));
+                threadPool.awaitPhase("Test Tasks");
+
+                String message = numTasks + " tasks across " + numThreads + " threads";
+                assertFalse(staleTaskRun.get(), message);
+                for (AtomicInteger taskRuns : runs) {
+                    assertEquals(1, taskRuns.get(), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void failedTaskIsRethrownOnTheMainThreadOnceThePhaseIsJoined() {
+        RuntimeException exception = new RuntimeException("Receiver failed");
+        Runnable[] tasks = {() -> {
+            throw exception;
+        }};
+
+        threadPool.executeEventTasks(tasks, 1, 1);
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> threadPool.awaitPhase("Test Tasks"));
+
+        assertSame(exception, thrown.getCause());
+        // The failure is only rethrown once, and the worker is left free to take on the next phase's tasks
+        threadPool.awaitPhase("Test Tasks");
+        AtomicInteger runs = new AtomicInteger(0);
+        threadPool.executeEventTasks(new Runnable[] {runs::incrementAndGet}, 1, 1);
+        threadPool.awaitPhase("Test Tasks");
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void rejectsMoreThreadsThanThePoolHas() {
+        Runnable[] tasks = {() -> {}};
+
+        assertThrows(RuntimeException.class,
+                () -> threadPool.executeEventTasks(tasks, 1, threadPool.getNumThreads() + 1));
+    }
+
+}
@@ -0,0 +1,128 @@
+package Core;
+
+import EngineLibrary.IComponent;
+import EngineLibrary.IState;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickRatesTest {
+
+    private final Timestep timestep = new Timestep(1.0 / 50);
+    private final TickRates tickRates = new TickRates(timestep, 50);
+
+    @Test
+    void statesWithoutALowerRateAreAlwaysDue() {
+        IState unhinted = new TestState();
+        IState fullRate = new TestState();
+        IState lowRate = new TestState();
+        tickRates.registerState(unhinted, null);
+        tickRates.registerState(fullRate, new StateOptions().tickDivisor(1));
+        tickRates.registerState(lowRate, new StateOptions().tickDivisor(3));
+
+        for (long tick = 0; tick < 12; tick++) {
+            timestep.setTick(tick);
+            assertTrue(tickRates.isDue(unhinted));
+            assertTrue(tickRates.isDue(fullRate));
+        }
+    }
+
+    @Test
+    void stateIsDueOnceEveryDivisorTicks() {
+        IState state = new TestState();
+        tickRates.registerState(state, new StateOptions().tickDivisor(4));
+
+        assertEquals(5, countDue(state, 20));
+    }
+
+    @Test
+    void tickRateIsConvertedToADivisorOfTheTargetRate() {
+        IState state = new TestState();
+        tickRates.registerState(state, new StateOptions().tickRate(10));
+
+        assertEquals(4, countDue(state, 20));
+    }
+
+    @Test
+    void statesWithTheSameRateAreStaggered() {
+        IState first = new TestState();
+        IState second = new TestState();
+        tickRates.registerState(first, new StateOptions().tickDivisor(2));
+        tickRates.registerState(second, new StateOptions().tickDivisor(2));
+
+        for (long tick = 0; tick < 20; tick++) {
+            timestep.setTick(tick);
+            assertNotEquals(tickRates.isDue(first), tickRates.isDue(second), "Tick " + tick);
+        }
+    }
+
+    @Test
+    void statesWithDifferentRatesAreSpreadAcrossTicks() {
+        IState[] states = {new TestState(), new TestState(), new TestState()};
+        tickRates.registerState(states[0], new StateOptions().tickDivisor(2));
+        tickRates.registerState(states[1], new StateOptions().tickDivisor(4));
+        tickRates.registerState(states[2], new StateOptions().tickDivisor(4));
+
+        // Together the states fill every tick exactly once
+        for (long tick = 0; tick < 20; tick++) {
+            timestep.setTick(tick);
+            int due = 0;
+            for (IState state : states) {
+                due += tickRates.isDue(state) ? 1 : 0;
+            }
+            assertEquals(1, due, "Tick " + tick);
+        }
+    }
+
+    @Test
+    void unregisteredStateIsAlwaysDue() {
+        IState state = new TestState();
+        tickRates.registerState(state, new StateOptions().tickDivisor(4));
+        tickRates.unregisterState(state);
+
+        assertEquals(20, countDue(state, 20));
+    }
+
+    private int countDue(IState state, int numTicks) {
+        int due = 0;
+        for (long tick = 0; tick < numTicks; tick++) {
+            timestep.setTick(tick);
+            if (tickRates.isDue(state)) {
+                due++;
+            }
+        }
+        return due;
+    }
+
+    private static class TestState implements IState {
+
+        @Override
+        public void enter() {}
+
+        @Override
+        public void addComponent(IComponent component) {}
+
+        @Override
+        public void removeComponent(IComponent component) {}
+
+        @Override
+        public IComponent[] getComponents() {
+            return new IComponent[0];
+        }
+
+        @Override
+        public void updatePrep() {}
+
+        @Override
+        public void update() {}
+
+        @Override
+        public IState exit() {
+            return null;
+        }
+
+        @Override
+        public void delete() {}
+    }
+
+}
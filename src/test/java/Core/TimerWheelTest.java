@@ -0,0 +1,207 @@
+package Core;
+
+import Core.Module.EventReceiver;
+import Core.Module.OverflowPolicy;
+import EngineLibrary.Event;
+import EngineLibrary.EventPool;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTest {
+
+    @Test
+    void firesEachTimerOnTheTickThatItComesDue() {
+        Metrics metrics = new Metrics();
+        RecordingQueue eventQueue = new RecordingQueue(metrics);
+        TimerWheel timerWheel = new TimerWheel(eventQueue, metrics);
+        // Delays on either side of each level's reach, which are cascaded down through every level of the wheel, as
+        // well as delays past the top level's reach, which are placed into the top level more than once
+        long[] delays = {1, 2, 63, 64, 65, 4095, 4096, 4097, 262143, 262144, 262145, 16777215, 16777216, 16777300};
+        for (long delay : delays) {
+            timerWheel.schedule(new EventTimer(timerWheel, new TestEvent(delay), null, delay, 0));
+        }
+
+        advance(timerWheel, eventQueue, delays[delays.length - 1]);
+
+        assertEquals(delays.length, eventQueue.posted.size());
+        for (Posted posted : eventQueue.posted) {
+            assertEquals(posted.event.due, posted.tick);
+        }
+        assertEquals(0, metrics.getGauges().get("timers.pending").getAsDouble());
+        assertEquals(delays.length, metrics.getCounters().get("timers.fired").get());
+    }
+
+    @Test
+    void delayIsCountedFromTheLastAdvance() {
+        Metrics metrics = new Metrics();
+        RecordingQueue eventQueue = new RecordingQueue(metrics);
+        TimerWheel timerWheel = new TimerWheel(eventQueue, metrics);
+        advance(timerWheel, eventQueue, 1000);
+        timerWheel.schedule(new EventTimer(timerWheel, new TestEvent(1100), null, 100, 0));
+
+        advance(timerWheel, eventQueue, 1200);
+
+        assertEquals(1, eventQueue.posted.size());
+        assertEquals(1100, eventQueue.posted.get(0).tick);
+    }
+
+    @Test
+    void cancelledTimerNeverFiresAndReleasesItsEvent() {
+        Metrics metrics = new Metrics();
+        RecordingQueue eventQueue = new RecordingQueue(metrics);
+        TimerWheel timerWheel = new TimerWheel(eventQueue, metrics);
+        TestEvent event = acquire();
+        EventTimer timer = new EventTimer(timerWheel, event, null, 5000, 0);
+        timerWheel.schedule(timer);
+        advance(timerWheel, eventQueue, 4100);
+
+        assertTrue(timer.cancel());
+        assertTrue(timer.isCancelled());
+        assertFalse(timer.isPending());
+        assertFalse(timer.cancel());
+        // The cancellation is picked up the next time the wheel advances, after a cascade has moved the timer down
+        assertFalse(event.isReleased());
+        advance(timerWheel, eventQueue, 6000);
+
+        assertTrue(eventQueue.posted.isEmpty());
+        assertTrue(event.isReleased());
+        assertEquals(0, metrics.getGauges().get("timers.pending").getAsDouble());
+    }
+
+    @Test
+    void timerCancelledBeforeBeingScheduledIsDiscarded() {
+        Metrics metrics = new Metrics();
+        RecordingQueue eventQueue = new RecordingQueue(metrics);
+        TimerWheel timerWheel = new TimerWheel(eventQueue, metrics);
+        TestEvent event = acquire();
+        EventTimer timer = new EventTimer(timerWheel, event, null, 1, 0);
+        timerWheel.schedule(timer);
+
+        assertTrue(timer.cancel());
+        advance(timerWheel, eventQueue, 10);
+
+        assertTrue(eventQueue.posted.isEmpty());
+        assertTrue(event.isReleased());
+        assertEquals(0, metrics.getGauges().get("timers.pending").getAsDouble());
+    }
+
+    @Test
+    void firedTimerCanNoLongerBeCancelled() {
+        Metrics metrics = new Metrics();
+        RecordingQueue eventQueue = new RecordingQueue(metrics);
+        TimerWheel timerWheel = new TimerWheel(eventQueue, metrics);
+        TestEvent event = acquire();
+        EventTimer timer = new EventTimer(timerWheel, event, null, 3, 0);
+        timerWheel.schedule(timer);
+
+        advance(timerWheel, eventQueue, 3);
+
+        assertFalse(timer.isPending());
+        assertFalse(timer.cancel());
+        assertFalse(timer.isCancelled());
+        assertEquals(1, eventQueue.posted.size());
+        // The event now belongs to the queue
+        assertFalse(event.isReleased());
+    }
+
+    @Test
+    void repeatingTimerFiresEveryPeriodUntilCancelled() {
+        Metrics metrics = new Metrics();
+        RecordingQueue eventQueue = new RecordingQueue(metrics);
+        TimerWheel timerWheel = new TimerWheel(eventQueue, metrics);
+        EventTimer timer = new EventTimer(timerWheel, null, () -> new TestEvent(eventQueue.tick), 3, 100);
+        timerWheel.schedule(timer);
+
+        advance(timerWheel, eventQueue, 1000);
+        assertTrue(timer.isPending());
+        assertTrue(timer.cancel());
+        advance(timerWheel, eventQueue, 2000);
+
+        assertEquals(10, eventQueue.posted.size());
+        for (int i = 0; i < eventQueue.posted.size(); i++) {
+            assertEquals(3 + i * 100, eventQueue.posted.get(i).tick);
+        }
+        assertEquals(0, metrics.getGauges().get("timers.pending").getAsDouble());
+    }
+
+    @Test
+    void eventRejectedByTheQueueIsReleased() {
+        Metrics metrics = new Metrics();
+        RecordingQueue eventQueue = new RecordingQueue(metrics);
+        eventQueue.rejecting = true;
+        TimerWheel timerWheel = new TimerWheel(eventQueue, metrics);
+        TestEvent event = acquire();
+        timerWheel.schedule(new EventTimer(timerWheel, event, null, 2, 0));
+
+        advance(timerWheel, eventQueue, 2);
+
+        assertEquals(1, eventQueue.posted.size());
+        assertTrue(event.isReleased());
+    }
+
+    // Advances the wheel until it reaches the supplied tick
+    private static void advance(TimerWheel timerWheel, RecordingQueue eventQueue, long tick) {
+        while (eventQueue.tick < tick) {
+            eventQueue.tick++;
+            timerWheel.advance();
+        }
+    }
+
+    private static TestEvent acquire() {
+        EventPool<TestEvent> pool = new EventPool<>(() -> new TestEvent(0));
+        pool.setDebugEnabled(true);
+        return pool.acquire();
+    }
+
+    // Records every event posted by the timer wheel, along with the tick it was posted on
+    private static class RecordingQueue extends EventQueue {
+
+        private final List<Posted> posted = new ArrayList<>();
+        private long tick;
+        private boolean rejecting;
+
+        private RecordingQueue(Metrics metrics) {
+            super(metrics, new CostModel(), new EventOrder(), 0, 16, OverflowPolicy.GROW);
+        }
+
+        @Override
+        boolean postEvent(Event event) {
+            posted.add(new Posted((TestEvent) event, tick));
+            return !rejecting;
+        }
+    }
+
+    private static class Posted {
+
+        private final TestEvent event;
+        private final long tick;
+
+        private Posted(TestEvent event, long tick) {
+            this.event = event;
+            this.tick = tick;
+        }
+    }
+
+    private enum TestEvents {
+        TEST
+    }
+
+    private static class TestEvent extends Event {
+
+        // The tick that the event is due to be posted on
+        private final long due;
+
+        private TestEvent(long due) {
+            this.due = due;
+            eventEnum = TestEvents.TEST;
+        }
+
+        @Override
+        public void notifyModules(EventReceiver[] eventReceivers) {}
+    }
+
+}
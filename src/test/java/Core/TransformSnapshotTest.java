@@ -0,0 +1,239 @@
+package Core;
+
+import EngineLibrary.IComponent;
+import EngineLibrary.IState;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransformSnapshotTest {
+
+    private final TransformSnapshot snapshot = new TransformSnapshot();
+
+    @Test
+    void captureIsOnlyVisibleOncePublished() {
+        TestComponent component = new TestComponent(1, 2, 45, 3);
+        TestState state = new TestState(component);
+
+        snapshot.capture(levels(state));
+        assertEquals(-1, snapshot.getOffset(state));
+        snapshot.publish(0.5, 7);
+
+        assertEquals(0, snapshot.getOffset(state));
+        assertEquals(1, snapshot.getNumComponents(state));
+        assertSame(component, snapshot.getComponent(0));
+        assertEquals(1, snapshot.getXPos(0));
+        assertEquals(2, snapshot.getYPos(0));
+        assertEquals(45, snapshot.getRotation(0));
+        assertEquals(3, snapshot.getScalar(0));
+        assertEquals(0.5, snapshot.getAlpha());
+        assertEquals(7, snapshot.getTick());
+    }
+
+    @Test
+    void statesAreStoredContiguouslyInScheduleOrder() {
+        TestState first = new TestState(new TestComponent(0, 0, 0, 1), new TestComponent(1, 0, 0, 1));
+        TestState second = new TestState(new TestComponent(2, 0, 0, 1));
+        TestState uncaptured = new TestState();
+
+        snapshot.capture(new IState[][] {{first}, {second}});
+        snapshot.publish(0, 0);
+
+        assertEquals(0, snapshot.getOffset(first));
+        assertEquals(2, snapshot.getNumComponents(first));
+        assertEquals(2, snapshot.getOffset(second));
+        assertEquals(2, snapshot.getXPos(2));
+        assertEquals(-1, snapshot.getOffset(uncaptured));
+        assertEquals(0, snapshot.getNumComponents(uncaptured));
+    }
+
+    @Test
+    void interpolatesBetweenTheLastTwoUpdates() {
+        TestComponent component = new TestComponent(0, 0, 350, 1);
+        TestState state = new TestState(component);
+        snapshot.capture(levels(state));
+        snapshot.publish(0, 0);
+
+        component.set(10, -4, 10, 3);
+        snapshot.capture(levels(state));
+        snapshot.publish(0.25, 1);
+
+        assertEquals(2.5f, snapshot.getInterpolatedXPos(0));
+        assertEquals(-1, snapshot.getInterpolatedYPos(0));
+        // Rotation takes the short way round, through 360 degrees rather than back through 180
+        assertEquals(355, snapshot.getInterpolatedRotation(0));
+        assertEquals(1.5f, snapshot.getInterpolatedScalar(0));
+    }
+
+    @Test
+    void interpolatesFromTheUpdateBeforeTheLastWhenSeveralRanInOneFrame() {
+        TestComponent component = new TestComponent(0, 0, 0, 1);
+        TestState state = new TestState(component);
+        snapshot.capture(levels(state));
+        snapshot.publish(0, 0);
+
+        component.set(10, 0, 0, 1);
+        snapshot.capture(levels(state));
+        component.set(20, 0, 0, 1);
+        snapshot.capture(levels(state));
+        snapshot.publish(0.5, 2);
+
+        assertEquals(20, snapshot.getXPos(0));
+        assertEquals(15, snapshot.getInterpolatedXPos(0));
+    }
+
+    @Test
+    void republishesTheLastCaptureWhenNoUpdateRan() {
+        TestComponent component = new TestComponent(0, 0, 0, 1);
+        TestState state = new TestState(component);
+        snapshot.capture(levels(state));
+        snapshot.publish(0, 0);
+        component.set(8, 0, 0, 1);
+        snapshot.capture(levels(state));
+        snapshot.publish(0.25, 1);
+
+        snapshot.publish(0.75, 1);
+
+        assertEquals(0.75, snapshot.getAlpha());
+        assertEquals(8, snapshot.getXPos(0));
+        assertEquals(6, snapshot.getInterpolatedXPos(0));
+        // The next capture still blends from the republished update
+        snapshot.capture(levels(state));
+        snapshot.publish(0.5, 2);
+        assertEquals(8, snapshot.getInterpolatedXPos(0));
+    }
+
+    @Test
+    void componentWithoutAPreviousTransformIsNotBlended() {
+        TestComponent component = new TestComponent(0, 0, 0, 1);
+        TestState state = new TestState(component);
+        snapshot.capture(levels(state));
+        snapshot.publish(0, 0);
+
+        TestComponent added = new TestComponent(50, 60, 90, 2);
+        state.components.add(0, added);
+        snapshot.capture(levels(state));
+        snapshot.publish(0.5, 1);
+
+        assertEquals(50, snapshot.getInterpolatedXPos(0));
+        assertEquals(60, snapshot.getInterpolatedYPos(0));
+        assertEquals(90, snapshot.getInterpolatedRotation(0));
+        assertEquals(2, snapshot.getInterpolatedScalar(0));
+    }
+
+    @Test
+    void removedComponentsAreNotHeldOnTo() {
+        TestState state = new TestState(new TestComponent(0, 0, 0, 1), new TestComponent(0, 0, 0, 1),
+                new TestComponent(0, 0, 0, 1));
+        snapshot.capture(levels(state));
+        snapshot.publish(0, 0);
+        snapshot.capture(levels(state));
+        snapshot.publish(0, 1);
+
+        state.components.subList(1, 3).clear();
+        // Cycle through both buffers, along with their previous transforms
+        for (int tick = 2; tick < 6; tick++) {
+            snapshot.capture(levels(state));
+            snapshot.publish(0, tick);
+            assertNotNull(snapshot.getComponent(0));
+            assertNull(snapshot.getComponent(1));
+            assertNull(snapshot.getComponent(2));
+        }
+    }
+
+    private static IState[][] levels(IState state) {
+        return new IState[][] {{state}};
+    }
+
+    private static class TestComponent implements IComponent {
+
+        private float xPos;
+        private float yPos;
+        private float rotation;
+        private float scalar;
+
+        private TestComponent(float xPos, float yPos, float rotation, float scalar) {
+            set(xPos, yPos, rotation, scalar);
+        }
+
+        private void set(float xPos, float yPos, float rotation, float scalar) {
+            this.xPos = xPos;
+            this.yPos = yPos;
+            this.rotation = rotation;
+            this.scalar = scalar;
+        }
+
+        @Override
+        public String getName() {
+            return "Test Component";
+        }
+
+        @Override
+        public void update() {}
+
+        @Override
+        public void threadsafeUpdate() {}
+
+        @Override
+        public float getXPos() {
+            return xPos;
+        }
+
+        @Override
+        public float getYPos() {
+            return yPos;
+        }
+
+        @Override
+        public float getRotation() {
+            return rotation;
+        }
+
+        @Override
+        public float getScalar() {
+            return scalar;
+        }
+    }
+
+    private static class TestState implements IState {
+
+        private final List<IComponent> components;
+
+        private TestState(IComponent... components) {
+            this.components = new ArrayList<>(Arrays.asList(components));
+        }
+
+        @Override
+        public void enter() {}
+
+        @Override
+        public void addComponent(IComponent component) {}
+
+        @Override
+        public void removeComponent(IComponent component) {}
+
+        @Override
+        public IComponent[] getComponents() {
+            return components.toArray(new IComponent[0]);
+        }
+
+        @Override
+        public void updatePrep() {}
+
+        @Override
+        public void update() {}
+
+        @Override
+        public IState exit() {
+            return null;
+        }
+
+        @Override
+        public void delete() {}
+    }
+
+}
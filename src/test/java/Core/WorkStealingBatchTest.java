@@ -0,0 +1,189 @@
+package Core;
+
+import EngineLibrary.IComponent;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkStealingBatchTest {
+
+    @Test
+    void singleParticipantUpdatesEveryComponentOnce() {
+        EventOrder eventOrder = new EventOrder();
+        WorkStealingBatch batch = new WorkStealingBatch(1, eventOrder);
+        CountingComponent[] components = createComponents(100, eventOrder);
+
+        batch.reset(components, components.length, 1, 0);
+        int numUpdated = batch.run(0);
+
+        assertEquals(100, numUpdated);
+        assertTrue(batch.isComplete());
+        assertUpdatedOnce(components, components.length);
+    }
+
+    @Test
+    void onlyUpdatesTheSuppliedNumberOfComponents() {
+        EventOrder eventOrder = new EventOrder();
+        WorkStealingBatch batch = new WorkStealingBatch(2, eventOrder);
+        CountingComponent[] components = createComponents(50, eventOrder);
+
+        batch.reset(components, 30, 2, 0);
+        int numUpdated = batch.run(0) + batch.run(1);
+
+        assertEquals(30, numUpdated);
+        assertTrue(batch.isComplete());
+        assertUpdatedOnce(components, 30);
+        for (int i = 30; i < components.length; i++) {
+            assertEquals(0, components[i].updates.get());
+        }
+    }
+
+    @Test
+    void participantStealsTheWorkOfParticipantsThatNeverRun() {
+        EventOrder eventOrder = new EventOrder();
+        WorkStealingBatch batch = new WorkStealingBatch(4, eventOrder);
+        CountingComponent[] components = createComponents(103, eventOrder);
+
+        batch.reset(components, components.length, 4, 0);
+        int numUpdated = batch.run(2);
+
+        assertEquals(103, numUpdated);
+        assertTrue(batch.isComplete());
+        assertUpdatedOnce(components, components.length);
+    }
+
+    @Test
+    void concurrentParticipantsUpdateEveryComponentOnce() throws InterruptedException {
+        EventOrder eventOrder = new EventOrder();
+        int numParticipants = 4;
+        WorkStealingBatch batch = new WorkStealingBatch(numParticipants, eventOrder);
+        CountingComponent[] components = createComponents(10000, eventOrder);
+        // Make the first participant's share expensive, so that the others have to steal from it
+        for (int i = 0; i < 100; i++) {
+            components[i].work = 20000;
+        }
+
+        for (int round = 0; round < 10; round++) {
+            batch.reset(components, components.length, numParticipants, 0);
+            AtomicInteger numUpdated = new AtomicInteger(0);
+            Thread[] threads = new Thread[numParticipants - 1];
+            for (int i = 0; i < threads.length; i++) {
+                int participant = i + 1;
+                threads[i] = new Thread(() -> numUpdated.addAndGet(batch.run(participant)));
+                threads[i].start();
+            }
+            numUpdated.addAndGet(batch.run(0));
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(components.length, numUpdated.get());
+            assertTrue(batch.isComplete());
+        }
+        for (CountingComponent component : components) {
+            assertEquals(10, component.updates.get());
+        }
+    }
+
+    @Test
+    void componentsPostUnderTheKeyOfTheirChunk() {
+        EventOrder eventOrder = new EventOrder();
+        WorkStealingBatch batch = new WorkStealingBatch(2, eventOrder);
+        CountingComponent[] components = createComponents(64, eventOrder);
+
+        batch.reset(components, components.length, 2, 1000);
+        batch.run(1);
+        batch.run(0);
+
+        // A chunk's key is that of its first component, so keys never run ahead of the component's own key and always
+        // increase along with the components
+        long previousKey = 1000;
+        for (int i = 0; i < components.length; i++) {
+            long key = components[i].key;
+            assertTrue(key >= previousKey && key <= 1000 + i);
+            previousKey = key;
+        }
+        assertEquals(EventOrder.UNORDERED, eventOrder.getSource().get());
+    }
+
+    @Test
+    void rejectsMoreParticipantsThanItWasCreatedWith() {
+        EventOrder eventOrder = new EventOrder();
+        WorkStealingBatch batch = new WorkStealingBatch(2, eventOrder);
+
+        assertThrows(RuntimeException.class, () -> batch.reset(createComponents(8, eventOrder), 8, 3, 0));
+    }
+
+    private static CountingComponent[] createComponents(int numComponents, EventOrder eventOrder) {
+        CountingComponent[] components = new CountingComponent[numComponents];
+        for (int i = 0; i < numComponents; i++) {
+            components[i] = new CountingComponent(eventOrder);
+        }
+        return components;
+    }
+
+    private static void assertUpdatedOnce(CountingComponent[] components, int numComponents) {
+        for (int i = 0; i < numComponents; i++) {
+            assertEquals(1, components[i].updates.get(), "Component " + i + " was not updated exactly once");
+        }
+    }
+
+    private static class CountingComponent implements IComponent {
+
+        // Keeps the busy work from being optimized away
+        private static volatile long sink;
+
+        private final EventOrder eventOrder;
+        private final AtomicInteger updates = new AtomicInteger(0);
+        // The order key that the component was last updated under
+        private volatile long key;
+        // Iterations of busy work done by every update
+        private int work;
+
+        private CountingComponent(EventOrder eventOrder) {
+            this.eventOrder = eventOrder;
+        }
+
+        @Override
+        public String getName() {
+            return "Counting Component";
+        }
+
+        @Override
+        public void update() {
+            long sum = 0;
+            for (int i = 0; i < work; i++) {
+                sum += i * 31L;
+            }
+            sink = sum;
+            key = eventOrder.getSource().get();
+            updates.incrementAndGet();
+        }
+
+        @Override
+        public void threadsafeUpdate() {}
+
+        @Override
+        public float getXPos() {
+            return 0;
+        }
+
+        @Override
+        public float getYPos() {
+            return 0;
+        }
+
+        @Override
+        public float getRotation() {
+            return 0;
+        }
+
+        @Override
+        public float getScalar() {
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+package EngineLibrary;
+
+import Core.Module.EventReceiver;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventPoolTest {
+
+    private enum TestEvents {
+        TEST
+    }
+
+    private int created;
+    private final EventPool<TestEvent> pool = new EventPool<>(this::create, 2);
+
+    @Test
+    void releasedEventIsResetAndReused() {
+        TestEvent event = pool.acquire();
+        event.setData("data");
+
+        event.release();
+
+        assertTrue(event.isReleased());
+        assertNull(event.data);
+        TestEvent reused = pool.acquire();
+        assertSame(event, reused);
+        assertFalse(reused.isReleased());
+        assertEquals(1, created);
+    }
+
+    @Test
+    void eventIsOnlyRecycledOnceEveryReferenceIsReleased() {
+        TestEvent event = pool.acquire();
+        assertSame(event, event.retain());
+        event.retain();
+
+        event.release();
+        event.release();
+        assertFalse(event.isReleased());
+        assertNotSame(event, pool.acquire());
+
+        event.release();
+        assertTrue(event.isReleased());
+        assertSame(event, pool.acquire());
+    }
+
+    @Test
+    void releasingMoreTimesThanRetainedFails() {
+        TestEvent event = pool.acquire();
+        event.release();
+
+        assertThrows(RuntimeException.class, event::release);
+    }
+
+    @Test
+    void eventsCreatedWithoutAPoolAreNotCounted() {
+        TestEvent event = new TestEvent();
+
+        event.retain();
+        event.release();
+        event.release();
+
+        assertFalse(event.isReleased());
+        assertNull(event.getData());
+    }
+
+    @Test
+    void emptyPoolCreatesNewEvents() {
+        Set<TestEvent> events = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            events.add(pool.acquire());
+        }
+
+        assertEquals(5, events.size());
+        assertEquals(5, created);
+    }
+
+    @Test
+    void eventsReleasedIntoAFullPoolAreDropped() {
+        TestEvent[] events = {pool.acquire(), pool.acquire(), pool.acquire()};
+        for (TestEvent event : events) {
+            event.release();
+        }
+
+        // Only the first two fit in the pool, so the third acquire has to create a new event
+        assertSame(events[0], pool.acquire());
+        assertSame(events[1], pool.acquire());
+        TestEvent event = pool.acquire();
+        assertNotSame(events[2], event);
+        assertEquals(4, created);
+    }
+
+    @Test
+    void debugModeNeverReusesReleasedEvents() {
+        pool.setDebugEnabled(true);
+        TestEvent event = pool.acquire();
+        event.release();
+
+        assertNotSame(event, pool.acquire());
+        assertEquals(2, created);
+    }
+
+    @Test
+    void debugModeCatchesUseAfterRelease() {
+        pool.setDebugEnabled(true);
+        TestEvent event = pool.acquire();
+        event.setData("data");
+        event.release();
+
+        assertThrows(RuntimeException.class, event::retain);
+        assertThrows(RuntimeException.class, event::release);
+        assertThrows(RuntimeException.class, event::getData);
+    }
+
+    private TestEvent create() {
+        created++;
+        return new TestEvent();
+    }
+
+    private static class TestEvent extends Event {
+
+        private String data;
+
+        private TestEvent() {
+            eventEnum = TestEvents.TEST;
+        }
+
+        private String getData() {
+            checkNotReleased();
+            return data;
+        }
+
+        private void setData(String data) {
+            checkNotReleased();
+            this.data = data;
+        }
+
+        @Override
+        public void notifyModules(EventReceiver[] eventReceivers) {
+            for (EventReceiver eventReceiver : eventReceivers) {
+                eventReceiver.onNotify(this);
+            }
+        }
+
+        @Override
+        protected void reset() {
+            data = null;
+        }
+    }
+
+}